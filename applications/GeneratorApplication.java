@@ -33,6 +33,13 @@ public class GeneratorApplication extends Application {
 	public static final String CONTENT_SIZE_RANGE = "sizeRange";
 	/** Size of the content message */
 	public static final String CONTENT_TYPE = "contentType";
+	/** Give each generated data message an ID of its own -setting id
+	 * ({@value}). If true, the ID is the content name followed by the
+	 * address of the generating host and a sequence number, so several
+	 * copies of the same content can be buffered at once. If false
+	 * (default), the ID is the content name. Routers find data by its
+	 * content name either way. */
+	public static final String UNIQUE_IDS = "uniqueIds";
 
     /** Application ID */
 	public static final String APP_ID = "fi.tkk.netlab.GeneratorApplication";
@@ -49,6 +56,8 @@ public class GeneratorApplication extends Application {
 	private int				sizeMin = 1;
 	private int				sizeMax = 10;
     private boolean 		passive = false;
+    private boolean			uniqueIds = false;
+    private int				nrofCreated = 0;
 	private List<String> 	contentType = new ArrayList();
 
     /** 
@@ -81,6 +90,9 @@ public class GeneratorApplication extends Application {
 			this.sizeMin = size[0];
 			this.sizeMax = size[1];
 		}
+		if (s.contains(UNIQUE_IDS)) {
+			this.uniqueIds = s.getBoolean(UNIQUE_IDS);
+		}
 		if (s.contains(CONTENT_DEST_RANGE)){
 			int[] destination = s.getCsvInts(CONTENT_DEST_RANGE,2);
 			this.destMin = destination[0];
@@ -109,6 +121,7 @@ public class GeneratorApplication extends Application {
 		this.sizeMax = a.getSizeMax();
 		this.sizeMin = a.getSizeMin();
 		this.contentType = a.getContentType();
+		this.uniqueIds = a.isUniqueIds();
 	}
 
 	/** 
@@ -172,8 +185,14 @@ public class GeneratorApplication extends Application {
 		double curTime = SimClock.getTime();
 		if (curTime - this.lastCreation >= this.interval && hostActive(host)) {
 			// Message m = new Message(host, null, getId(host), randomSize());
-			Message m = new Message(host, null, randomContent(), randomSize());
-			m.addProperty("type", "data");
+			String name = randomContent();
+			String id = name;
+			if (this.uniqueIds) {
+				id = name + "_" + host.getAddress() + "_" + nrofCreated++;
+			}
+			Message m = new Message(host, null, id, randomSize());
+			m.setPacketType(Message.PacketType.DATA);
+			m.setContentName(name);
 
 			// declare random destinations and target packets for interest packets
 			//DTNHost randDest = SimScenario.getInstance().getWorld().getNodeByAddress(randomDestination());
@@ -187,7 +206,7 @@ public class GeneratorApplication extends Application {
 			host.createNewMessage(m);
 
 			// set location of data creation
-			m.addProperty("initiallocation", host.getLocation());
+			m.setInitialLocation(host.getLocation());
 			
 			// Call listeners
 			super.sendEventToListeners("SentContent", null, host);
@@ -214,6 +233,12 @@ public class GeneratorApplication extends Application {
 	public boolean isPassive() { return passive; }
 	public void setPassive(boolean passive) { this.passive = passive; }
 
+	/**
+	 * uniqueIds
+	 */
+	public boolean isUniqueIds() { return uniqueIds; }
+	public void setUniqueIds(boolean uniqueIds) { this.uniqueIds = uniqueIds; }
+
 	/**
 	 * contentMin and contentMax
 	 */
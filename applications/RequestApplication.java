@@ -169,7 +169,7 @@ public class RequestApplication extends Application {
 		double curTime = SimClock.getTime();
 		if (curTime - this.lastRequest >= this.interval && hostActive(host)) {
 			Message m = new Message(host, null, getId(host), getRequestSize());
-			m.addProperty("type", "request");
+			m.setPacketType(Message.PacketType.REQUEST);
 			m.setAppID(APP_ID);
 
 			// declare random destination
@@ -180,13 +180,13 @@ public class RequestApplication extends Application {
 			//m.setTo(null);
 			
 			// declare random target packet
-			m.addProperty("target", randomTarget());
+			m.setTarget(randomTarget());
 			// declare random priority level
-			m.addProperty("priority", randomPriority());
+			m.setPriority(randomPriority());
 			host.createNewMessage(m);
 
 			// set location of data creation
-			m.addProperty("initiallocation", host.getLocation());
+			m.setInitialLocation(host.getLocation());
 			
 			// Call listeners
 			super.sendEventToListeners("SentRequest", null, host);
@@ -4,15 +4,48 @@
  */
 package core;
 
+import input.TransferDoneQueue;
 import routing.MessageRouter;
 
 /**
- * A constant bit-rate connection between two DTN nodes.
+ * A constant bit-rate connection between two DTN nodes. If the interfaces
+ * of the connection share their speed (see 
+ * {@link NetworkInterface#setTransferSpeedShared(boolean)}) and have
+ * concurrent transfers, the speed is shared equally between the transfers
+ * of the busier interface.
  */
 public class CBRConnection extends Connection {
+	/** queue where the transfers are added or null if transfers are 
+	 * finalized only at host updates */
+	private static TransferDoneQueue doneQueue;
+	
 	private int speed;
+	/** the speed of the current transfer (share of {@link #speed}) */
+	private double transferSpeed;
 	private double transferDoneTime;
 
+	static {
+		DTNSim.registerForReset(CBRConnection.class.getCanonicalName());
+		reset();
+	}
+	
+	/**
+	 * Resets the static fields of the class
+	 */
+	public static void reset() {
+		doneQueue = null;
+	}
+	
+	/**
+	 * Sets the queue where the started transfers are added so that they
+	 * can be finalized at their done time
+	 * @param queue The queue or null if transfers are not queued
+	 * @see World#TRANSFER_DONE_EVENTS_S
+	 */
+	public static void setTransferDoneQueue(TransferDoneQueue queue) {
+		doneQueue = queue;
+	}
+	
 	/**
 	 * Creates a new connection between nodes and sets the connection
 	 * state to "up".
@@ -27,6 +60,7 @@ public class CBRConnection extends Connection {
 			DTNHost toNode,	NetworkInterface toInterface, int connectionSpeed) {
 		super(fromNode, fromInterface, toNode, toInterface);
 		this.speed = connectionSpeed;
+		this.transferSpeed = connectionSpeed;
 		this.transferDoneTime = 0;
 
 	}
@@ -54,8 +88,17 @@ public class CBRConnection extends Connection {
 
 		if (retVal == MessageRouter.RCV_OK) {
 			this.msgOnFly = newMessage;
+			this.transferSpeed = this.speed;
 			this.transferDoneTime = SimClock.getTime() + 
 			(1.0*m.getSize()) / this.speed;
+			if (doneQueue != null && 
+					this.transferDoneTime > SimClock.getTime()) {
+				/* transfers that are done at once (empty messages) are 
+				   finalized at the next update; queuing them could make
+				   the hosts transfer forever without time advancing */
+				doneQueue.addTransfer(this, from);
+			}
+			transferStarted();
 		}
 
 		return retVal;
@@ -72,6 +115,26 @@ public class CBRConnection extends Connection {
 		this.transferDoneTime = 0;
 	}
 
+	/**
+	 * Sets the speed of the transfer to its current share of the connection
+	 * speed and moves the transfer done time accordingly
+	 */
+	@Override
+	protected void transferSharesChanged() {
+		double newSpeed = (1.0 * this.speed) / getTransferShare();
+		if (newSpeed == this.transferSpeed) {
+			return;
+		}
+		double now = SimClock.getTime();
+		double remaining = Math.max(0, 
+				(this.transferDoneTime - now) * this.transferSpeed);
+		this.transferSpeed = newSpeed;
+		this.transferDoneTime = now + remaining / newSpeed;
+		if (doneQueue != null && this.transferDoneTime > now) {
+			doneQueue.addTransfer(this, this.msgFromNode);
+		}
+	}
+	
 	/**
 	 * Gets the transferdonetime
 	 */
@@ -94,6 +157,19 @@ public class CBRConnection extends Connection {
 		return this.speed;
 	}
 
+	/**
+	 * Returns the connection speed shared with the transfers that the 
+	 * interfaces of the connection have (including the new transfer)
+	 */
+	@Override
+	public double getExpectedSpeed() {
+		int share = getNrofSharingTransfers();
+		if (!isTransferring()) {
+			share++; /* a new transfer would share the speed too */
+		}
+		return (1.0 * this.speed) / Math.max(1, share);
+	}
+
 	/**
 	 * Returns the amount of bytes to be transferred before ongoing transfer
 	 * is ready or 0 if there's no ongoing transfer or it has finished
@@ -108,7 +184,7 @@ public class CBRConnection extends Connection {
 		}
 
 		remaining = (int)((this.transferDoneTime - SimClock.getTime()) 
-				* this.speed);
+				* this.transferSpeed);
 
 		return (remaining > 0 ? remaining : 0);
 	}
@@ -68,10 +68,16 @@ public abstract class Connection {
 	}
 	
 	/**
-	 * Sets the state of the connection.
+	 * Sets the state of the connection. A transfer of a connection that
+	 * goes down no longer counts as a transfer of the interfaces, even 
+	 * though it is aborted only later.
 	 * @param state True if the connection is up, false if not
 	 */
 	public void setUpState(boolean state) {
+		if (this.isUp && !state && this.msgOnFly != null) {
+			this.isUp = false;
+			transferEnded();
+		}
 		this.isUp = state;
 	}
 
@@ -92,6 +98,56 @@ public abstract class Connection {
 	 * given by the interfaces, and calculate the missing data amount.
 	 */
 	public void update() {};
+	
+	/**
+	 * Must be called by the subclasses when a transfer has started (i.e.,
+	 * the message on fly is set). Updates the transfer counts of the
+	 * interfaces.
+	 */
+	protected void transferStarted() {
+		this.fromInterface.transferStarted();
+		this.toInterface.transferStarted();
+	}
+	
+	/**
+	 * Updates the transfer counts of the interfaces when a transfer ends
+	 */
+	private void transferEnded() {
+		this.fromInterface.transferEnded();
+		this.toInterface.transferEnded();
+	}
+	
+	/**
+	 * Returns the number of transfers the speed of this connection is 
+	 * shared with, i.e., the number of transfers of the busier interface
+	 * of the connection. Only the interfaces whose speed is shared count
+	 * (see {@link NetworkInterface#isTransferSpeedShared()}).
+	 * @return The number of transfers (at least one)
+	 */
+	protected int getTransferShare() {
+		return Math.max(1, getNrofSharingTransfers());
+	}
+	
+	/**
+	 * Returns the number of transfers of the busier interface of this
+	 * connection, counting only the interfaces whose speed is shared
+	 * @return The number of transfers (zero if none)
+	 */
+	protected int getNrofSharingTransfers() {
+		int from = (this.fromInterface.isTransferSpeedShared() ? 
+				this.fromInterface.getNrofTransfers() : 0);
+		int to = (this.toInterface.isTransferSpeedShared() ? 
+				this.toInterface.getNrofTransfers() : 0);
+		return Math.max(from, to);
+	}
+	
+	/**
+	 * Called when the number of transfers sharing either of the interfaces
+	 * of this connection changed while this connection is transferring.
+	 * Subclasses whose speed depends on the share should override this.
+	 * @see #getTransferShare()
+	 */
+	protected void transferSharesChanged() { }
 
 	/**
      * Aborts the transfer of the currently transferred message.
@@ -118,7 +174,12 @@ public abstract class Connection {
 	 * Calls to {@link #getMessage()} will return null after this.
 	 */
 	protected void clearMsgOnFly() {
-		this.msgOnFly = null;
+		if (this.msgOnFly != null) {
+			this.msgOnFly = null;
+			if (this.isUp) {
+				transferEnded();
+			}
+		}
 		this.msgFromNode = null;		
 	}
 
@@ -167,6 +228,18 @@ public abstract class Connection {
 	 */
 	public abstract double getSpeed();	
 
+	/**
+	 * Returns the speed that a new transfer over this connection is expected
+	 * to get at the moment, i.e., the lower of the transmit speeds the 
+	 * interfaces give each other. Can be used for choosing between the 
+	 * connections of different interfaces to the same host.
+	 * @return The expected transfer speed (bytes per second)
+	 */
+	public double getExpectedSpeed() {
+		return Math.min(this.fromInterface.getTransmitSpeed(this.toInterface),
+				this.toInterface.getTransmitSpeed(this.fromInterface));
+	}
+
 	/**
 	 * Returns the total amount of bytes this connection has transferred so far
 	 * (including all transfers).
@@ -200,6 +273,20 @@ public abstract class Connection {
 		}
 	}
 
+	/**
+	 * Returns the interface of a node in this end of the connection
+	 * @param node The node in this end of the connection
+	 * @return The interface of the node
+	 */
+	public NetworkInterface getInterface(DTNHost node) {
+		if (node == this.fromNode) {
+			return this.fromInterface;
+		}
+		else {
+			return this.toInterface;
+		}
+	}
+
 	/**
 	 * Returns the interface in the other end of the connection
 	 * @param i The interface in this end of the connection
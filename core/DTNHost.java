@@ -4,6 +4,9 @@
  */
 package core;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -19,6 +22,8 @@ import routing.util.RoutingInfo;
  */
 public class DTNHost implements Comparable<DTNHost> {
 	private static int nextAddress = 0;
+	/** sum of the longest distances any host moved on the movement steps */
+	private static double movementBound = 0;
 	private int address;
 
 	private Coord location; 	// where is the host
@@ -29,6 +34,8 @@ public class DTNHost implements Comparable<DTNHost> {
 	private Path path;
 	private double speed;
 	private double nextTimeToMove;
+	/** distance moved during the latest call of {@link #move(double)} */
+	private double lastMovement;
 	private String name;
 	private List<MessageListener> msgListeners;
 	private List<MovementListener> movListeners;
@@ -104,6 +111,27 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public static void reset() {
 		nextAddress = 0;
+		movementBound = 0;
+	}
+	
+	/**
+	 * Returns an upper bound for the distance that any single host has 
+	 * moved since the start of the simulation. Hence, no host has moved 
+	 * more than the growth of this value during any time period.
+	 * @return The movement bound
+	 */
+	public static double getMovementBound() {
+		return movementBound;
+	}
+	
+	/**
+	 * Increases the movement bound. Must be called after every movement 
+	 * step with the longest distance a host moved during the step.
+	 * @param distance The longest distance
+	 * @see #getMovementBound()
+	 */
+	static void increaseMovementBound(double distance) {
+		movementBound += distance;
 	}
 
 	/**
@@ -115,12 +143,80 @@ public class DTNHost implements Comparable<DTNHost> {
 	}
 	
 	/**
-	 * Returns true if this node's radio is active (false if not)
+	 * Returns true if this node can be moved at the same time as other nodes
+	 * that can be moved in parallel. This requires that the movement model 
+	 * supports it and that there are no movement listeners to inform.
+	 * @return true if this node can be moved in parallel
+	 */
+	public boolean canMoveInParallel() {
+		return (this.movListeners == null || this.movListeners.isEmpty()) &&
+			this.movement.supportsParallelMovement();
+	}
+	
+	/**
+	 * Returns true if the movement state of this node can be written to a
+	 * warmup checkpoint. This requires that the movement model supports 
+	 * it and that there are no movement listeners that would miss the
+	 * warmup movement.
+	 * @return true if the movement state can be checkpointed
+	 * @see WarmupCheckpoint
+	 */
+	boolean canCheckpointMovement() {
+		return (this.movListeners == null || this.movListeners.isEmpty()) &&
+			this.movement.supportsCheckpoint();
+	}
+	
+	/**
+	 * Writes the movement state of this node (location, path and the state
+	 * of the movement model) to a checkpoint
+	 * @param out The stream to write to
+	 * @throws IOException if writing fails
+	 */
+	void writeMovementState(ObjectOutputStream out) throws IOException {
+		out.writeObject(this.location);
+		out.writeObject(this.destination);
+		out.writeObject(this.path);
+		out.writeDouble(this.speed);
+		out.writeDouble(this.nextTimeToMove);
+		out.writeDouble(this.lastMovement);
+		this.movement.writeState(out);
+	}
+	
+	/**
+	 * Restores the movement state of this node from a checkpoint written
+	 * by {@link #writeMovementState(ObjectOutputStream)}. The location is
+	 * set to the existing location object without moving the movement 
+	 * bound.
+	 * @param in The stream to read from
+	 * @throws IOException if reading fails
+	 */
+	void readMovementState(ObjectInputStream in) throws IOException {
+		try {
+			this.location.setLocation((Coord)in.readObject());
+			this.destination = (Coord)in.readObject();
+			this.path = (Path)in.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+		this.speed = in.readDouble();
+		this.nextTimeToMove = in.readDouble();
+		this.lastMovement = in.readDouble();
+		this.movement.readState(in);
+	}
+	
+	/**
+	 * Returns true if any of this node's radios (network interfaces) is 
+	 * active (false if not)
 	 * @return true if this node's radio is active (false if not)
+	 * @see NetworkInterface#isActive()
 	 */
 	public boolean isRadioActive() {
-		/* TODO: make this work for multiple interfaces */
-		return this.getInterface(1).isActive();
+		for (int i=0, n=net.size(); i<n; i++) {
+			if (net.get(i).isActive()) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -205,6 +301,9 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @param location The location to set
 	 */
 	public void setLocation(Coord location) {
+		if (this.location != null) {
+			increaseMovementBound(this.location.distance(location));
+		}
 		this.location = location.clone();
 	}
 
@@ -324,42 +423,50 @@ public class DTNHost implements Comparable<DTNHost> {
 	}
 
 	/**
-	 * Updates node's network layer and router.
+	 * Updates node's network layer and router. The connections of the 
+	 * network interfaces that are not active are torn down and the router
+	 * is updated only if at least one interface is active.
 	 * @param simulateConnections Should network layer be updated too
 	 */
 	public void update(boolean simulateConnections) {
-		if (!isRadioActive()) {
-			// Make sure inactive nodes don't have connections
-			tearDownAllConnections();
-			return;
-		}
+		boolean radioActive = false;
 		
-		if (simulateConnections) {
-			for (NetworkInterface i : net) {
+		for (NetworkInterface i : net) {
+			if (!i.isActive()) {
+				// Make sure inactive interfaces don't have connections
+				tearDownConnections(i);
+				continue;
+			}
+			radioActive = true;
+			if (simulateConnections) {
 				i.update();
 			}
 		}
-		this.router.update();
+		
+		if (radioActive) {
+			this.router.update();
+		}
 	}
 	
 	/** 
-	 * Tears down all connections for this host.
+	 * Tears down all connections of a network interface of this host.
+	 * @param i The interface
 	 */
-	private void tearDownAllConnections() {
-		for (NetworkInterface i : net) {
-			// Get all connections for the interface
-			List<Connection> conns = i.getConnections();
-			if (conns.size() == 0) continue;
-			
-			// Destroy all connections
-			List<NetworkInterface> removeList =
-				new ArrayList<NetworkInterface>(conns.size());
-			for (Connection con : conns) {
-				removeList.add(con.getOtherInterface(i));
-			}
-			for (NetworkInterface inf : removeList) {
-				i.destroyConnection(inf);
-			}
+	private void tearDownConnections(NetworkInterface i) {
+		// Get all connections for the interface
+		List<Connection> conns = i.getConnections();
+		if (conns.size() == 0) {
+			return;
+		}
+		
+		// Destroy all connections
+		List<NetworkInterface> removeList =
+			new ArrayList<NetworkInterface>(conns.size());
+		for (Connection con : conns) {
+			removeList.add(con.getOtherInterface(i));
+		}
+		for (NetworkInterface inf : removeList) {
+			i.destroyConnection(inf);
 		}
 	}
 
@@ -373,6 +480,7 @@ public class DTNHost implements Comparable<DTNHost> {
 		double distance;
 		double dx, dy;
 
+		this.lastMovement = 0;
 		if (!isMovementActive() || SimClock.getTime() < this.nextTimeToMove) {
 			return; 
 		}
@@ -389,6 +497,7 @@ public class DTNHost implements Comparable<DTNHost> {
 			// node can move past its next destination
 			this.location.setLocation(this.destination); // snap to destination
 			possibleMovement -= distance;
+			this.lastMovement += distance;
 			if (!setNextWaypoint()) { // get a new waypoint
 				return; // no more waypoints left
 			}
@@ -401,7 +510,16 @@ public class DTNHost implements Comparable<DTNHost> {
 		dy = (possibleMovement/distance) * (this.destination.getY() -
 				this.location.getY());
 		this.location.translate(dx, dy);
-	}	
+		this.lastMovement += possibleMovement;
+	}
+	
+	/**
+	 * Returns the distance this host moved during the latest movement step
+	 * @return The distance
+	 */
+	public double getLastMovement() {
+		return this.lastMovement;
+	}
 
 	/**
 	 * Sets the next destination and speed to correspond the next waypoint
@@ -5,10 +5,18 @@
 package core;
 import gui.DTNSimGUI;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import report.Report;
 import ui.DTNSimTextUI;
 
 /**
@@ -20,6 +28,11 @@ public class DTNSim {
 	public static final String BATCH_MODE_FLAG = "-b";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
+	/** If this option ({@value}) follows the batch mode's run range, the 
+	 * runs are executed in that many worker processes at the same time */
+	public static final String WORKERS_FLAG = "-w";
+	/** Suffix of the worker processes' output files ({@value}) */
+	public static final String WORKER_LOG_SUFFIX = ".log";
 	
 	/** Name of the static method that all resettable classes must have
 	 * @see #registerForReset(String) */
@@ -37,6 +50,10 @@ public class DTNSim {
 	 * {@link Settings#setRunIndex(int)}). Following arguments are the settings 
 	 * files for the simulation run (if any). For GUI mode, the number before 
 	 * settings files (if given) is the run index to use for that run.
+	 * In batch mode, the run range can be followed by 
+	 * {@value #WORKERS_FLAG} and the number of worker processes that run
+	 * the simulations at the same time (see 
+	 * {@link #runInWorkers(int[], int, String[], int)}).
 	 * @param args Command line arguments
 	 */
 	public static void main(String[] args) {
@@ -45,6 +62,7 @@ public class DTNSim {
 		String confFiles[];
 		int firstConfIndex = 0;
 		int guiIndex = 0;
+		int nrofWorkers = 1;
 
 		/* set US locale to parse decimals in consistent way */
 		java.util.Locale.setDefault(java.util.Locale.US);
@@ -58,6 +76,11 @@ public class DTNSim {
                 else {
                     nrofRuns = parseNrofRuns(args[1]);
                     firstConfIndex = 2;
+                }
+                if (args.length > firstConfIndex + 1 && 
+                		args[firstConfIndex].equals(WORKERS_FLAG)) {
+                	nrofWorkers = parseNrofWorkers(args[firstConfIndex + 1]);
+                	firstConfIndex += 2;
                 }
 			}
 			else { /* GUI mode */				
@@ -78,11 +101,16 @@ public class DTNSim {
 		
 		if (batchMode) {
 			long startTime = System.currentTimeMillis();
-			for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
-				print("Run " + (i+1) + "/" + nrofRuns[1]);
-				Settings.setRunIndex(i);
-				resetForNextRun();
-				new DTNSimTextUI().start();
+			if (nrofWorkers > 1) {
+				runInWorkers(nrofRuns, nrofWorkers, confFiles, firstConfIndex);
+			}
+			else {
+				for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+					print("Run " + (i+1) + "/" + nrofRuns[1]);
+					Settings.setRunIndex(i);
+					resetForNextRun();
+					new DTNSimTextUI().start();
+				}
 			}
 			double duration = (System.currentTimeMillis() - startTime)/1000.0;
 			print("---\nAll done in " + String.format("%.2f", duration) + "s");
@@ -93,6 +121,122 @@ public class DTNSim {
 		}
 	}
 	
+	/**
+	 * Runs the batch runs in separate worker processes. Every run is 
+	 * executed by a new JVM (with the same class path and JVM options as 
+	 * this one) that runs only that run index, so the static state of the 
+	 * runs is isolated. At most <code>nrofWorkers</code> runs are executed
+	 * at the same time. The console output of each run is written to a file
+	 * in the report directory, named after the run's scenario (with suffix
+	 * {@value #WORKER_LOG_SUFFIX}).
+	 * @param nrofRuns The first and (last_run_index - 1) in an array
+	 * @param nrofWorkers Maximum number of simultaneous worker processes
+	 * @param confFiles Command line arguments
+	 * @param firstConfIndex Index of the first config file name
+	 */
+	private static void runInWorkers(int[] nrofRuns, int nrofWorkers,
+			String[] confFiles, int firstConfIndex) {
+		final AtomicInteger nrofFailed = new AtomicInteger(0);
+		final int lastRun = nrofRuns[1];
+		ExecutorService workers = Executors.newFixedThreadPool(nrofWorkers);
+		
+		for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+			final int runIndex = i;
+			final File log = getWorkerLog(i);
+			final ProcessBuilder pb = createWorker(i, confFiles, 
+					firstConfIndex);
+			pb.redirectErrorStream(true);
+			pb.redirectOutput(log);
+			
+			workers.execute(new Runnable() {
+				public void run() {
+					int exitValue;
+					print("Run " + (runIndex+1) + "/" + lastRun + 
+							" started, output to " + log.getPath());
+					try {
+						exitValue = pb.start().waitFor();
+					} catch (IOException e) {
+						System.err.println("Can't start worker: " + e);
+						exitValue = -1;
+					} catch (InterruptedException e) {
+						exitValue = -1;
+					}
+					
+					if (exitValue != 0) {
+						nrofFailed.incrementAndGet();
+						System.err.println("Run " + (runIndex+1) + " failed " +
+								"(exit value " + exitValue + "). See " + 
+								log.getPath());
+					}
+					else {
+						print("Run " + (runIndex+1) + "/" + lastRun + " done");
+					}
+				}
+			});
+		}
+		
+		workers.shutdown();
+		try {
+			workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			throw new SimError(e);
+		}
+		
+		if (nrofFailed.get() > 0) {
+			System.err.println(nrofFailed.get() + " run(s) failed");
+			System.exit(-1);
+		}
+	}
+	
+	/**
+	 * Returns the file where the console output of a worker process is
+	 * written to. The name of the file is the run's scenario name and the 
+	 * file is in the report directory (or in the current directory if no 
+	 * report directory is defined).
+	 * @param runIndex Index of the run
+	 * @return The output file
+	 */
+	private static File getWorkerLog(int runIndex) {
+		Settings.setRunIndex(runIndex);
+		Settings s = new Settings(SimScenario.SCENARIO_NS);
+		String name = s.valueFillString(s.getSetting(SimScenario.NAME_S));
+		
+		s.setNameSpace(null);
+		File dir = new File(".");
+		if (s.contains(Report.REPORTDIR_SETTING)) {
+			dir = new File(s.getSetting(Report.REPORTDIR_SETTING));
+			dir.mkdirs();
+		}
+		
+		return new File(dir, name + WORKER_LOG_SUFFIX);
+	}
+	
+	/**
+	 * Creates a process builder for a worker that runs one batch run
+	 * @param runIndex Index of the run
+	 * @param confFiles Command line arguments
+	 * @param firstConfIndex Index of the first config file name
+	 * @return The process builder
+	 */
+	private static ProcessBuilder createWorker(int runIndex, 
+			String[] confFiles, int firstConfIndex) {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + 
+				"bin" + File.separator + "java");
+		command.addAll(ManagementFactory.getRuntimeMXBean().
+				getInputArguments());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(DTNSim.class.getName());
+		command.add(BATCH_MODE_FLAG);
+		command.add((runIndex + 1) + RANGE_DELIMETER + (runIndex + 1));
+		for (int i=firstConfIndex; i<confFiles.length; i++) {
+			command.add(confFiles[i]);
+		}
+		
+		return new ProcessBuilder(command);
+	}
+	
 	/**
 	 * Initializes Settings
 	 * @param confFiles File name paths where to read additional settings 
@@ -216,6 +360,29 @@ public class DTNSim {
 		return val;
 	}
 	
+	/**
+	 * Parses the number of worker processes from a command line argument
+	 * @param arg The argument to parse
+	 * @return The number of workers
+	 */
+	private static int parseNrofWorkers(String arg) {
+		int val = 0;
+		try {
+			val = Integer.parseInt(arg);
+		} catch (NumberFormatException e) {
+			System.err.println("Invalid argument '" + arg + "' for" +
+					" number of workers");
+			System.exit(-1);
+		}
+		
+		if (val < 1) {
+			System.err.println("Number of workers can't be smaller than 1");
+			System.exit(-1);
+		}
+		
+		return val;
+	}
+	
 	/**
 	 * Prints text to stdout
 	 * @param txt Text to print
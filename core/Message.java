@@ -5,25 +5,97 @@
 package core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * A message that is created at a node or passed between nodes.
+ * The header fields used by the ICN routers (packet type, target, content
+ * name, priority, creation location and copy count) are stored in typed
+ * fields. All but the copy count can also be accessed with the generic
+ * property methods using the *_PROPERTY keys. Other generic properties are
+ * shared between replicates until one of them modifies its properties.
  */
 public class Message implements Comparable<Message> {
 	/** Value for infinite TTL of message */
 	public static final int INFINITE_TTL = -1;
+	/** Value of {@link #getCopies()} when the copy count is not set */
+	public static final int NO_COPIES = Integer.MIN_VALUE;
+	/** Value of {@link #getPriority()} when the priority is not set */
+	public static final int NO_PRIORITY = Integer.MIN_VALUE;
+	
+	/** Name of the property holding the packet type ({@value}).
+	 * Stored in a typed field if the value is the name of a
+	 * {@link PacketType}. */
+	public static final String TYPE_PROPERTY = "type";
+	/** Name of the property holding the requested content name
+	 * ({@value}). Stored in a typed field. */
+	public static final String TARGET_PROPERTY = "target";
+	/** Name of the property holding the content name ({@value}).
+	 * Stored in a typed field. */
+	public static final String CONTENT_NAME_PROPERTY = "contentname";
+	/** Name of the property holding the priority ({@value}).
+	 * Stored in a typed field. */
+	public static final String PRIORITY_PROPERTY = "priority";
+	/** Name of the property holding the creation location ({@value}).
+	 * Stored in a typed field. */
+	public static final String LOCATION_PROPERTY = "initiallocation";
+	
+	/**
+	 * Packet types of the ICN messages
+	 */
+	public enum PacketType {
+		/** Data (content) packet */
+		DATA("data"),
+		/** Request (interest) packet */
+		REQUEST("request");
+		
+		/** name of the type in the "type" property */
+		private final String name;
+		
+		private PacketType(String name) {
+			this.name = name;
+		}
+		
+		/**
+		 * Returns the name of the type as stored in the
+		 * {@link Message#TYPE_PROPERTY} property
+		 * @return The name of the type
+		 */
+		public String getName() {
+			return this.name;
+		}
+		
+		/**
+		 * Returns the packet type with the given name
+		 * @param name Name of the type
+		 * @return The type or null if no type has the given name
+		 */
+		public static PacketType forName(Object name) {
+			if (DATA.name.equals(name)) {
+				return DATA;
+			}
+			else if (REQUEST.name.equals(name)) {
+				return REQUEST;
+			}
+			return null;
+		}
+	}
+	
 	private DTNHost from;
 	private DTNHost to;
 	/** Identifier of the message */
 	private String id;
+	/** Index of the identifier in the {@link MessageIdRegistry} */
+	private int idIndex;
 	/** Size of the message (bytes) */
 	private int size;
-	/** List of nodes this message has passed */
-	private List<DTNHost> path; 
+	/** Last node of the path this message has passed. The earlier nodes
+	 * are shared with the replicates that were made before this node was
+	 * added. */
+	private PathNode path;
 	/** Next unique identifier to be given */
 	private static int nextUniqueId;
 	/** Unique ID of this message */
@@ -45,6 +117,22 @@ public class Message implements Comparable<Message> {
 	 * stored in the properties should be immutable because only a shallow
 	 * copy of the properties is made when replicating messages */
 	private Map<String, Object> properties;
+	/** true if {@link #properties} may be shared with replicates of this
+	 * message and must be copied before it is modified */
+	private boolean propertiesShared;
+	
+	/** ICN packet type or null if not an ICN packet */
+	private PacketType packetType;
+	/** name of the requested content (request packets) */
+	private String target;
+	/** name of the content (data packets) */
+	private String contentName;
+	/** priority of the packet or {@link #NO_PRIORITY} */
+	private int priority;
+	/** location of the creating host when the packet was created */
+	private Coord initialLocation;
+	/** number of copies left (Spray and Wait) or {@link #NO_COPIES} */
+	private int copies;
 	
 	/** Application ID of the application that created the message */
 	private String	appID;
@@ -63,11 +151,26 @@ public class Message implements Comparable<Message> {
 	 * @param size Size of the message (in bytes)
 	 */
 	public Message(DTNHost from, DTNHost to, String id, int size) {
+		this(from, to, id, MessageIdRegistry.getIndex(id), size);
+		addNodeOnPath(from);
+	}
+	
+	/**
+	 * Creates a new Message with an empty path
+	 * @param from Who the message is (originally) from
+	 * @param to Who the message is (originally) to
+	 * @param id Message identifier
+	 * @param idIndex Index of the identifier in the {@link MessageIdRegistry}
+	 * @param size Size of the message (in bytes)
+	 */
+	private Message(DTNHost from, DTNHost to, String id, int idIndex,
+			int size) {
 		this.from = from;
 		this.to = to;
 		this.id = id;
+		this.idIndex = idIndex;
 		this.size = size;
-		this.path = new ArrayList<DTNHost>();
+		this.path = null;
 		this.uniqueId = nextUniqueId;
 		
 		this.timeCreated = SimClock.getTime();
@@ -76,10 +179,12 @@ public class Message implements Comparable<Message> {
 		this.responseSize = 0;
 		this.requestMsg = null;
 		this.properties = null;
+		this.propertiesShared = false;
+		this.priority = NO_PRIORITY;
+		this.copies = NO_COPIES;
 		this.appID = null;
 		
 		Message.nextUniqueId++;
-		addNodeOnPath(from);
 	}
 	
 	/**
@@ -110,6 +215,15 @@ public class Message implements Comparable<Message> {
 		return this.id;
 	}
 	
+	/**
+	 * Returns the index of the ID of the message in the
+	 * {@link MessageIdRegistry}. Same for all replicates of the message.
+	 * @return The index of the message id
+	 */
+	public int getIdIndex() {
+		return this.idIndex;
+	}
+	
 	/**
 	 * Returns an ID that is unique per message instance 
 	 * (different for replicates too)
@@ -132,15 +246,34 @@ public class Message implements Comparable<Message> {
 	 * @param node The node to add
 	 */
 	public void addNodeOnPath(DTNHost node) {
-		this.path.add(node);
+		this.path = new PathNode(node, this.path);
 	}
 	
 	/**
-	 * Returns a list of nodes this message has passed so far
+	 * Returns a list of nodes this message has passed so far. The list is
+	 * created on each call, so modifying it doesn't change the path.
 	 * @return The list as vector
 	 */
 	public List<DTNHost> getHops() {
-		return this.path;
+		DTNHost[] hops = new DTNHost[this.path.length];
+		for (PathNode n = this.path; n != null; n = n.previous) {
+			hops[n.length - 1] = n.host;
+		}
+		return new ArrayList<DTNHost>(Arrays.asList(hops));
+	}
+	
+	/**
+	 * Returns true if the given node is on the path this message has passed
+	 * @param node The node to look for
+	 * @return True if the message has passed the node
+	 */
+	public boolean hasPassed(DTNHost node) {
+		for (PathNode n = this.path; n != null; n = n.previous) {
+			if (n.host == node) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	/**
@@ -148,7 +281,7 @@ public class Message implements Comparable<Message> {
 	 * @return the amount of hops this message has passed
 	 */
 	public int getHopCount() {
-		return this.path.size() -1;
+		return this.path.length -1;
 	}
 	
 	/** 
@@ -168,6 +301,18 @@ public class Message implements Comparable<Message> {
 	}
 	
 	
+	/**
+	 * Returns the simulation time when the initial TTL of this message runs
+	 * out, or Double.MAX_VALUE if the TTL is infinite.
+	 * @return The expiry time (seconds)
+	 */
+	public double getExpiryTime() {
+		if (this.initTtl == INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		return this.timeCreated + this.initTtl * 60.0;
+	}
+	
 	/**
 	 * Sets the initial TTL (time-to-live) for this message. The initial
 	 * TTL is the TTL when the original message was created. The current TTL
@@ -260,21 +405,137 @@ public class Message implements Comparable<Message> {
 	 * @param m The message where the data is copied
 	 */
 	protected void copyFrom(Message m) {
-		this.path = new ArrayList<DTNHost>(m.path);
+		this.path = m.path; /* nodes are never modified, only appended */
 		this.timeCreated = m.timeCreated;
 		this.responseSize = m.responseSize;
 		this.requestMsg  = m.requestMsg;
 		this.initTtl = m.initTtl;
 		this.appID = m.appID;
 		
+		this.packetType = m.packetType;
+		this.target = m.target;
+		this.contentName = m.contentName;
+		this.priority = m.priority;
+		this.initialLocation = m.initialLocation;
+		this.copies = m.copies;
+		
 		if (m.properties != null) {
-			Set<String> keys = m.properties.keySet();
-			for (String key : keys) {
-				updateProperty(key, m.getProperty(key));
-			}
+			/* share the properties until either message modifies them */
+			this.properties = m.properties;
+			this.propertiesShared = true;
+			m.propertiesShared = true;
 		}
 	}
 	
+	/**
+	 * Returns the ICN packet type of this message
+	 * @return The packet type or null if this is not an ICN packet
+	 */
+	public PacketType getPacketType() {
+		return this.packetType;
+	}
+	
+	/**
+	 * Sets the ICN packet type of this message. Same as setting the
+	 * {@link #TYPE_PROPERTY} property to the name of the type.
+	 * @param type The packet type
+	 */
+	public void setPacketType(PacketType type) {
+		this.packetType = type;
+	}
+	
+	/**
+	 * Returns the name of the content a request packet asks for
+	 * @return The requested content name or null if not set
+	 */
+	public String getTarget() {
+		return this.target;
+	}
+	
+	/**
+	 * Sets the name of the content a request packet asks for. Same as
+	 * setting the {@link #TARGET_PROPERTY} property.
+	 * @param target The requested content name
+	 */
+	public void setTarget(String target) {
+		this.target = target;
+	}
+	
+	/**
+	 * Returns the name of the content a data packet carries
+	 * @return The content name or null if not set
+	 */
+	public String getContentName() {
+		return this.contentName;
+	}
+	
+	/**
+	 * Sets the name of the content a data packet carries. Same as setting
+	 * the {@link #CONTENT_NAME_PROPERTY} property.
+	 * @param name The content name
+	 */
+	public void setContentName(String name) {
+		this.contentName = name;
+	}
+	
+	/**
+	 * Returns the priority of this message
+	 * @return The priority or {@link #NO_PRIORITY} if not set
+	 */
+	public int getPriority() {
+		return this.priority;
+	}
+	
+	/**
+	 * Sets the priority of this message. Same as setting the
+	 * {@link #PRIORITY_PROPERTY} property.
+	 * @param priority The priority
+	 */
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+	
+	/**
+	 * Returns the location where this message was created
+	 * @return The creation location or null if not set
+	 */
+	public Coord getInitialLocation() {
+		return this.initialLocation;
+	}
+	
+	/**
+	 * Sets the location where this message was created. Same as setting
+	 * the {@link #LOCATION_PROPERTY} property.
+	 * @param location The creation location
+	 */
+	public void setInitialLocation(Coord location) {
+		this.initialLocation = location;
+	}
+	
+	/**
+	 * Returns the number of copies this message has left
+	 * @return The number of copies or {@link #NO_COPIES} if not set
+	 */
+	public int getCopies() {
+		return this.copies;
+	}
+	
+	/**
+	 * Returns true if the copy count of this message has been set
+	 * @return True if the message has a copy count
+	 */
+	public boolean hasCopies() {
+		return this.copies != NO_COPIES;
+	}
+	
+	/**
+	 * Sets the number of copies this message has left
+	 * @param copies The number of copies
+	 */
+	public void setCopies(int copies) {
+		this.copies = copies;
+	}
+	
 	/**
 	 * Adds a generic property for this message. The key can be any string but 
 	 * it should be such that no other class accidently uses the same value.
@@ -286,7 +547,7 @@ public class Message implements Comparable<Message> {
 	 * @throws SimError if the message already has a value for the given key
 	 */
 	public void addProperty(String key, Object value) throws SimError {
-		if (this.properties != null && this.properties.containsKey(key)) {
+		if (hasProperty(key)) {
 			/* check to prevent accidental name space collisions */
 			throw new SimError("Message " + this + " already contains value " + 
 					"for a key " + key);
@@ -302,12 +563,41 @@ public class Message implements Comparable<Message> {
 	 * @return The stored object or null if it isn't found
 	 */
 	public Object getProperty(String key) {
+		if (key.equals(TYPE_PROPERTY) && this.packetType != null) {
+			return this.packetType.getName();
+		}
+		else if (key.equals(TARGET_PROPERTY)) {
+			return this.target;
+		}
+		else if (key.equals(CONTENT_NAME_PROPERTY)) {
+			return this.contentName;
+		}
+		else if (key.equals(PRIORITY_PROPERTY)) {
+			return (this.priority == NO_PRIORITY ? null :
+				Integer.valueOf(this.priority));
+		}
+		else if (key.equals(LOCATION_PROPERTY)) {
+			return this.initialLocation;
+		}
+		
 		if (this.properties == null) {
 			return null;
 		}
 		return this.properties.get(key);
 	}
 	
+	/**
+	 * Returns true if a value has been stored for the given key
+	 * @param key The key to check
+	 * @return True if the key has a value
+	 */
+	private boolean hasProperty(String key) {
+		if (getProperty(key) != null) {
+			return true;
+		}
+		return this.properties != null && this.properties.containsKey(key);
+	}
+	
 	/**
 	 * Updates a value for an existing property. For storing the value first 
 	 * time, {@link #addProperty(String, Object)} should be used which
@@ -316,21 +606,68 @@ public class Message implements Comparable<Message> {
 	 * @param value The new value to store
 	 */
 	public void updateProperty(String key, Object value) throws SimError {
+		if (updateTypedProperty(key, value)) {
+			return;
+		}
+		
 		if (this.properties == null) {
 			/* lazy creation to prevent performance overhead for classes
 			   that don't use the property feature  */
 			this.properties = new HashMap<String, Object>();
-		}		
+		}
+		else if (this.propertiesShared) {
+			/* copy on write; the replicates keep the old map */
+			this.properties = new HashMap<String, Object>(this.properties);
+			this.propertiesShared = false;
+		}
 
 		this.properties.put(key, value);
 	}
 	
+	/**
+	 * Stores the value of a property that has a typed field
+	 * @param key The key of the property
+	 * @param value The new value
+	 * @return True if the value was stored in a typed field, false if it
+	 * must be stored in the generic properties
+	 * @throws SimError if the value has the wrong type for the property
+	 */
+	private boolean updateTypedProperty(String key, Object value) {
+		try {
+			if (key.equals(TYPE_PROPERTY)) {
+				/* other than ICN types (e.g. ping) are generic properties */
+				this.packetType = PacketType.forName(value);
+				return this.packetType != null;
+			}
+			else if (key.equals(TARGET_PROPERTY)) {
+				this.target = (String)value;
+			}
+			else if (key.equals(CONTENT_NAME_PROPERTY)) {
+				this.contentName = (String)value;
+			}
+			else if (key.equals(PRIORITY_PROPERTY)) {
+				this.priority = (value == null ? NO_PRIORITY :
+					((Integer)value).intValue());
+			}
+			else if (key.equals(LOCATION_PROPERTY)) {
+				this.initialLocation = (Coord)value;
+			}
+			else {
+				return false;
+			}
+		} catch (ClassCastException e) {
+			throw new SimError("Invalid value " + value + " for property " +
+					key + " of message " + this);
+		}
+		return true;
+	}
+	
 	/**
 	 * Returns a replicate of this message (identical except for the unique id)
 	 * @return A replicate of the message
 	 */
 	public Message replicate() {
-		Message m = new Message(from, to, id, size);
+		Message m = new Message(from, to, id, idIndex, size);
 		m.copyFrom(this);
 		return m;
 	}
@@ -364,4 +701,23 @@ public class Message implements Comparable<Message> {
 		this.appID = appID;
 	}
 	
+	/**
+	 * One node of a message's path. A node and the nodes before it are
+	 * shared by all the replicates that have passed the same hosts, so
+	 * replicating a message doesn't copy its path.
+	 */
+	private static class PathNode {
+		/** the host that was passed */
+		private final DTNHost host;
+		/** the node before this one or null if this is the first one */
+		private final PathNode previous;
+		/** number of nodes on the path up to and including this one */
+		private final int length;
+		
+		private PathNode(DTNHost host, PathNode previous) {
+			this.host = host;
+			this.previous = previous;
+			this.length = (previous == null ? 1 : previous.length + 1);
+		}
+	}
 }
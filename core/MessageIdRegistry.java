@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Registry that gives each message ID a dense integer index (0, 1, 2, ...).
+ * All replicates of a message have the same ID and thus the same index, so
+ * routers can keep per-message book keeping in primitive keyed maps and
+ * bit sets instead of maps keyed by ID strings. Indices are valid until the
+ * registry is reset between batch runs.
+ */
+public class MessageIdRegistry {
+	/** index of each registered ID */
+	private static HashMap<String, Integer> indices;
+	/** registered IDs by index */
+	private static List<String> ids;
+
+	static {
+		reset();
+		DTNSim.registerForReset(MessageIdRegistry.class.getCanonicalName());
+	}
+
+	/**
+	 * Returns the index of a message ID, registering the ID if it hasn't
+	 * been registered yet
+	 * @param id The message ID
+	 * @return The index of the ID
+	 */
+	public static int getIndex(String id) {
+		Integer index = indices.get(id);
+		if (index == null) {
+			index = ids.size();
+			indices.put(id, index);
+			ids.add(id);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the index of a message ID without registering it
+	 * @param id The message ID
+	 * @return The index of the ID or -1 if the ID hasn't been registered
+	 */
+	public static int indexOf(String id) {
+		Integer index = indices.get(id);
+		return (index == null ? -1 : index);
+	}
+
+	/**
+	 * Returns the message ID that has the given index
+	 * @param index The index
+	 * @return The message ID
+	 * @throws IndexOutOfBoundsException if no ID has the given index
+	 */
+	public static String getId(int index) {
+		return ids.get(index);
+	}
+
+	/**
+	 * Returns the number of registered IDs. All indices are smaller than
+	 * this.
+	 * @return The number of registered IDs
+	 */
+	public static int size() {
+		return ids.size();
+	}
+
+	/**
+	 * Forgets all registered IDs
+	 */
+	public static void reset() {
+		indices = new HashMap<String, Integer>();
+		ids = new ArrayList<String>();
+	}
+}
@@ -5,6 +5,7 @@
 package core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
@@ -13,15 +14,39 @@ import java.util.List;
  * post data, subscribe to data changes and also poll for data values.
  * This is fairly similar to Message class' property interface, but these
  * values are shared for a node instead of message.
+ * <P>Frequently used double and integer values can be registered as slots
+ * (see {@link #registerDouble(String)} and {@link #registerInt(String)}).
+ * The values of slots are stored unboxed in arrays indexed by the slot 
+ * handle, and the modules that hold the handle can read and update them
+ * without key lookups or boxing. The string keyed methods work for the 
+ * slot keys too, but box and unbox the values.</P>
  */
 public class ModuleCommunicationBus {
 	/** Initial capacity for the listener lists (instead of 10) */
 	private static int INIT_CAPACITY = 3;
+	
+	/** handles of the registered slots by their keys. The slots are 
+	 * shared by all buses and stay registered for the whole run (also
+	 * over batch runs) so the handles can be kept in static fields. */
+	private static HashMap<String, Integer> slotHandles = 
+		new HashMap<String, Integer>();
+	/** keys of the registered slots by handle */
+	private static ArrayList<String> slotKeys = new ArrayList<String>();
+	/** are the registered slots integer (not double) slots, by handle */
+	private static ArrayList<Boolean> intSlots = new ArrayList<Boolean>();
+	
 	/** The values in the blackboard (or null if none)*/
 	private HashMap<String, Object> values;
 	/** Subscribed listeners (or null if none)*/
 	private HashMap<String, List<ModuleCommunicationListener>> listeners;
 	
+	/* values and listeners of the slots by handle (or null if no slot has
+	   been used in this bus) */
+	private boolean[] hasValue;
+	private double[] doubleValues;
+	private int[] intValues;
+	private List<ModuleCommunicationListener>[] slotListeners;
+	
 	/**
 	 * Constructor.
 	 */
@@ -30,6 +55,218 @@ public class ModuleCommunicationBus {
 		this.listeners = null;
 	}
 	
+	/**
+	 * Registers a key as a double valued slot. Registering the same key
+	 * again returns the same handle.
+	 * @param key The key of the value
+	 * @return The handle of the slot
+	 * @throws SimError if the key is registered as an integer slot
+	 */
+	public static int registerDouble(String key) throws SimError {
+		return registerSlot(key, false);
+	}
+	
+	/**
+	 * Registers a key as an integer valued slot. Registering the same key
+	 * again returns the same handle.
+	 * @param key The key of the value
+	 * @return The handle of the slot
+	 * @throws SimError if the key is registered as a double slot
+	 */
+	public static int registerInt(String key) throws SimError {
+		return registerSlot(key, true);
+	}
+	
+	private static int registerSlot(String key, boolean isInt) {
+		Integer handle = slotHandles.get(key);
+		if (handle == null) {
+			handle = slotKeys.size();
+			slotHandles.put(key, handle);
+			slotKeys.add(key);
+			intSlots.add(isInt);
+		}
+		else if (intSlots.get(handle) != isInt) {
+			throw new SimError("Key " + key + " is already registered as " +
+					(isInt ? "a double" : "an integer") + " slot");
+		}
+		return handle;
+	}
+	
+	/**
+	 * Returns true if the bus contains a value for the given slot
+	 * @param slot Handle of the slot
+	 * @return true if the value exists, false if not
+	 */
+	public boolean contains(int slot) {
+		return this.hasValue != null && slot < this.hasValue.length && 
+			this.hasValue[slot];
+	}
+	
+	/**
+	 * Returns the value of a double slot
+	 * @param slot Handle of the slot
+	 * @param naValue The value to return if the slot has no value
+	 * @return The value of the slot, or the naValue if it has no value
+	 */
+	public double getDouble(int slot, double naValue) {
+		assert !intSlots.get(slot) : slotKeys.get(slot) + " is not a double";
+		return contains(slot) ? this.doubleValues[slot] : naValue;
+	}
+	
+	/**
+	 * Returns the value of an integer slot
+	 * @param slot Handle of the slot
+	 * @param naValue The value to return if the slot has no value
+	 * @return The value of the slot, or the naValue if it has no value
+	 */
+	public int getInt(int slot, int naValue) {
+		assert intSlots.get(slot) : slotKeys.get(slot) + " is not an integer";
+		return contains(slot) ? this.intValues[slot] : naValue;
+	}
+	
+	/**
+	 * Adds a value for a double slot
+	 * @param slot Handle of the slot
+	 * @param value The value to store
+	 * @throws SimError if there is already a value for the slot
+	 * @see #addProperty(String, Object)
+	 */
+	public void addDouble(int slot, double value) throws SimError {
+		checkNoValue(slot);
+		setDouble(slot, value);
+	}
+	
+	/**
+	 * Adds a value for an integer slot
+	 * @param slot Handle of the slot
+	 * @param value The value to store
+	 * @throws SimError if there is already a value for the slot
+	 * @see #addProperty(String, Object)
+	 */
+	public void addInt(int slot, int value) throws SimError {
+		checkNoValue(slot);
+		setInt(slot, value);
+	}
+	
+	/**
+	 * Sets the value of a double slot
+	 * @param slot Handle of the slot
+	 * @param value The new value
+	 */
+	public void setDouble(int slot, double value) {
+		assert !intSlots.get(slot) : slotKeys.get(slot) + " is not a double";
+		ensureSlot(slot);
+		this.doubleValues[slot] = value;
+		this.hasValue[slot] = true;
+		if (hasListeners(slot)) {
+			notifyListeners(this.slotListeners[slot], slotKeys.get(slot), 
+					value);
+		}
+	}
+	
+	/**
+	 * Sets the value of an integer slot
+	 * @param slot Handle of the slot
+	 * @param value The new value
+	 */
+	public void setInt(int slot, int value) {
+		assert intSlots.get(slot) : slotKeys.get(slot) + " is not an integer";
+		ensureSlot(slot);
+		this.intValues[slot] = value;
+		this.hasValue[slot] = true;
+		if (hasListeners(slot)) {
+			notifyListeners(this.slotListeners[slot], slotKeys.get(slot), 
+					value);
+		}
+	}
+	
+	/**
+	 * Changes the value of a double slot with the value delta
+	 * @param slot Handle of the slot
+	 * @param delta Value added to the old value
+	 * @return The new value
+	 * @throws SimError if the slot has no value
+	 */
+	public double updateDouble(int slot, double delta) throws SimError {
+		if (!contains(slot)) {
+			throw new SimError("No value for key " + slotKeys.get(slot));
+		}
+		double value = this.doubleValues[slot] + delta;
+		setDouble(slot, value);
+		return value;
+	}
+	
+	/**
+	 * Subscribes a module to changes of a slot's value
+	 * @param slot Handle of the slot
+	 * @param module The module to subscribe
+	 */
+	public void subscribe(int slot, ModuleCommunicationListener module) {
+		ensureSlot(slot);
+		if (this.slotListeners[slot] == null) {
+			this.slotListeners[slot] = 
+				new ArrayList<ModuleCommunicationListener>(INIT_CAPACITY);
+		}
+		this.slotListeners[slot].add(module);
+	}
+	
+	/**
+	 * Removes a notification subscription of a slot
+	 * @param slot Handle of the slot
+	 * @param module The module to whose subscription is removed
+	 */
+	public void unsubscribe(int slot, ModuleCommunicationListener module) {
+		if (hasListeners(slot)) {
+			this.slotListeners[slot].remove(module);
+		}
+	}
+	
+	private boolean hasListeners(int slot) {
+		return this.slotListeners != null && slot < this.slotListeners.length
+			&& this.slotListeners[slot] != null;
+	}
+	
+	private void checkNoValue(int slot) {
+		if (contains(slot)) {
+			/* check to prevent accidental name space collisions */
+			throw new SimError("A value for the key " + slotKeys.get(slot) + 
+					" already exists");
+		}
+	}
+	
+	/**
+	 * Makes sure the slot arrays have room for the given slot
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private void ensureSlot(int slot) {
+		if (this.hasValue != null && slot < this.hasValue.length) {
+			return;
+		}
+		int n = Math.max(slot + 1, slotKeys.size());
+		if (this.hasValue == null) {
+			this.hasValue = new boolean[n];
+			this.doubleValues = new double[n];
+			this.intValues = new int[n];
+			this.slotListeners = new List[n];
+		}
+		else {
+			this.hasValue = Arrays.copyOf(this.hasValue, n);
+			this.doubleValues = Arrays.copyOf(this.doubleValues, n);
+			this.intValues = Arrays.copyOf(this.intValues, n);
+			this.slotListeners = Arrays.copyOf(this.slotListeners, n);
+		}
+	}
+	
+	/**
+	 * Returns the handle of the slot of a key
+	 * @param key The key
+	 * @return The handle or -1 if the key is not registered as a slot
+	 */
+	private static int getSlot(String key) {
+		Integer handle = slotHandles.get(key);
+		return (handle != null ? handle : -1);
+	}
+	
 	/**
 	 * Adds a new property for this node. The key can be any string but 
 	 * it should be such that no other class accidently uses the same value.
@@ -40,7 +277,7 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if there is already a value for the given key
 	 */
 	public void addProperty(String key, Object value) throws SimError {
-		if (this.values != null && this.values.containsKey(key)) {
+		if (containsProperty(key)) {
 			/* check to prevent accidental name space collisions */
 			throw new SimError("A value for the key " + key + 
 					" already exists");
@@ -56,6 +293,14 @@ public class ModuleCommunicationBus {
 	 * @return The stored object or null if it isn't found
 	 */
 	public Object getProperty(String key) {
+		int slot = getSlot(key);
+		if (slot >= 0) {
+			if (!contains(slot)) {
+				return null;
+			}
+			return (intSlots.get(slot) ? (Object)this.intValues[slot] : 
+				(Object)this.doubleValues[slot]);
+		}
 		if (this.values == null) {
 			return null;
 		}
@@ -68,6 +313,10 @@ public class ModuleCommunicationBus {
 	 * @return true if the value exists, false if not
 	 */
 	public boolean containsProperty(String key) {
+		int slot = getSlot(key);
+		if (slot >= 0) {
+			return contains(slot);
+		}
 		if (this.values == null) {
 			return false;
 		}
@@ -80,8 +329,31 @@ public class ModuleCommunicationBus {
 	 * checks for name space clashes.
 	 * @param key The key which is used to lookup the value
 	 * @param value The new value to store
+	 * @throws SimError if the key is a slot and the value is not of the
+	 * slot's type
 	 */
 	public void updateProperty(String key, Object value) throws SimError {
+		int slot = getSlot(key);
+		if (slot >= 0) {
+			try {
+				if (intSlots.get(slot)) {
+					setInt(slot, (Integer)value);
+				}
+				else {
+					setDouble(slot, (Double)value);
+				}
+			}
+			catch (ClassCastException cce) {
+				throw new SimError("Invalid value " + value + " for key " + 
+						key);
+			}
+			catch (NullPointerException npe) {
+				throw new SimError("Invalid value " + value + " for key " + 
+						key);
+			}
+			return;
+		}
+		
 		if (this.values == null) {
 			/* lazy creation to prevent performance overhead for classes
 			   that don't use the property feature  */
@@ -100,6 +372,11 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if the value with the given key was not a Double
 	 */
 	public double updateDouble(String key, double delta) throws SimError {
+		int slot = getSlot(key);
+		if (slot >= 0 && !intSlots.get(slot)) {
+			return updateDouble(slot, delta);
+		}
+		
 		double current;
 		try {
 			current = (Double)getProperty(key);
@@ -161,6 +438,12 @@ public class ModuleCommunicationBus {
 	 * @param module The module to subscribe.
 	 */
 	public void subscribe(String key, ModuleCommunicationListener module) {
+		int slot = getSlot(key);
+		if (slot >= 0) {
+			subscribe(slot, module);
+			return;
+		}
+		
 		if (this.listeners == null) {
 			/* first listener for the whole node */
 			this.listeners = 
@@ -184,7 +467,12 @@ public class ModuleCommunicationBus {
 	 */
 	public void unsubscribe(String key, ModuleCommunicationListener module) {
 		List<ModuleCommunicationListener> list;
+		int slot = getSlot(key);
 		
+		if (slot >= 0) {
+			unsubscribe(slot, module);
+			return;
+		}
 		if (this.listeners == null) {
 			return; /* no subscriptions */
 		}
@@ -215,6 +503,14 @@ public class ModuleCommunicationBus {
 			return;
 		}
 		
+		notifyListeners(list, key, newValue);
+	}
+	
+	/**
+	 * Notifies the listeners of a list about a new value
+	 */
+	private void notifyListeners(List<ModuleCommunicationListener> list,
+			String key, Object newValue) {
 		for (ModuleCommunicationListener mcl : list) {
 			mcl.moduleValueChanged(key, newValue);
 		}
@@ -223,7 +519,16 @@ public class ModuleCommunicationBus {
 	
 	@Override
 	public String toString() {
-		return "ComBus with mapping: " + (this.values != null ? 
-				this.values.toString() : "n/a");
+		HashMap<String, Object> mapping = new HashMap<String, Object>();
+		if (this.values != null) {
+			mapping.putAll(this.values);
+		}
+		for (int i=0; this.hasValue != null && i<this.hasValue.length; i++) {
+			if (this.hasValue[i]) {
+				mapping.put(slotKeys.get(i), getProperty(slotKeys.get(i)));
+			}
+		}
+		return "ComBus with mapping: " + (!mapping.isEmpty() ? 
+				mapping.toString() : "n/a");
 	}
 }
@@ -6,6 +6,7 @@ package core;
 
 import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
+import interfaces.SparseConnectivityGrid;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -26,6 +27,21 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	/** scanning interval -setting id ({@value})*/
 	public static final String SCAN_INTERVAL_S = "scanInterval";
 	
+	/**
+	 * Should the near interface scans be skipped while no new connections 
+	 * are possible -setting id ({@value}). Boolean (true/false) variable.
+	 * Used in {@link World#OPTIMIZATION_SETTINGS_NS} name space. When an 
+	 * interface scans its near interfaces, the shortest distance to the edge
+	 * of an unconnected interface's range is stored. The following scans 
+	 * are skipped as long as no interface has moved near enough (see 
+	 * {@link DTNHost#getMovementBound()}) and the set of near interfaces 
+	 * hasn't changed. Scans are never skipped by interfaces whose or whose
+	 * near hosts' activeness changes over time (activeness settings, 
+	 * energy models, or scanning intervals), so the results are the same as
+	 * without skipping. Default is false.
+	 */
+	public static final String SKIP_SAFE_SCANS_S = "skipSafeScans";
+	
 	/** 
 	 * Sub-namespace for the network related settings in the Group namespace
 	 * ({@value}) 
@@ -37,7 +53,9 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	public static final String ACT_JITTER_S = "activenessOffsetJitter";
 	
 	/** {@link ModuleCommunicationBus} identifier for the "scanning interval" 
-    variable. */
+    variable. The IDs are for the first interface of the host; the
+    interfaces after it use the ID with a suffix (see 
+    {@link #getComBusId(String)}) */
 	public static final String SCAN_INTERVAL_ID = "Network.scanInterval";
 	/** {@link ModuleCommunicationBus} identifier for the "radio range" 
 	variable. Value type: double */
@@ -49,11 +67,31 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	private static final int CON_UP = 1;
 	private static final int CON_DOWN = 2;
 
+	/** margin for rounding errors in the safe scan distances */
+	private static final double SAFE_SCAN_MARGIN = 0.000001;
+
 	private static Random rng;
+	/** are safe scans skipped */
+	private static boolean skipSafeScans;
+	/** number of radio range changes in all interfaces */
+	private static long nrofRangeChanges;
 	protected DTNHost host = null;
 
 	protected String interfacetype;
+	/** suffix of this interface's combus IDs ("" for the first interface) */
+	private String comBusSuffix = "";
+	/* combus slot handles of this interface's variables */
+	private int scanIntervalSlot;
+	private int rangeSlot;
+	private int speedSlot;
 	protected List<Connection> connections; // connected hosts
+	/** number of (up) connections of this interface that are transferring
+	 * a message */
+	private int nrofTransfers;
+	/** number of connected interfaces that are transferring a message */
+	private int nrofTransferringPeers;
+	/** is the transmit speed shared between concurrent transfers */
+	private boolean transferSpeedShared;
 	private List<ConnectionListener> cListeners = null; // list of listeners
 	private int address; // network interface address
 	protected double transmitRange;
@@ -70,6 +108,27 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	private int activenessJitterMax;
 	/** this interface's activeness jitter value */
 	private int activenessJitterValue;
+	
+	/** index of this interface's cell in the optimizer or -1 if n/a */
+	private int optimizerCell = -1;
+	/** reused buffer for the near interfaces */
+	private ArrayList<NetworkInterface> nearInterfaces;
+	/** does {@link #nearInterfaces} contain the result of 
+	 * {@link #scanNearInterfaces()} */
+	private boolean nearScanned;
+	/** optimizer's state stamp at the time of the scan */
+	private long scannedNearVersion;
+	
+	/** can the latest scan be used for skipping scans */
+	private boolean safeScanValid;
+	/** optimizer's state stamp at the time of the latest scan */
+	private long safeScanVersion;
+	/** shortest distance to the range of an unconnected near interface */
+	private double safeScanSlack;
+	/** host movement bound at the time of the latest scan */
+	private double safeScanMovement;
+	/** number of range changes at the time of the latest scan */
+	private long safeScanRangeChanges;
 
 	static {
 		DTNSim.registerForReset(NetworkInterface.class.getCanonicalName());
@@ -81,6 +140,9 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public static void reset() {
 		rng = new Random(0);
+		nrofRangeChanges = 0;
+		Settings s = new Settings(World.OPTIMIZATION_SETTINGS_NS);
+		skipSafeScans = s.getBoolean(SKIP_SAFE_SCANS_S, false);
 	}
 	
 	/**
@@ -116,6 +178,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.transmitSpeed = ni.transmitSpeed;
 		this.scanInterval = ni.scanInterval;
 		this.ah = ni.ah;
+		this.transferSpeedShared = ni.transferSpeedShared;
 		
 		if (ni.activenessJitterMax > 0) {
 			this.activenessJitterValue = rng.nextInt(ni.activenessJitterMax);
@@ -142,19 +205,31 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.host = host;
 		ModuleCommunicationBus comBus = host.getComBus();
 		
-		if (!comBus.containsProperty(SCAN_INTERVAL_ID) &&
-		    !comBus.containsProperty(RANGE_ID)) {
-			/* add properties and subscriptions only for the 1st interface */
-			/* TODO: support for multiple interfaces */
-			comBus.addProperty(SCAN_INTERVAL_ID, this.scanInterval);
-			comBus.addProperty(RANGE_ID, this.transmitRange);
-			comBus.addProperty(SPEED_ID, this.transmitSpeed);
-			comBus.subscribe(SCAN_INTERVAL_ID, this);
-			comBus.subscribe(RANGE_ID, this);
-			comBus.subscribe(SPEED_ID, this);
+		/* the first interface uses the plain IDs and the next ones the IDs
+		   with the suffix ".2", ".3", ... */
+		this.comBusSuffix = "";
+		for (int n = 2; comBus.containsProperty(getComBusId(SCAN_INTERVAL_ID))
+				|| comBus.containsProperty(getComBusId(RANGE_ID)); n++) {
+			this.comBusSuffix = "." + n;
 		}
+		this.scanIntervalSlot = ModuleCommunicationBus.registerDouble(
+				getComBusId(SCAN_INTERVAL_ID));
+		this.rangeSlot = ModuleCommunicationBus.registerDouble(
+				getComBusId(RANGE_ID));
+		this.speedSlot = ModuleCommunicationBus.registerInt(
+				getComBusId(SPEED_ID));
+		comBus.addDouble(this.scanIntervalSlot, this.scanInterval);
+		comBus.addDouble(this.rangeSlot, this.transmitRange);
+		comBus.addInt(this.speedSlot, this.transmitSpeed);
+		comBus.subscribe(this.scanIntervalSlot, this);
+		comBus.subscribe(this.rangeSlot, this);
+		comBus.subscribe(this.speedSlot, this);
 		
-		if (transmitRange > 0) {
+		if (transmitRange > 0 && SparseConnectivityGrid.isEnabled()) {
+			optimizer = SparseConnectivityGrid.SparseConnectivityGridFactory(
+					this.interfacetype.hashCode(), transmitRange);
+			optimizer.addInterface(this);
+		} else if (transmitRange > 0) {
 			optimizer = ConnectivityGrid.ConnectivityGridFactory(
 					this.interfacetype.hashCode(), transmitRange);
 			optimizer.addInterface(this);
@@ -190,6 +265,19 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return interfacetype;
 	}
 	
+	/**
+	 * Returns this interface's {@link ModuleCommunicationBus} identifier of
+	 * an interface variable. The first interface of a host uses the plain
+	 * identifiers and the n:th one (n > 1) the identifiers with the suffix
+	 * ".n", e.g., "Network.radioRange.2" for the range of the second 
+	 * interface.
+	 * @param id The identifier (e.g., {@link #RANGE_ID})
+	 * @return The identifier for this interface
+	 */
+	public String getComBusId(String id) {
+		return id + this.comBusSuffix;
+	}
+	
 	/**
 	 * For setting the connectionListeners
 	 * @param cListeners List of connection listeners
@@ -237,7 +325,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		
 		active = ah.isActive(this.activenessJitterValue);
 		
-		if (active && host.getComBus().getDouble(EnergyModel.ENERGY_VALUE_ID,
+		if (active && host.getComBus().getDouble(EnergyModel.ENERGY_VALUE_SLOT,
 					1) <= 0) {
 			/* TODO: better way to check battery level */
 			/* no battery -> inactive */
@@ -247,11 +335,10 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		if (active == false && this.transmitRange > 0) {
 			/* not active -> make range 0 */
 			this.oldTransmitRange = this.transmitRange;
-			host.getComBus().updateProperty(RANGE_ID, 0.0);
+			host.getComBus().setDouble(this.rangeSlot, 0.0);
 		} else if (active == true && this.transmitRange == 0.0) {
 			/* active, but range == 0 -> restore range  */
-			host.getComBus().updateProperty(RANGE_ID, 
-					this.oldTransmitRange);
+			host.getComBus().setDouble(this.rangeSlot, this.oldTransmitRange);
 		}		
 		return active;
 	}
@@ -298,6 +385,117 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return false;
 	}
 
+	/**
+	 * Returns the number of message transfers that share the transmit 
+	 * speed of this interface
+	 * @return The number of transfers of the connections of this interface
+	 */
+	public int getNrofTransfers() {
+		return this.nrofTransfers;
+	}
+	
+	/**
+	 * Sets whether the transmit speed of this interface is shared between
+	 * the concurrent transfers of its connections. By default it isn't, and
+	 * every transfer runs at the full speed of its connection.
+	 * @param shared True if the speed should be shared
+	 * @see Connection#getTransferShare()
+	 */
+	public void setTransferSpeedShared(boolean shared) {
+		this.transferSpeedShared = shared;
+	}
+	
+	/**
+	 * Returns true if the transmit speed of this interface is shared between
+	 * the concurrent transfers of its connections
+	 * @return True if the speed is shared
+	 */
+	public boolean isTransferSpeedShared() {
+		return this.transferSpeedShared;
+	}
+	
+	/**
+	 * Returns the number of connected interfaces that are transferring a
+	 * message (over any of their connections)
+	 * @return The number of transferring peers
+	 */
+	public int getNrofTransferringPeers() {
+		return this.nrofTransferringPeers;
+	}
+	
+	/**
+	 * Informs the interface that a connection of it started a transfer.
+	 * If other transfers are going on and the transmit speed is shared, 
+	 * their connections are informed that their share of the speed changed.
+	 */
+	void transferStarted() {
+		this.nrofTransfers++;
+		if (this.nrofTransfers == 1) {
+			changeTransferringPeerCounts(1);
+		}
+		else if (this.transferSpeedShared) {
+			transferSharesChanged();
+		}
+	}
+	
+	/**
+	 * Informs the interface that a connection of it ended (finished, was
+	 * aborted or went down during) a transfer
+	 * @see #transferStarted()
+	 */
+	void transferEnded() {
+		this.nrofTransfers--;
+		if (this.nrofTransfers == 0) {
+			changeTransferringPeerCounts(-1);
+		}
+		else if (this.transferSpeedShared) {
+			transferSharesChanged();
+		}
+	}
+	
+	/**
+	 * Changes the transferring peer counts of the interfaces connected to
+	 * this one
+	 * @param delta How much to change the counts
+	 */
+	private void changeTransferringPeerCounts(int delta) {
+		for (int i=0, n=this.connections.size(); i<n; i++) {
+			Connection con = this.connections.get(i);
+			if (con.isUp()) {
+				con.getOtherInterface(this).nrofTransferringPeers += delta;
+			}
+		}
+	}
+	
+	/**
+	 * Updates the transferring peer counts of the interfaces of a 
+	 * connection that goes up or down
+	 * @param anotherInterface The interface in the other end
+	 * @param delta 1 if the connection goes up, -1 if it goes down
+	 */
+	private void changeTransferringPeers(NetworkInterface anotherInterface,
+			int delta) {
+		if (this.nrofTransfers > 0) {
+			anotherInterface.nrofTransferringPeers += delta;
+		}
+		if (anotherInterface.nrofTransfers > 0) {
+			this.nrofTransferringPeers += delta;
+		}
+	}
+	
+	/**
+	 * Informs the transferring connections that the number of transfers
+	 * sharing this interface changed
+	 */
+	private void transferSharesChanged() {
+		for (int i=0, n=this.connections.size(); i<n; i++) {
+			Connection con = this.connections.get(i);
+			if (con.isUp() && con.isTransferring()) {
+				con.transferSharesChanged();
+			}
+		}
+	}
+
 	/**
 	 * Connects the interface to another interface.
 	 * 
@@ -321,6 +519,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 
 		// set up bidirectional connection
 		anotherInterface.getConnections().add(con);
+		changeTransferringPeers(anotherInterface, 1);
 
 		// inform routers about the connection
 		this.host.connectionUp(con);
@@ -334,6 +533,9 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	protected void disconnect(Connection con, 
 			NetworkInterface anotherInterface) {
+		this.safeScanValid = false;
+		anotherInterface.safeScanValid = false;
+		changeTransferringPeers(anotherInterface, -1);
 		con.setUpState(false);
 		notifyConnectionListeners(CON_DOWN, anotherInterface.getHost());
 
@@ -379,6 +581,162 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return false;
 	}
 	
+	/**
+	 * Collects the interfaces that are near this interface to be used by
+	 * the next {@link #update()}. This method doesn't modify any shared 
+	 * state so it can be called for different interfaces in parallel, as 
+	 * long as no interface is moved in the optimizer at the same time.
+	 */
+	public void scanNearInterfaces() {
+		if (optimizer == null || isScanSkippable()) {
+			this.nearScanned = false;
+			return;
+		}
+		this.scannedNearVersion = optimizer.getNearInterfacesVersion(this);
+		collectNearInterfaces();
+		this.nearScanned = true;
+	}
+	
+	/**
+	 * Returns the interfaces that are near this interface. The result of 
+	 * the latest {@link #scanNearInterfaces()} is used if nothing has 
+	 * changed near this interface since the scan; otherwise the optimizer
+	 * is asked again. The scanned result is used only once. The returned 
+	 * list is reused by the next call, so it must not be stored.
+	 * @return List of near interfaces
+	 */
+	protected List<NetworkInterface> getNearInterfaces() {
+		boolean scanned = this.nearScanned;
+		this.nearScanned = false;
+		
+		if (!scanned || scannedNearVersion == -1 || 
+				scannedNearVersion != optimizer.getNearInterfacesVersion(this)) {
+			collectNearInterfaces();
+		}
+		return this.nearInterfaces;
+	}
+	
+	/**
+	 * Collects the near interfaces from the optimizer to the reused buffer
+	 */
+	private void collectNearInterfaces() {
+		if (this.nearInterfaces == null) {
+			this.nearInterfaces = new ArrayList<NetworkInterface>();
+		}
+		else {
+			this.nearInterfaces.clear();
+		}
+		optimizer.collectNearInterfaces(this, this.nearInterfaces);
+	}
+	
+	/**
+	 * Returns the index of this interface's cell in the connectivity 
+	 * optimizer. Optimizers can use this for storing the location of the
+	 * interface without a separate lookup table.
+	 * @return The cell index or -1 if the index is not set
+	 */
+	public int getOptimizerCell() {
+		return this.optimizerCell;
+	}
+	
+	/**
+	 * Sets the index of this interface's cell in the connectivity optimizer
+	 * @param index The index or -1 to clear the index
+	 * @see #getOptimizerCell()
+	 */
+	public void setOptimizerCell(int index) {
+		this.optimizerCell = index;
+	}
+	
+	/**
+	 * Connects to all near interfaces that qualify for a connection (see
+	 * {@link #connect(NetworkInterface)}). If skipping of safe scans is
+	 * enabled and no new connection is possible since the latest scan, 
+	 * nothing is done.
+	 */
+	protected void connectToNearInterfaces() {
+		if (isScanSkippable()) {
+			this.nearScanned = false;
+			return;
+		}
+		
+		List<NetworkInterface> interfaces = getNearInterfaces();
+		for (int i=0, n=interfaces.size(); i < n; i++) {
+			connect(interfaces.get(i));
+		}
+		
+		if (skipSafeScans) {
+			updateSafeScan(interfaces);
+		}
+	}
+	
+	/**
+	 * Returns true if the latest scan of the near interfaces is still 
+	 * valid, and no interface could have moved within range since it. Does 
+	 * not modify any state.
+	 * @return true if the scan can be skipped
+	 */
+	private boolean isScanSkippable() {
+		if (!safeScanValid || safeScanRangeChanges != nrofRangeChanges ||
+				safeScanVersion != optimizer.getNearInterfacesVersion(this)) {
+			return false;
+		}
+		
+		/* the distance between two hosts can't shrink more than the sum of
+		   the distances they have moved */
+		double movement = DTNHost.getMovementBound() - safeScanMovement;
+		return 2 * movement + SAFE_SCAN_MARGIN < safeScanSlack;
+	}
+	
+	/**
+	 * Stores the information needed for skipping the next scans
+	 * @param interfaces The interfaces that were scanned
+	 */
+	private void updateSafeScan(List<NetworkInterface> interfaces) {
+		long version = optimizer.getNearInterfacesVersion(this);
+		double slack = Double.MAX_VALUE;
+		this.safeScanValid = false;
+		
+		if (version == -1 || scanInterval != 0 || !isAlwaysActive()) {
+			return;
+		}
+		
+		for (int j=0, n=interfaces.size(); j < n; j++) {
+			NetworkInterface i = interfaces.get(j);
+			if (i == this || isConnected(i)) {
+				continue;
+			}
+			if (!i.isAlwaysActive()) {
+				return; /* the other interface may turn on or off */
+			}
+			
+			double range = Math.min(getTransmitRange(), i.getTransmitRange());
+			double distance = getLocation().distance(i.getLocation());
+			slack = Math.min(slack, distance - range);
+		}
+		
+		if (slack <= SAFE_SCAN_MARGIN) {
+			return;
+		}
+		
+		this.safeScanVersion = version;
+		this.safeScanSlack = slack;
+		this.safeScanMovement = DTNHost.getMovementBound();
+		this.safeScanRangeChanges = nrofRangeChanges;
+		this.safeScanValid = true;
+	}
+	
+	/**
+	 * Returns true if this interface is active all the time, i.e., checking
+	 * the activeness has no side effects and the result doesn't depend on 
+	 * time or energy.
+	 * @return true if the interface is always active
+	 */
+	private boolean isAlwaysActive() {
+		return (ah == null || ah.isAlwaysActive()) && !host.getComBus().
+			contains(EnergyModel.ENERGY_VALUE_SLOT);
+	}
+	
 	/**
 	 * Makes sure that a value is positive
 	 * @param value Value to check
@@ -428,14 +786,16 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * @param newValue New value for the variable
 	 */
 	public void moduleValueChanged(String key, Object newValue) {
-		if (key.equals(SCAN_INTERVAL_ID)) {
+		if (key.equals(getComBusId(SCAN_INTERVAL_ID))) {
 			this.scanInterval = (Double)newValue;	
+			this.safeScanValid = false;
 		}
-		else if (key.equals(SPEED_ID)) {
+		else if (key.equals(getComBusId(SPEED_ID))) {
 			this.transmitSpeed = (Integer)newValue;	
 		}
-		else if (key.equals(RANGE_ID)) {
+		else if (key.equals(getComBusId(RANGE_ID))) {
 			this.transmitRange = (Double)newValue;	
+			nrofRangeChanges++;
 		}
 		else {
 			throw new SimError("Unexpected combus ID " + key);
@@ -475,6 +835,9 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 			NetworkInterface anotherInterface) {
 		Connection con = this.connections.get(index);
 		DTNHost anotherNode = anotherInterface.getHost();
+		this.safeScanValid = false;
+		anotherInterface.safeScanValid = false;
+		changeTransferringPeers(anotherInterface, -1);
 		con.setUpState(false);
 		notifyConnectionListeners(CON_DOWN, anotherNode);
 
@@ -12,6 +12,7 @@ import java.io.PrintStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Properties;
 import java.util.Scanner;
@@ -35,6 +36,11 @@ import util.Range;
  * values (see {@link #setRunIndex(int)}). In file paths directory separator
  * should always be forward slash ("/").
  * </P> 
+ * <P> Setting values are resolved (trimmed and run-specific value picked)
+ * only once per run and cached by their full name, as are parsed numeric
+ * values and the constructors used by {@link #createIntializedObject}.
+ * Subclasses that modify {@link #props} directly must call
+ * {@link #propertiesChanged()} afterwards.</P>
  */
 public class Settings {
 	/** properties object where the setting files are read into */
@@ -59,6 +65,18 @@ public class Settings {
 	
 	/** run index for run-specific settings */
 	private static int runIndex = 0;
+	/** the properties that {@link #resolvedValues} were resolved from */
+	private static Properties cachedProps = null;
+	/** resolved setting values by full setting name; empty string for
+	 * settings that are not set */
+	private static HashMap<String, String> resolvedValues =
+		new HashMap<String, String>();
+	/** parsed double values by the setting value string */
+	private static HashMap<String, Double> parsedDoubles =
+		new HashMap<String, Double>();
+	/** settings-accepting constructors by class name */
+	private static HashMap<String, Constructor<?>> settingsConstructors =
+		new HashMap<String, Constructor<?>>();
 	private String namespace = null; // namespace to look the settings from
 	private String secondaryNamespace = null;
 	private Stack<String> oldNamespaces;
@@ -101,6 +119,17 @@ public class Settings {
 	public static void setRunIndex(int index) {
 		runIndex = index;
 		writtenSettings.clear();
+		propertiesChanged();
+	}
+	
+	/**
+	 * Clears the cached setting values. Must be called if the properties
+	 * are modified some other way than through {@link #init(String)} or
+	 * {@link #addSettings(String)}.
+	 */
+	protected static synchronized void propertiesChanged() {
+		resolvedValues.clear();
+		parsedDoubles.clear();
 	}
 	
 	/**
@@ -264,6 +293,7 @@ public class Settings {
 		} catch (IOException e) {
 			throw new SettingsError(e);
 		}
+		propertiesChanged();
 
 		outFile = props.getProperty(SETTING_OUTPUT_S);
 		if (outFile != null) {
@@ -293,6 +323,7 @@ public class Settings {
 		} catch (IOException e) {
 			throw new SettingsError(e);
 		}
+		propertiesChanged();
 	}
 	
 	/**
@@ -317,17 +348,7 @@ public class Settings {
 	 * @return True if the setting exists, false if not
 	 */
 	public boolean contains(String name) {
-		try {
-			String value = getSetting(name); 
-			if (value == null) {
-				return false;
-			}
-			
-			else return value.trim().length() > 0;
-		}
-		catch (SettingsError e) {
-			return false; // didn't find the setting
-		}
+		return lookup(name) != null;
 	}
 	
 	/**
@@ -358,37 +379,64 @@ public class Settings {
 	 * the namespaces
 	 */
 	public String getSetting(String name) {
-		String fullPropName;
-		if (props == null) {
-			init(null);
+		String value = lookup(name);
+		if (value == null) {
+			throw new SettingsError("Can't find setting " + 
+					getPropertyNamesString(name));
 		}
-		fullPropName = getFullPropertyName(name, false);
-		String value = props.getProperty(fullPropName);
+		return value;
+	}
+	
+	/**
+	 * Looks up a setting from the namespace and then from the secondary
+	 * namespace (if any) and writes it to the settings output
+	 * @param name Name of the setting
+	 * @return The value of the setting or null if it is not set (or is
+	 * just white space) in either namespace
+	 */
+	private String lookup(String name) {
+		String fullPropName = getFullPropertyName(name, false);
+		String value = getResolvedValue(fullPropName);
 		
-		if (value != null) { // found value, check if run setting can be parsed
-			value = parseRunSetting(value.trim());
-		}
-			
-		if ((value == null || value.length() == 0) && 
-				this.secondaryNamespace != null) {
+		if (value.length() == 0 && this.secondaryNamespace != null) {
 			// try secondary namespace if the value wasn't found from primary
 			fullPropName = getFullPropertyName(name, true);
-			value = props.getProperty(fullPropName);
-			
-			if (value != null) {
-				value = parseRunSetting(value.trim());
-			}
+			value = getResolvedValue(fullPropName);
 		}
 		
-		if (value == null || value.length() == 0) {
-			throw new SettingsError("Can't find setting " + 
-					getPropertyNamesString(name));
+		if (value.length() == 0) {
+			return null;
 		}
 		
 		outputSetting(fullPropName + " = " + value);
 		return value;
 	}
 	
+	/**
+	 * Returns the trimmed value of a property with the run-specific value
+	 * picked from a run array. Values are cached until the properties or
+	 * the run index change.
+	 * @param fullPropName Full name of the property
+	 * @return The value or an empty string if the property is not set
+	 */
+	private static synchronized String getResolvedValue(String fullPropName) {
+		if (props == null) {
+			init(null);
+		}
+		if (cachedProps != props) {
+			propertiesChanged();
+			cachedProps = props;
+		}
+		
+		String value = resolvedValues.get(fullPropName);
+		if (value == null) {
+			value = props.getProperty(fullPropName);
+			value = (value == null ? "" : parseRunSetting(value.trim()));
+			resolvedValues.put(fullPropName, value);
+		}
+		return value;
+	}
+	
 	/**
 	 * Returns the given setting if it exists, or defaultValue if the setting
 	 * does not exist
@@ -480,6 +528,15 @@ public class Settings {
 	 * (or the suffix wasn't recognized)
 	 */
 	private double parseDouble(String value, String setting) {
+		Double cached;
+		synchronized (Settings.class) {
+			cached = parsedDoubles.get(value);
+		}
+		if (cached != null) {
+			return cached;
+		}
+		
+		String valueString = value;
 		double number;
 		int multiplier = 1;
 		
@@ -503,6 +560,9 @@ public class Settings {
 			throw new SettingsError("Invalid numeric setting '" + value + 
 					"' for '" + setting +"'\n" + e.getMessage());
 		}
+		synchronized (Settings.class) {
+			parsedDoubles.put(valueString, number);
+		}
 		return number;
 	}
 	
@@ -748,10 +808,24 @@ public class Settings {
 	 * @throws SettingsError if object couldn't be created
 	 */
 	public Object createIntializedObject(String className) {
-		Class<?>[] argsClass = {Settings.class};
-		Object[] args = {this};
-
-		return loadObject(className, argsClass, args);
+		Constructor<?> constructor;
+		synchronized (Settings.class) {
+			constructor = settingsConstructors.get(className);
+		}
+		if (constructor == null) {
+			try {
+				constructor = getClass(className).getConstructor(
+						Settings.class);
+			} catch (NoSuchMethodException e) {
+				throw new SettingsError("Class '" + className + 
+						"' doesn't have a suitable constructor", e);
+			}
+			synchronized (Settings.class) {
+				settingsConstructors.put(className, constructor);
+			}
+		}
+		
+		return newInstance(constructor, className, this);
 	}
 	
 	/**
@@ -776,27 +850,47 @@ public class Settings {
 	 */
 	private Object loadObject(String className, Class<?>[] argsClass, 
 			Object[] args) {
-		Object o = null;
 		Class<?> objClass = getClass(className);
 		Constructor<?> constructor;
 		
 		try {
 			if (argsClass != null) { // use a specific constructor
 				constructor = objClass.getConstructor((Class[])argsClass);
-				o = constructor.newInstance(args);
 			}
 			else { // call empty constructor
-				o = objClass.newInstance();
+				/* like Class.newInstance(), accept also non-public
+				   constructors if they are accessible from here */
+				constructor = objClass.getDeclaredConstructor();
+				args = new Object[0];
 			}
 		} catch (SecurityException e) {
 			e.printStackTrace();
 			throw new SettingsError("Fatal exception " + e, e);
-		} catch (IllegalArgumentException e) {
-			e.printStackTrace();
-			throw new SettingsError("Fatal exception " + e, e);
 		} catch (NoSuchMethodException e) {
 			throw new SettingsError("Class '" + className + 
 					"' doesn't have a suitable constructor", e);
+		}
+
+		return newInstance(constructor, className, args);
+	}
+	
+	/**
+	 * Creates an object using the given constructor.
+	 * @param constructor The constructor
+	 * @param className Name of the class of the object (for error messages)
+	 * @param args Argument(s) of the constructor
+	 * @return The new object
+	 * @throws SettingsError if object couldn't be created
+	 */
+	private Object newInstance(Constructor<?> constructor, String className,
+			Object... args) {
+		Object o = null;
+		
+		try {
+			o = constructor.newInstance(args);
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+			throw new SettingsError("Fatal exception " + e, e);
 		} catch (InstantiationException e) {
 			throw new SettingsError("Can't create an instance of '" + 
 					className + "'", e);
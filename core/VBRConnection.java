@@ -56,6 +56,10 @@ public class VBRConnection extends Connection {
 			this.msgOnFly = newMessage;
 			this.msgsize = m.getSize();
 			this.msgsent = 0;
+			/* the transfer starts now even if the connection hasn't been
+			   updated at this time */
+			this.lastUpdate = SimClock.getTime();
+			transferStarted();
 		}
 
 		return retVal;
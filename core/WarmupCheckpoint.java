@@ -0,0 +1,251 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import movement.MovementModel;
+
+/**
+ * Checkpoint of the host movement state after the movement model warmup.
+ * The first run saves the state of the hosts after the warmup and the
+ * following runs that start from the same state restore it instead of
+ * running the warmup again. A checkpoint is identified by a hash of the
+ * movement state of all hosts before the warmup, the warmup time and the
+ * update interval, so runs with different seeds, host groups or movement
+ * settings get checkpoints of their own.
+ * <P>Only the state that the hosts' movement models write is covered (see
+ * {@link MovementModel#supportsCheckpoint()}); if any host's model doesn't
+ * support checkpoints, the warmup is always run. Settings that are read
+ * from files (e.g., map and point of interest files) are not part of the
+ * identity of the checkpoint, so the checkpoint directory must be cleared
+ * if the contents of those files change.</P>
+ */
+public class WarmupCheckpoint {
+	/**
+	 * Directory of the warmup checkpoints -setting id ({@value}). Read from
+	 * the {@link MovementModel#MOVEMENT_MODEL_NS} namespace. If not set,
+	 * checkpoints are not used.
+	 */
+	public static final String CHECKPOINT_DIR_S = "warmupCheckpointDir";
+	/** file name suffix of checkpoint files ({@value}) */
+	public static final String FILE_SUFFIX = ".ckpt";
+
+	private List<DTNHost> hosts;
+	private File file;
+
+	/**
+	 * Constructor. Computes the identity of the checkpoint from the current
+	 * (pre-warmup) state of the hosts.
+	 * @param dir The checkpoint directory
+	 * @param hosts The hosts of the world
+	 * @param warmupTime The warmup time
+	 * @param updateInterval The update interval used in the warmup
+	 */
+	private WarmupCheckpoint(File dir, List<DTNHost> hosts,
+			double warmupTime, double updateInterval) {
+		this.hosts = hosts;
+		this.file = new File(dir,
+				getKey(warmupTime, updateInterval) + FILE_SUFFIX);
+	}
+
+	/**
+	 * Returns a warmup checkpoint for the given hosts if checkpoints are
+	 * enabled and all the hosts support them. Must be called before the
+	 * warmup.
+	 * @param hosts The hosts of the world
+	 * @param warmupTime The warmup time
+	 * @param updateInterval The update interval used in the warmup
+	 * @return The checkpoint or null if checkpoints can't be used
+	 */
+	public static WarmupCheckpoint create(List<DTNHost> hosts,
+			double warmupTime, double updateInterval) {
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		if (!s.contains(CHECKPOINT_DIR_S)) {
+			return null;
+		}
+		for (DTNHost host : hosts) {
+			if (!host.canCheckpointMovement()) {
+				return null;
+			}
+		}
+
+		File dir = new File(s.getSetting(CHECKPOINT_DIR_S));
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new SettingsError("Can't create warmup checkpoint " +
+					"directory " + dir);
+		}
+		return new WarmupCheckpoint(dir, hosts, warmupTime, updateInterval);
+	}
+
+	/**
+	 * Restores the post-warmup state from the checkpoint file if it exists
+	 * @return True if the state was restored, false if there's no
+	 * checkpoint (and the warmup must be run)
+	 * @throws SimError if the checkpoint file can't be read
+	 */
+	public boolean restore() {
+		if (!this.file.exists()) {
+			return false;
+		}
+
+		ObjectInputStream in = null;
+		try {
+			in = new ObjectInputStream(new BufferedInputStream(
+					new FileInputStream(this.file)));
+			int nrofHosts = in.readInt();
+			if (nrofHosts != this.hosts.size()) {
+				throw new IOException("Checkpoint has " + nrofHosts +
+						" hosts instead of " + this.hosts.size());
+			}
+			MovementModel.readSharedState(in);
+			DTNHost.increaseMovementBound(in.readDouble() -
+					DTNHost.getMovementBound());
+			for (DTNHost host : this.hosts) {
+				host.readMovementState(in);
+			}
+		} catch (IOException e) {
+			throw new SimError("Can't read warmup checkpoint " + this.file +
+					": " + e.getMessage(), e);
+		} finally {
+			close(in);
+		}
+		return true;
+	}
+
+	/**
+	 * Saves the current (post-warmup) state to the checkpoint file. The
+	 * state is first written to a temporary file that is renamed once
+	 * complete, so other runs never see a partial checkpoint. An existing
+	 * checkpoint file (e.g., saved by a concurrent run) is replaced.
+	 * @throws SimError if the checkpoint file can't be written
+	 */
+	public void save() {
+		File tmp = null;
+		ObjectOutputStream out = null;
+		try {
+			tmp = File.createTempFile("warmup", ".tmp",
+					this.file.getParentFile());
+			out = new ObjectOutputStream(new BufferedOutputStream(
+					new FileOutputStream(tmp)));
+			writeState(out);
+			out.close();
+			out = null;
+			move(tmp, this.file);
+			tmp = null;
+		} catch (IOException e) {
+			throw new SimError("Can't write warmup checkpoint " + this.file +
+					": " + e.getMessage(), e);
+		} finally {
+			close(out);
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Moves a file over the target file, atomically if the file system
+	 * supports it. Unlike {@link File#renameTo(File)}, this works also on
+	 * platforms where renaming over an existing file fails.
+	 * @param from The file to move
+	 * @param to The target file
+	 * @throws IOException if moving fails
+	 */
+	private static void move(File from, File to) throws IOException {
+		try {
+			Files.move(from.toPath(), to.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(from.toPath(), to.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Returns the checkpoint file
+	 * @return The file
+	 */
+	public File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * Writes the movement state of all hosts
+	 * @param out The stream to write to
+	 * @throws IOException if writing fails
+	 */
+	private void writeState(ObjectOutputStream out) throws IOException {
+		out.writeInt(this.hosts.size());
+		/* shared rngs first so that the hosts' references to them are
+		   written as references */
+		MovementModel.writeSharedState(out);
+		out.writeDouble(DTNHost.getMovementBound());
+		for (DTNHost host : this.hosts) {
+			host.writeMovementState(out);
+		}
+	}
+
+	/**
+	 * Returns the hex encoded SHA-1 hash of the current state and the
+	 * warmup parameters
+	 */
+	private String getKey(double warmupTime, double updateInterval) {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new SimError(e);
+		}
+
+		OutputStream nullOut = new OutputStream() {
+			public void write(int b) { }
+			public void write(byte[] b, int off, int len) { }
+		};
+		try {
+			ObjectOutputStream out = new ObjectOutputStream(
+					new DigestOutputStream(nullOut, md));
+			out.writeDouble(warmupTime);
+			out.writeDouble(updateInterval);
+			writeState(out);
+			out.close();
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+
+		StringBuilder key = new StringBuilder();
+		for (byte b : md.digest()) {
+			key.append(String.format("%02x", b));
+		}
+		return key.toString();
+	}
+
+	private static void close(Closeable c) {
+		if (c != null) {
+			try {
+				c.close();
+			} catch (IOException e) {
+				/* nothing to do */
+			}
+		}
+	}
+}
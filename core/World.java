@@ -4,14 +4,20 @@
  */
 package core;
 
+import interfaces.SparseConnectivityGrid;
 import input.EventQueue;
 import input.ExternalEvent;
+import input.MergedEventQueue;
 import input.ScheduledUpdatesQueue;
+import input.TransferDoneQueue;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * World contains all the nodes and is responsible for updating their
@@ -36,14 +42,72 @@ public class World {
 	 * -setting id ({@value}). Boolean (true/false) variable. 
 	 */
 	public static final String SIMULATE_CON_ONCE_S = "simulateConnectionsOnce";
+	
+	/**
+	 * Should the host updates be split into a parallel scanning phase and
+	 * a sequential commit phase -setting id ({@value}). Boolean (true/false)
+	 * variable. In the parallel phase, all network interfaces collect their 
+	 * near interfaces; in the commit phase, the hosts are updated in the
+	 * normal order and a collected result is used only if nothing has
+	 * changed around the interface since the scan. Hence, the results are
+	 * the same as with sequential updates. Default is false.
+	 */
+	public static final String PARALLEL_HOST_UPDATES_S = "parallelHostUpdates";
+	
+	/**
+	 * Should the hosts be moved in parallel -setting id ({@value}). Boolean
+	 * (true/false) variable. Only the hosts whose movement models support it
+	 * (see {@link movement.MovementModel#supportsParallelMovement()}) are 
+	 * moved in parallel; the rest are moved sequentially after them. 
+	 * Movement models support parallel movement only if they have their own
+	 * rngs ({@link movement.MovementModel#RNG_PER_HOST_S}), which keeps the 
+	 * results repeatable. Default is false.
+	 */
+	public static final String PARALLEL_MOVEMENT_S = "parallelMovement";
+	
+	/**
+	 * Number of threads used for the parallel phases -setting id ({@value}).
+	 * Integer variable. Default is the number of available processors. 
+	 */
+	public static final String NROF_THREADS_S = "nrofThreads";
+	
+	/**
+	 * Should only the hosts an external event concerns be updated after
+	 * the event -setting id ({@value}). Boolean (true/false) variable. If
+	 * true, the hosts that an event looks up by their address (e.g., the
+	 * creator of a message or the hosts of a connection) or otherwise marks
+	 * with {@link #markForUpdate(DTNHost)} are updated after
+	 * the event, and all hosts are updated once at the end of the update
+	 * interval. Events that don't concern any particular host (e.g.,
+	 * scheduled updates) still update all hosts. If false, all hosts are
+	 * updated after every event. Default is false.
+	 */
+	public static final String DIRTY_HOST_UPDATES_S = "dirtyHostUpdates";
+	
+	/**
+	 * Should the transfers of constant bit-rate connections be finalized
+	 * at their done time -setting id ({@value}). Boolean (true/false) 
+	 * variable. If true, the sending and the receiving host of a transfer 
+	 * are updated at the time the transfer is done (see 
+	 * {@link TransferDoneQueue}), so the transfer is finalized and the 
+	 * hosts can start new transfers without waiting for the next update
+	 * interval. Best used with {@link #DIRTY_HOST_UPDATES_S}; otherwise 
+	 * every done transfer updates all hosts. If false, transfers are 
+	 * finalized at the first host update after their done time. Default is
+	 * false.
+	 */
+	public static final String TRANSFER_DONE_EVENTS_S = "transferDoneEvents";
+	
+	/** Hosts per task below which a parallel task isn't split further */
+	private static final int HOST_TASK_THRESHOLD = 64;
 
 	private int sizeX;
 	private int sizeY;
-	private List<EventQueue> eventQueues;
+	/** the scheduled updates and the external event queues merged */
+	private MergedEventQueue eventQueue;
 	private double updateInterval;
 	private SimClock simClock;
 	private double nextQueueEventTime;
-	private EventQueue nextEventQueue;
 	/** list of nodes; nodes are indexed by their network address */
 	private List<DTNHost> hosts;
 	private boolean simulateConnections;
@@ -56,6 +120,23 @@ public class World {
 	/** Queue of scheduled update requests */
 	private ScheduledUpdatesQueue scheduledUpdates;
 	private boolean simulateConOnce;
+	/** pool for the parallel phases or null if they are not used */
+	private ForkJoinPool updatePool;
+	/** should the host updates be done in two phases */
+	private boolean parallelHostUpdates;
+	/** hosts that can be moved in parallel or null if no hosts are moved
+	 * in parallel */
+	private List<DTNHost> parallelMovers;
+	/** hosts that must be moved sequentially */
+	private List<DTNHost> sequentialMovers;
+	/** should only the hosts concerned by an event be updated after it */
+	private boolean dirtyHostUpdates;
+	/** are the hosts marked for update being recorded as dirty */
+	private boolean recordDirtyHosts;
+	/** hosts concerned by the event being processed, in lookup order */
+	private List<DTNHost> dirtyHosts;
+	/** addresses of the hosts in {@link #dirtyHosts} */
+	private BitSet dirtyAddresses;
 
 	/**
 	 * Constructor.
@@ -69,14 +150,29 @@ public class World {
 		this.updateInterval = updateInterval;
 		this.updateListeners = updateListeners;
 		this.simulateConnections = simulateConnections;
-		this.eventQueues = eventQueues;
 		
 		this.simClock = SimClock.getInstance();
-		this.scheduledUpdates = new ScheduledUpdatesQueue();
 		this.isCancelled = false;
+		initSettings();
+		
+		this.scheduledUpdates = new ScheduledUpdatesQueue();
+		/* scheduled updates go first and done transfers last if other 
+		   events happen at the same time */
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		queues.add(this.scheduledUpdates);
+		queues.addAll(eventQueues);
+		if (new Settings(OPTIMIZATION_SETTINGS_NS).getBoolean(
+				TRANSFER_DONE_EVENTS_S, false)) {
+			TransferDoneQueue doneQueue = new TransferDoneQueue();
+			CBRConnection.setTransferDoneQueue(doneQueue);
+			queues.add(doneQueue);
+		}
+		else {
+			CBRConnection.setTransferDoneQueue(null);
+		}
+		this.eventQueue = new MergedEventQueue(queues);
 
 		setNextEventQueue();
-		initSettings();
 	}
 
 	/**
@@ -91,6 +187,46 @@ public class World {
 		}
 		simulateConOnce = s.getBoolean(SIMULATE_CON_ONCE_S, false);
 		
+		parallelHostUpdates = s.getBoolean(PARALLEL_HOST_UPDATES_S, false);
+		dirtyHostUpdates = s.getBoolean(DIRTY_HOST_UPDATES_S, false);
+		this.dirtyHosts = new ArrayList<DTNHost>();
+		this.dirtyAddresses = new BitSet(this.hosts.size());
+		this.recordDirtyHosts = false;
+		boolean parallelMovement = s.getBoolean(PARALLEL_MOVEMENT_S, false);
+		
+		if (parallelHostUpdates || parallelMovement) {
+			int nrofThreads = s.getInt(NROF_THREADS_S, 
+					Runtime.getRuntime().availableProcessors());
+			if (nrofThreads < 1) {
+				throw new SettingsError("Too small value (" + nrofThreads +
+						") for " + OPTIMIZATION_SETTINGS_NS + "." + 
+						NROF_THREADS_S);
+			}
+			this.updatePool = new ForkJoinPool(nrofThreads);
+		}
+		else {
+			this.updatePool = null;
+		}
+		
+		this.parallelMovers = null;
+		this.sequentialMovers = this.hosts;
+		if (parallelMovement) {
+			List<DTNHost> parallel = new ArrayList<DTNHost>();
+			List<DTNHost> sequential = new ArrayList<DTNHost>();
+			for (DTNHost host : this.hosts) {
+				if (host.canMoveInParallel()) {
+					parallel.add(host);
+				}
+				else {
+					sequential.add(host);
+				}
+			}
+			if (parallel.size() > 0) {
+				this.parallelMovers = parallel;
+				this.sequentialMovers = sequential;
+			}
+		}
+		
 		if(randomizeUpdates) {
 			// creates the update order array that can be shuffled
 			this.updateOrder = new ArrayList<DTNHost>(this.hosts);
@@ -103,7 +239,8 @@ public class World {
 	/**
 	 * Moves hosts in the world for the time given time initialize host 
 	 * positions properly. SimClock must be set to <CODE>-time</CODE> before
-	 * calling this method.
+	 * calling this method. If a {@link WarmupCheckpoint} of the warmup
+	 * exists, the host positions are restored from it instead.
 	 * @param time The total time (seconds) to move
 	 */
 	public void warmupMovementModel(double time) {
@@ -111,6 +248,13 @@ public class World {
 			return;
 		}
 
+		WarmupCheckpoint checkpoint = WarmupCheckpoint.create(hosts, time,
+				updateInterval);
+		if (checkpoint != null && checkpoint.restore()) {
+			simClock.setTime(0);
+			return;
+		}
+
 		while(SimClock.getTime() < -updateInterval) {
 			moveHosts(updateInterval);
 			simClock.advance(updateInterval);
@@ -119,27 +263,18 @@ public class World {
 		double finalStep = -SimClock.getTime();
 
 		moveHosts(finalStep);
-		simClock.setTime(0);	
+		simClock.setTime(0);
+		
+		if (checkpoint != null) {
+			checkpoint.save();
+		}
 	}
 
 	/**
-	 * Goes through all event Queues and sets the 
-	 * event queue that has the next event.
+	 * Sets the time of the next event in any of the event queues.
 	 */
 	public void setNextEventQueue() {
-		EventQueue nextQueue = scheduledUpdates;
-		double earliest = nextQueue.nextEventsTime();
-
-		/* find the queue that has the next event */
-		for (EventQueue eq : eventQueues) {
-			if (eq.nextEventsTime() < earliest){
-				nextQueue = eq;	
-				earliest = eq.nextEventsTime();
-			}
-		}
-
-		this.nextEventQueue = nextQueue;
-		this.nextQueueEventTime = earliest;
+		this.nextQueueEventTime = this.eventQueue.nextEventsTime();
 	}
 
 	/** 
@@ -155,9 +290,17 @@ public class World {
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
 			simClock.setTime(this.nextQueueEventTime);
-			ExternalEvent ee = this.nextEventQueue.nextEvent();
-			ee.processEvent(this);
-			updateHosts(); // update all hosts after every event
+			ExternalEvent ee = this.eventQueue.nextEvent();
+			if (this.dirtyHostUpdates) {
+				this.recordDirtyHosts = true;
+				ee.processEvent(this);
+				this.recordDirtyHosts = false;
+				updateDirtyHosts();
+			}
+			else {
+				ee.processEvent(this);
+				updateHosts(); // update all hosts after every event
+			}
 			setNextEventQueue();
 		}
 
@@ -172,12 +315,36 @@ public class World {
 		}
 	}
 
+	/**
+	 * Updates the hosts recorded as dirty while processing an event, in the
+	 * order they were looked up, or all hosts if no host was recorded.
+	 */
+	private void updateDirtyHosts() {
+		if (this.dirtyHosts.isEmpty()) {
+			updateHosts();
+			return;
+		}
+		
+		for (int i=0, n = this.dirtyHosts.size(); i < n; i++) {
+			if (this.isCancelled) {
+				break;
+			}
+			this.dirtyHosts.get(i).update(simulateConnections);
+		}
+		this.dirtyHosts.clear();
+		this.dirtyAddresses.clear();
+	}
+
 	/**
 	 * Updates all hosts (calls update for every one of them). If update
 	 * order randomizing is on (updateOrder array is defined), the calls
 	 * are made in random order.
 	 */
 	private void updateHosts() {
+		if (parallelHostUpdates && simulateConnections) {
+			scanNearInterfaces();
+		}
+		
 		if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
@@ -205,14 +372,51 @@ public class World {
 	}
 
 	/**
-	 * Moves all hosts in the world for a given amount of time
+	 * Lets the network interfaces of all hosts collect their near 
+	 * interfaces in parallel. Nothing is moved in the connectivity 
+	 * optimizers during this phase, and the cells of sparse grids are 
+	 * created before it.
+	 */
+	private void scanNearInterfaces() {
+		if (SparseConnectivityGrid.isEnabled()) {
+			SparseConnectivityGrid.createCells();
+		}
+		updatePool.invoke(new HostTask(hosts, 0, hosts.size(), 
+				new HostOperation() {
+			public void run(DTNHost host) {
+				for (NetworkInterface ni : host.getInterfaces()) {
+					ni.scanNearInterfaces();
+				}
+			}
+		}));
+	}
+
+	/**
+	 * Moves all hosts in the world for a given amount of time. The hosts 
+	 * that can be moved in parallel (if any) are moved first.
 	 * @param timeIncrement The time how long all nodes should move
 	 */
-	private void moveHosts(double timeIncrement) {
-		for (int i=0,n = hosts.size(); i<n; i++) {
-			DTNHost host = hosts.get(i);
+	private void moveHosts(final double timeIncrement) {
+		if (parallelMovers != null) {
+			updatePool.invoke(new HostTask(parallelMovers, 0, 
+					parallelMovers.size(), new HostOperation() {
+				public void run(DTNHost host) {
+					host.move(timeIncrement);
+				}
+			}));
+		}
+		
+		for (int i=0,n = sequentialMovers.size(); i<n; i++) {
+			DTNHost host = sequentialMovers.get(i);
 			host.move(timeIncrement);			
-		}		
+		}
+		
+		double longestMovement = 0;
+		for (int i=0,n = hosts.size(); i<n; i++) {
+			longestMovement = Math.max(longestMovement, 
+					hosts.get(i).getLastMovement());
+		}
+		DTNHost.increaseMovementBound(longestMovement);
 	}
 
 	/**
@@ -222,6 +426,16 @@ public class World {
 		this.isCancelled = true;
 	}
 
+	/**
+	 * Shuts down the threads of the parallel update phases. Must be called
+	 * when the simulation is over; the world can't be updated after this.
+	 */
+	public void done() {
+		if (this.updatePool != null) {
+			this.updatePool.shutdown();
+		}
+	}
+
 	/**
 	 * Returns the hosts in a list
 	 * @return the hosts in a list
@@ -247,7 +461,9 @@ public class World {
 	}
 
 	/**
-	 * Returns a node from the world by its address
+	 * Returns a node from the world by its address. The node is marked
+	 * for update after the event that is being processed (see
+	 * {@link #markForUpdate(DTNHost)}).
 	 * @param address The address of the node
 	 * @return The requested node or null if it wasn't found
 	 */
@@ -260,10 +476,28 @@ public class World {
 		DTNHost node = this.hosts.get(address);
 		assert node.getAddress() == address : "Node indexing failed. " + 
 			"Node " + node + " in index " + address;
-
+		
+		markForUpdate(node);
 		return node; 
 	}
 
+	/**
+	 * Marks a host to be updated after the external event that is being
+	 * processed when only the hosts an event concerns are updated (see
+	 * {@link #DIRTY_HOST_UPDATES_S}). Hosts looked up with 
+	 * {@link #getNodeByAddress(int)} are marked automatically. Has no 
+	 * effect outside event processing or if all hosts are updated after 
+	 * every event.
+	 * @param host The host to mark
+	 */
+	public void markForUpdate(DTNHost host) {
+		int address = host.getAddress();
+		if (this.recordDirtyHosts && !this.dirtyAddresses.get(address)) {
+			this.dirtyAddresses.set(address);
+			this.dirtyHosts.add(host);
+		}
+	}
+
 	/**
 	 * Schedules an update request to all nodes to happen at the specified 
 	 * simulation time.
@@ -272,4 +506,58 @@ public class World {
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
 	}
+
+	/**
+	 * Operation that is run for every host in a parallel phase
+	 */
+	private interface HostOperation {
+		/**
+		 * Runs the operation for a host. Is called concurrently for 
+		 * different hosts.
+		 * @param host The host
+		 */
+		public void run(DTNHost host);
+	}
+	
+	/**
+	 * Fork-join task that runs an operation for a range of hosts. The range
+	 * is split in halves until it is smaller than 
+	 * {@link World#HOST_TASK_THRESHOLD}.
+	 */
+	private static class HostTask extends RecursiveAction {
+		private static final long serialVersionUID = 42L;
+		private List<DTNHost> hosts;
+		private HostOperation operation;
+		private int from;
+		private int to;
+		
+		/**
+		 * Creates a task for the hosts in the given range
+		 * @param hosts List of all hosts
+		 * @param from Index of the first host (inclusive)
+		 * @param to Index of the last host (exclusive)
+		 * @param operation The operation to run for the hosts
+		 */
+		public HostTask(List<DTNHost> hosts, int from, int to, 
+				HostOperation operation) {
+			this.hosts = hosts;
+			this.from = from;
+			this.to = to;
+			this.operation = operation;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from <= HOST_TASK_THRESHOLD) {
+				for (int i=from; i<to; i++) {
+					operation.run(hosts.get(i));
+				}
+				return;
+			}
+			
+			int middle = (from + to) / 2;
+			invokeAll(new HostTask(hosts, from, middle, operation),
+					new HostTask(hosts, middle, to, operation));
+		}
+	}
 }
@@ -0,0 +1,16 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+/**
+ * Marker interface for event queues whose next event's time can change
+ * also when {@link #nextEvent()} is not called (e.g., when events are added
+ * to the queue from outside). The time of other event queues is expected to
+ * change only when their next event is taken, which lets
+ * {@link MergedEventQueue} keep them ordered.
+ */
+public interface DynamicEventQueue extends EventQueue {
+
+}
@@ -0,0 +1,168 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Event queue that merges several event queues into one. The queues are
+ * kept in a binary heap ordered by their next event's time, so taking the
+ * next event is an O(log n) operation in the number of queues. If several
+ * queues have an event at the same time, the one that is earlier in the
+ * list given to the constructor goes first.
+ * <P>The time of a queue in the heap is updated only when an event is taken
+ * from it through this queue. {@link DynamicEventQueue}s, whose time can
+ * change at any time, are not put in the heap but checked every time.</P>
+ */
+public class MergedEventQueue implements EventQueue {
+	/** the queues in the heap */
+	private EventQueue[] queues;
+	/** next event time of each queue in the heap */
+	private double[] times;
+	/** position of each queue in the heap in the original list */
+	private int[] order;
+	/** the dynamic queues */
+	private List<EventQueue> dynamicQueues;
+	/** position of each dynamic queue in the original list */
+	private List<Integer> dynamicOrder;
+
+	/**
+	 * Constructor.
+	 * @param eventQueues The queues to merge. If more than one queue has an
+	 * event at the same time, the event of the queue that is first in the
+	 * list is returned first.
+	 */
+	public MergedEventQueue(List<? extends EventQueue> eventQueues) {
+		List<EventQueue> ordered = new ArrayList<EventQueue>();
+		List<Integer> orderedIndices = new ArrayList<Integer>();
+		this.dynamicQueues = new ArrayList<EventQueue>();
+		this.dynamicOrder = new ArrayList<Integer>();
+		
+		for (int i = 0, n = eventQueues.size(); i < n; i++) {
+			EventQueue eq = eventQueues.get(i);
+			if (eq instanceof DynamicEventQueue) {
+				this.dynamicQueues.add(eq);
+				this.dynamicOrder.add(i);
+			}
+			else {
+				ordered.add(eq);
+				orderedIndices.add(i);
+			}
+		}
+		
+		int n = ordered.size();
+		this.queues = new EventQueue[n];
+		this.times = new double[n];
+		this.order = new int[n];
+		for (int i = 0; i < n; i++) {
+			this.queues[i] = ordered.get(i);
+			this.times[i] = this.queues[i].nextEventsTime();
+			this.order[i] = orderedIndices.get(i);
+		}
+		for (int i = n / 2 - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+	}
+	
+	/**
+	 * Returns the next event of the queue that has the earliest event or
+	 * an event with time Double.MAX_VALUE if no queue has events left
+	 * @return The next event
+	 */
+	public ExternalEvent nextEvent() {
+		int dynamic = nextDynamicQueue();
+		if (dynamic >= 0) {
+			return this.dynamicQueues.get(dynamic).nextEvent();
+		}
+		if (this.queues.length == 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		
+		ExternalEvent ee = this.queues[0].nextEvent();
+		this.times[0] = this.queues[0].nextEventsTime();
+		siftDown(0);
+		return ee;
+	}
+	
+	/**
+	 * Returns the time of the earliest event in any of the queues or
+	 * Double.MAX_VALUE if no queue has events left
+	 * @return The next event's time
+	 */
+	public double nextEventsTime() {
+		int dynamic = nextDynamicQueue();
+		if (dynamic >= 0) {
+			return this.dynamicQueues.get(dynamic).nextEventsTime();
+		}
+		return (this.queues.length > 0 ? this.times[0] : Double.MAX_VALUE);
+	}
+	
+	/**
+	 * Returns the index of the dynamic queue whose event should be taken
+	 * next, or -1 if the next event is in the heap
+	 */
+	private int nextDynamicQueue() {
+		int next = -1;
+		double earliest = Double.MAX_VALUE;
+		int earliestOrder = Integer.MAX_VALUE;
+		if (this.queues.length > 0) {
+			earliest = this.times[0];
+			earliestOrder = this.order[0];
+		}
+		
+		for (int i = 0, n = this.dynamicQueues.size(); i < n; i++) {
+			double time = this.dynamicQueues.get(i).nextEventsTime();
+			int o = this.dynamicOrder.get(i);
+			if (time < earliest || (time == earliest && o < earliestOrder)) {
+				next = i;
+				earliest = time;
+				earliestOrder = o;
+			}
+		}
+		return next;
+	}
+	
+	/**
+	 * Returns true if heap entry i should be before entry j
+	 */
+	private boolean before(int i, int j) {
+		if (this.times[i] != this.times[j]) {
+			return this.times[i] < this.times[j];
+		}
+		return this.order[i] < this.order[j];
+	}
+	
+	/**
+	 * Moves a heap entry down until the heap is in order
+	 */
+	private void siftDown(int i) {
+		int n = this.queues.length;
+		while (true) {
+			int first = i;
+			int left = 2 * i + 1;
+			if (left < n && before(left, first)) {
+				first = left;
+			}
+			if (left + 1 < n && before(left + 1, first)) {
+				first = left + 1;
+			}
+			if (first == i) {
+				return;
+			}
+			
+			EventQueue q = this.queues[i];
+			this.queues[i] = this.queues[first];
+			this.queues[first] = q;
+			double t = this.times[i];
+			this.times[i] = this.times[first];
+			this.times[first] = t;
+			int o = this.order[i];
+			this.order[i] = this.order[first];
+			this.order[first] = o;
+			i = first;
+		}
+	}
+}
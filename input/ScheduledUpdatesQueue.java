@@ -4,25 +4,30 @@
  */
 package input;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Event queue where simulation objects can request an update to happen
  * at the specified simulation time. Multiple updates at the same time 
- * are merged to a single update.
+ * are merged to a single update. The requested times are kept in a binary
+ * heap so adding an update and taking the next one are O(log n)
+ * operations.
  */
-public class ScheduledUpdatesQueue implements EventQueue {
-	/** Time of the event (simulated seconds) */
-	private ExternalEvent nextEvent;
-	private List<ExternalEvent> updates;
+public class ScheduledUpdatesQueue implements DynamicEventQueue {
+	/** initial capacity of the heap */
+	private static final int INITIAL_CAPACITY = 16;
+	/** requested update times as a binary min-heap (may contain duplicates
+	 * that are merged when the time is taken from the queue) */
+	private double[] times;
+	/** number of times in the heap */
+	private int size;
 	
 	/**
 	 * Constructor. Creates an empty update queue.
 	 */
 	public ScheduledUpdatesQueue(){
-		this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		this.updates = new ArrayList<ExternalEvent>();
+		this.times = new double[INITIAL_CAPACITY];
+		this.size = 0;
 	}
 	
 	/**
@@ -31,16 +36,16 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event
 	 */
 	public ExternalEvent nextEvent() {
-		ExternalEvent event = this.nextEvent;
-		
-		if (this.updates.size() == 0) {
-			this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
+		if (this.size == 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
 		}
-		else {
-			this.nextEvent = this.updates.remove(0);
+		
+		double time = removeFirst();
+		while (this.size > 0 && this.times[0] == time) {
+			removeFirst(); /* merge the requests for the same time */
 		}
 		
-		return event;
+		return new ExternalEvent(time);
 	}
 	
 	/**
@@ -49,7 +54,7 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event's time
 	 */
 	public double nextEventsTime() {
-		return this.nextEvent.getTime();
+		return (this.size > 0 ? this.times[0] : Double.MAX_VALUE);
 	}
 
 	/**
@@ -57,47 +62,61 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @param simTime The time when the update should happen
 	 */
 	public void addUpdate(double simTime) {
-		ExternalEvent ee = new ExternalEvent(simTime);
-
-		if (ee.compareTo(nextEvent) == 0) { // this event is already next
-			return;
+		if (this.size > 0 && this.times[0] == simTime) {
+			return; // this event is already next
 		}
-		else if (this.nextEvent.getTime() > simTime) { // new nextEvent
-			putToQueue(this.nextEvent); // put the old nextEvent back to q
-			this.nextEvent = ee;
+		if (this.size == this.times.length) {
+			this.times = Arrays.copyOf(this.times, this.size * 2);
 		}
-		else { // given event happens later..
-			putToQueue(ee);
+		
+		/* sift up */
+		int i = this.size++;
+		while (i > 0 && simTime < this.times[(i - 1) / 2]) {
+			this.times[i] = this.times[(i - 1) / 2];
+			i = (i - 1) / 2;
 		}
+		this.times[i] = simTime;
 	}
 	
 	/**
-	 * Puts a event to the queue in the right place
-	 * @param ee The event to put to the queue
+	 * Removes and returns the first time of the heap
+	 * @return The earliest time
 	 */
-	private void putToQueue(ExternalEvent ee) {
-		double eeTime = ee.getTime();
+	private double removeFirst() {
+		double first = this.times[0];
+		double last = this.times[--this.size];
 		
-		for (int i=0, n=this.updates.size(); i<n; i++) {
-			double time = updates.get(i).getTime();
-			if (time == eeTime) {
-				return; // update with the given time exists -> no need for new
+		/* sift down */
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= this.size) {
+				break;
+			}
+			if (child + 1 < this.size && 
+					this.times[child + 1] < this.times[child]) {
+				child++;
 			}
-			else if (eeTime < time) {
-				this.updates.add(i, ee);
-				return;
+			if (last <= this.times[child]) {
+				break;
 			}
+			this.times[i] = this.times[child];
+			i = child;
 		}
+		this.times[i] = last;
 		
-		/* all existing updates are earlier -> add to the end of the list */
-		this.updates.add(ee);  
+		return first;
 	}
 	
 	public String toString() {
-		String times = "updates @ " + this.nextEvent.getTime();
+		double[] sorted = Arrays.copyOf(this.times, this.size);
+		Arrays.sort(sorted);
+		String times = "updates @ " + nextEventsTime();
 		
-		for (ExternalEvent ee : this.updates) {
-			times += ", " + ee.getTime();
+		for (int i = 1; i < sorted.length; i++) {
+			if (sorted[i] != sorted[i - 1]) {
+				times += ", " + sorted[i];
+			}
 		}
 		
 		return times;
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.PriorityQueue;
+
+import core.CBRConnection;
+import core.DTNHost;
+import core.Message;
+import core.World;
+
+/**
+ * Event queue of the times when the current transfers of connections are
+ * done. Connections add their transfers when they start them (and again if
+ * the done time changes) and the queue creates an event at the done time
+ * of each transfer. The event updates the sending and the receiving host,
+ * so the transfer is finalized at its done time instead of at the next
+ * update interval. Transfers that have been finalized, aborted or moved to
+ * another time are dropped when they come up in the queue.
+ */
+public class TransferDoneQueue implements DynamicEventQueue {
+	/** the transfers ordered by their done time */
+	private PriorityQueue<TransferDoneEvent> transfers;
+	/** sequence number of the next added transfer */
+	private long nextSeq;
+
+	/**
+	 * Constructor. Creates an empty queue.
+	 */
+	public TransferDoneQueue() {
+		this.transfers = new PriorityQueue<TransferDoneEvent>();
+		this.nextSeq = 0;
+	}
+
+	/**
+	 * Adds the current transfer of a connection to the queue
+	 * @param con The connection
+	 * @param from The sending host
+	 */
+	public void addTransfer(CBRConnection con, DTNHost from) {
+		this.transfers.add(new TransferDoneEvent(con, from, this.nextSeq++));
+	}
+
+	/**
+	 * Returns the event of the transfer that is done next or an event with
+	 * time Double.MAX_VALUE if there are no transfers
+	 * @return The next event
+	 */
+	public ExternalEvent nextEvent() {
+		dropStale();
+		if (this.transfers.isEmpty()) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		return this.transfers.poll();
+	}
+
+	/**
+	 * Returns the done time of the transfer that is done next or
+	 * Double.MAX_VALUE if there are no transfers
+	 * @return The time of the next event
+	 */
+	public double nextEventsTime() {
+		dropStale();
+		return (this.transfers.isEmpty() ? Double.MAX_VALUE :
+			this.transfers.peek().getTime());
+	}
+
+	/**
+	 * Removes the transfers that are no longer going on (with the same
+	 * done time) from the head of the queue
+	 */
+	private void dropStale() {
+		while (!this.transfers.isEmpty() && this.transfers.peek().isStale()) {
+			this.transfers.poll();
+		}
+	}
+
+	/**
+	 * Event of a transfer that is done
+	 */
+	private static class TransferDoneEvent extends ExternalEvent {
+		private static final long serialVersionUID = 1L;
+		private CBRConnection con;
+		private DTNHost from;
+		private Message message;
+		private long seq;
+
+		/**
+		 * Constructor. Creates an event for the current transfer of a
+		 * connection.
+		 */
+		private TransferDoneEvent(CBRConnection con, DTNHost from, long seq) {
+			super(con.getTransferDoneTime());
+			this.con = con;
+			this.from = from;
+			this.message = con.getMessage();
+			this.seq = seq;
+		}
+
+		/**
+		 * Returns true if the transfer of the event isn't going on any more
+		 * or it is done at another time
+		 */
+		private boolean isStale() {
+			return this.con.getMessage() != this.message ||
+				this.con.getTransferDoneTime() != this.time;
+		}
+
+		/**
+		 * Requests an update of the sending and the receiving host
+		 */
+		@Override
+		public void processEvent(World world) {
+			world.markForUpdate(this.from);
+			world.markForUpdate(this.con.getOtherNode(this.from));
+		}
+
+		/**
+		 * Compares the events by their time and the order they were added
+		 */
+		@Override
+		public int compareTo(ExternalEvent other) {
+			int c = super.compareTo(other);
+			if (c == 0 && other instanceof TransferDoneEvent) {
+				long otherSeq = ((TransferDoneEvent)other).seq;
+				c = (this.seq < otherSeq ? -1 : (this.seq > otherSeq ? 1 : 0));
+			}
+			return c;
+		}
+
+		@Override
+		public String toString() {
+			return "TransferDone @" + this.time + " " + this.con;
+		}
+	}
+}
@@ -7,6 +7,7 @@ package interfaces;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 
 import movement.MovementModel;
 
@@ -55,8 +56,12 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	public static final int DEF_CON_CELL_SIZE_MULT = 5;
 	
 	private GridCell[][] cells;
-	private HashMap<NetworkInterface, GridCell> ginterfaces;
+	/** all interfaces in the grid; the cell of an interface is stored in
+	 * the interface (see {@link NetworkInterface#getOptimizerCell()}) */
+	private HashSet<NetworkInterface> ginterfaces;
 	private int cellSize;
+	/** number of changes in the cells of this grid */
+	private long nrofChanges;
 	private int rows;
 	private int cols;
 	private static int worldSizeX;
@@ -109,7 +114,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 				this.cells[i][j] = new GridCell();
 			}
 		}
-		ginterfaces = new HashMap<NetworkInterface,GridCell>();
+		ginterfaces = new HashSet<NetworkInterface>();
 	}
 
 	/**
@@ -137,9 +142,10 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The new network interface
 	 */
 	public void addInterface(NetworkInterface ni) {
-		GridCell c = cellFromCoord(ni.getLocation());
-		c.addInterface(ni);
-		ginterfaces.put(ni,c);
+		int index = cellIndexFromCoord(ni.getLocation());
+		cellByIndex(index).addInterface(ni);
+		ni.setOptimizerCell(index);
+		ginterfaces.add(ni);
 	}
 
 	/** 
@@ -147,11 +153,10 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to be removed
 	 */
 	public void removeInterface(NetworkInterface ni) {
-		GridCell c = ginterfaces.get(ni);
-		if (c != null) {
-			c.removeInterface(ni);
+		if (ginterfaces.remove(ni)) {
+			cellByIndex(ni.getOptimizerCell()).removeInterface(ni);
+			ni.setOptimizerCell(-1);
 		}
-		ginterfaces.remove(ni);
 	}
 
 	/**
@@ -169,48 +174,50 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to update
 	 */
 	public void updateLocation(NetworkInterface ni) {
-		GridCell oldCell = (GridCell)ginterfaces.get(ni);
-		GridCell newCell = cellFromCoord(ni.getLocation());
+		int oldIndex = ni.getOptimizerCell();
+		int newIndex = cellIndexFromCoord(ni.getLocation());
 
-		if (newCell != oldCell) {
-			oldCell.moveInterface(ni, newCell);
-			ginterfaces.put(ni,newCell);
+		if (newIndex != oldIndex) {
+			cellByIndex(oldIndex).moveInterface(ni, cellByIndex(newIndex));
+			ni.setOptimizerCell(newIndex);
 		}
 	}
 
 	/**
-	 * Finds all neighboring cells and the cell itself based on the coordinates
-	 * @param c The coordinates
-	 * @return Array of neighboring cells 
+	 * Returns a stamp of the cells near the given interface. The stamp is 
+	 * the largest version of the cell where the interface is located and 
+	 * its neighboring cells. A cell's version is set to the grid's change
+	 * count every time the cell gains or loses an interface, so the stamp
+	 * grows whenever any of the cells changes, including when the interface
+	 * itself moves to another cell.
+	 * @param ni The interface whose neighboring cells are checked
+	 * @return The stamp
 	 */
-	private GridCell[] getNeighborCellsByCoord(Coord c) {
+	public long getNearInterfacesVersion(NetworkInterface ni) {
+		long version = 0;
+		Coord c = ni.getLocation();
 		// +1 due empty cells on both sides of the matrix
 		int row = (int)(c.getY()/cellSize) + 1;
 		int col = (int)(c.getX()/cellSize) + 1;
-		return getNeighborCells(row,col);
-	}
-
-	/**
-	 * Returns an array of Cells that contains the neighbors of a certain
-	 * cell and the cell itself.
-	 * @param row Row index of the cell
-	 * @param col Column index of the cell
-	 * @return Array of neighboring Cells
-	 */
-	private GridCell[] getNeighborCells(int row, int col) {
-		return new GridCell[] {
-			cells[row-1][col-1],cells[row-1][col],cells[row-1][col+1],//1st row
-			cells[row][col-1],cells[row][col],cells[row][col+1],//2nd row
-			cells[row+1][col-1],cells[row+1][col],cells[row+1][col+1]//3rd row
-		};
+		
+		for (int i=row-1; i <= row+1; i++) {
+			for (int j=col-1; j <= col+1; j++) {
+				if (cells[i][j].version > version) {
+					version = cells[i][j].version;
+				}
+			}
+		}
+		return version;
 	}
 
 	/**
-	 * Get the cell having the specific coordinates
+	 * Get the index of the cell having the specific coordinates. The index
+	 * is <code>row * (number of columns) + column</code>, including the
+	 * empty cells on both sides of the matrix.
 	 * @param c Coordinates
-	 * @return The cell
+	 * @return The cell's index
 	 */
-	private GridCell cellFromCoord(Coord c) {
+	private int cellIndexFromCoord(Coord c) {
 		// +1 due empty cells on both sides of the matrix
 		int row = (int)(c.getY()/cellSize) + 1; 
 		int col = (int)(c.getX()/cellSize) + 1;
@@ -218,14 +225,24 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " + 
 		c + " is out of world's bounds";
 		
-		return this.cells[row][col];
+		return row * (cols + 2) + col;
+	}
+	
+	/**
+	 * Returns the cell with the given index
+	 * @param index The index
+	 * @return The cell
+	 * @see #cellIndexFromCoord(Coord)
+	 */
+	private GridCell cellByIndex(int index) {
+		return this.cells[index / (cols + 2)][index % (cols + 2)];
 	}
 
 	/**
 	 * Returns all interfaces that use the same technology and channel
 	 */
 	public Collection<NetworkInterface> getAllInterfaces() {
-		return (Collection<NetworkInterface>)ginterfaces.keySet();
+		return ginterfaces;
 	}
 
 	/**
@@ -237,17 +254,39 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni) {
 		ArrayList<NetworkInterface> niList = new ArrayList<NetworkInterface>();
-		GridCell loc = (GridCell)ginterfaces.get(ni);
+		collectNearInterfaces(ni, niList);
+		return niList;
+	}
+
+	/**
+	 * Adds all interfaces that are "near" (i.e., in neighboring grid cells) 
+	 * and use the same technology and channel as the given interface to
+	 * the given collection. Doesn't allocate any objects (unless the 
+	 * collection has to grow).
+	 * @param ni The interface whose neighboring interfaces are collected
+	 * @param result The collection where the interfaces are added to
+	 */
+	@Override
+	public void collectNearInterfaces(NetworkInterface ni, 
+			Collection<NetworkInterface> result) {
+		if (ni.getOptimizerCell() == -1) {
+			return; /* not in this grid */
+		}
 		
-		if (loc != null) {	
-			GridCell[] neighbors = 
-				getNeighborCellsByCoord(ni.getLocation());
-			for (int i=0; i < neighbors.length; i++) {
-				niList.addAll(neighbors[i].getInterfaces());
+		Coord c = ni.getLocation();
+		// +1 due empty cells on both sides of the matrix
+		int row = (int)(c.getY()/cellSize) + 1;
+		int col = (int)(c.getX()/cellSize) + 1;
+		
+		for (int i=row-1; i <= row+1; i++) {
+			for (int j=col-1; j <= col+1; j++) {
+				ArrayList<NetworkInterface> cellInterfaces = 
+					cells[i][j].interfaces;
+				for (int k=0, n=cellInterfaces.size(); k < n; k++) {
+					result.add(cellInterfaces.get(k));
+				}
 			}
 		}
-		
-		return niList;
 	}
 
 
@@ -268,6 +307,9 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		// how large array is initially chosen
 		private static final int EXPECTED_INTERFACE_COUNT = 5;
 		private ArrayList<NetworkInterface> interfaces;
+		/** grid's change count at the time an interface last entered or 
+		 * left the cell */
+		private long version;
 
 		private GridCell() {
 			this.interfaces = new ArrayList<NetworkInterface>(
@@ -288,6 +330,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		 */
 		public void addInterface(NetworkInterface ni) {
 			this.interfaces.add(ni);
+			this.version = ++nrofChanges;
 		}
 
 		/**
@@ -296,6 +339,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		 */
 		public void removeInterface(NetworkInterface ni) {
 			this.interfaces.remove(ni);
+			this.version = ++nrofChanges;
 		}
 
 		/**
@@ -306,6 +350,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		public void moveInterface(NetworkInterface ni, GridCell to) {
 			to.addInterface(ni);
 			boolean removeOk = this.interfaces.remove(ni); 
+			this.version = ++nrofChanges;
 			assert removeOk : "interface " + ni + 
 				" not found from cell with " + interfaces.toString();
 		}
@@ -40,6 +40,35 @@ abstract public class ConnectivityOptimizer {
 	abstract public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni);
 
+	/**
+	 * Adds all network interfaces that might be located so that they can be
+	 * connected with the network interface to the given collection. The 
+	 * collection is not cleared first. Unlike 
+	 * {@link #getNearInterfaces(NetworkInterface)}, this method lets the 
+	 * caller reuse the same collection between the calls. This 
+	 * implementation adds the result of 
+	 * {@link #getNearInterfaces(NetworkInterface)}.
+	 * @param ni network interface that needs to be connected
+	 * @param result The collection where the near interfaces are added to
+	 */
+	public void collectNearInterfaces(NetworkInterface ni, 
+			Collection<NetworkInterface> result) {
+		result.addAll(getNearInterfaces(ni));
+	}
+
+	/**
+	 * Returns a stamp of the state of the optimizer around the given network
+	 * interface. The stamp changes every time the result of 
+	 * {@link #getNearInterfaces(NetworkInterface)} may change, so a result 
+	 * collected earlier is still valid if the stamp has stayed the same.
+	 * This implementation doesn't track changes and always returns -1.
+	 * @param ni network interface whose surroundings are checked
+	 * @return The stamp, or -1 if changes are not tracked
+	 */
+	public long getNearInterfacesVersion(NetworkInterface ni) {
+		return -1;
+	}
+
 	/**
 	 * Finds all other interfaces that are registered to the
 	 * ConnectivityOptimizer
@@ -4,7 +4,6 @@
  */
 package interfaces;
 
-import java.util.Collection;
 import core.Connection;
 import core.NetworkInterface;
 import core.Settings;
@@ -57,7 +56,7 @@ public class DistanceCapacityInterface extends NetworkInterface {
 	 */
 	public void connect(NetworkInterface anotherInterface) {
 		if (isScanning()  
-				&& anotherInterface.getHost().isRadioActive() 
+				&& anotherInterface.isActive() 
 				&& isWithinRange(anotherInterface) 
 				&& !isConnected(anotherInterface)
 				&& (this != anotherInterface)) {
@@ -95,11 +94,7 @@ public class DistanceCapacityInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
-		}
+		connectToNearInterfaces();
 
 		/* update all connections */
 		for (Connection con : getConnections()) {
@@ -4,8 +4,6 @@
  */
 package interfaces;
 
-import java.util.Collection;
-
 import core.Connection;
 import core.NetworkInterface;
 import core.Settings;
@@ -16,15 +14,25 @@ import core.VBRConnection;
  * the bit-rate depends on the number of other transmitting stations within
  * range The current transmit speed is updated only if there are ongoing
  * transmissions. The configured transmit speed is the maximum obtainable speed.
+ * The numbers of transmissions and transmitting stations are kept up to
+ * date by {@link NetworkInterface} as transfers start and end, so the speed
+ * is recomputed only when they have changed.
  */
 public class InterferenceLimitedInterface extends NetworkInterface {
 	protected int currentTransmitSpeed;
 	protected int numberOfTransmissions;
+	/** number of active stations the current transmit speed was computed
+	 * for, or -1 if it hasn't been computed */
+	private int speedActive;
+	/** number of transmissions the current transmit speed was computed 
+	 * for */
+	private int speedTransmissions;
 
 	public InterferenceLimitedInterface(Settings s) {
 		super(s);
 		this.currentTransmitSpeed = 0;
 		this.numberOfTransmissions = 0;
+		this.speedActive = -1;
 	}
 
 	/**
@@ -37,6 +45,7 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 		this.transmitSpeed = ni.transmitSpeed;
 		this.currentTransmitSpeed = 0;
 		this.numberOfTransmissions = 0;
+		this.speedActive = -1;
 	}
 
 	
@@ -60,7 +69,7 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 	 */
 	public void connect(NetworkInterface anotherInterface) {
 		if (isScanning() 
-				&& anotherInterface.getHost().isRadioActive()
+				&& anotherInterface.isActive()
 				&& isWithinRange(anotherInterface)
 				&& !isConnected(anotherInterface) 
 				&& (this != anotherInterface)) {
@@ -98,38 +107,34 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces = 
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) 
-			connect(i);
-
-		// Find the current number of transmissions
-		// (to calculate the current transmission speed
-		numberOfTransmissions = 0;
-		int numberOfActive = 1;
-		for (Connection con : this.connections) {
-			if (con.getMessage() != null) {
-				numberOfTransmissions++;
-			}
-			if (((InterferenceLimitedInterface)con.getOtherInterface(this)).
-					isTransferring() == true) {
-				numberOfActive++;
-			}
-		}
+		connectToNearInterfaces();
+
+		// The current number of transmissions and transmitting stations
+		// (to calculate the current transmission speed)
+		numberOfTransmissions = getNrofTransfers();
+		int numberOfActive = 1 + getNrofTransferringPeers();
 
 		int ntrans = numberOfTransmissions;
 		if ( numberOfTransmissions < 1) ntrans = 1;
 		if ( numberOfActive <2 ) numberOfActive = 2;
 
-		// Based on the equation of Gupta and Kumar - and the transmission speed
-		// is divided equally to all the ongoing transmissions 
-		currentTransmitSpeed = (int)Math.floor((double)transmitSpeed / 
-				(Math.sqrt((1.0*numberOfActive) *
-						Math.log(1.0*numberOfActive))) /
-							ntrans );
+		if (numberOfActive != speedActive || ntrans != speedTransmissions) {
+			// Based on the equation of Gupta and Kumar - and the transmission
+			// speed is divided equally to all the ongoing transmissions 
+			currentTransmitSpeed = (int)Math.floor((double)transmitSpeed / 
+					(Math.sqrt((1.0*numberOfActive) *
+							Math.log(1.0*numberOfActive))) /
+								ntrans );
+			speedActive = numberOfActive;
+			speedTransmissions = ntrans;
+		}
 		
-		for (Connection con : getConnections()) {
-			con.update();
+		/* idle connections have nothing to update */
+		for (int i=0, n=this.connections.size(); i<n; i++) {
+			Connection con = this.connections.get(i);
+			if (con.isTransferring()) {
+				con.update();
+			}
 		}
 	}
 
@@ -152,7 +157,7 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 	 * Returns true if this interface is actually transmitting data
 	 */
 	public boolean isTransferring() {
-		return (numberOfTransmissions > 0);
+		return (getNrofTransfers() > 0);
 	}
 
 	/**
@@ -0,0 +1,593 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+import core.Coord;
+import core.DTNSim;
+import core.NetworkInterface;
+import core.Settings;
+import core.SettingsError;
+import core.World;
+
+/**
+ * <P>
+ * Sparse version of the {@link ConnectivityGrid}. The interfaces are put on
+ * grid cells depending on their location and only the interfaces in the
+ * same or neighboring cells are checked for possible connectivity, but only
+ * the cells that contain interfaces are stored. The cells are kept in a hash
+ * table that is keyed by the cell's coordinates, so memory use is
+ * proportional to the number of interfaces instead of the world's area,
+ * and negative coordinates are supported too.</P>
+ *
+ * <P>If the {@link ConnectivityGrid#CELL_SIZE_MULT_S} setting is defined,
+ * the cell size is chosen the same way as for the dense grid (and the
+ * results are the same as with it). Otherwise, the cell size is chosen
+ * automatically when the interfaces are used for the first time: the cells
+ * are made as large as needed for one interface per cell on average in the
+ * area that the interfaces occupy at that time, but never smaller than the
+ * range of the interfaces.</P>
+ */
+public class SparseConnectivityGrid extends ConnectivityOptimizer {
+
+	/**
+	 * Should the sparse grid be used instead of the dense
+	 * {@link ConnectivityGrid} -setting id ({@value}). Boolean (true/false)
+	 * variable. Used in {@link World#OPTIMIZATION_SETTINGS_NS} name space.
+	 * Default is false.
+	 */
+	public static final String SPARSE_GRID_S = "sparseGrid";
+
+	/** initial size of the cell table (must be a power of two) */
+	private static final int INITIAL_TABLE_SIZE = 64;
+
+	/** cell size multiplier or -1 for automatic cell size */
+	private static int cellSizeMultiplier;
+	private static boolean sparseGridEnabled;
+
+	static HashMap<Integer,SparseConnectivityGrid> gridobjects;
+
+	static {
+		DTNSim.registerForReset(SparseConnectivityGrid.class.
+				getCanonicalName());
+		reset();
+	}
+
+	/** range of the interfaces using this grid */
+	private double maxRange;
+	/** edge length of a cell or -1 if not chosen yet */
+	private int cellSize;
+	/** all interfaces in the order they were added */
+	private List<NetworkInterface> ginterfaces;
+	/** number of changes in the cells of this grid */
+	private long nrofChanges;
+
+	/** hash table of the cells: keys of the cells */
+	private long[] keys;
+	/** hash table of the cells: the cells (null for free positions) */
+	private GridCell[] table;
+	/** number of cells in the hash table */
+	private int nrofCells;
+	/** all cells indexed by their slot numbers; null for free slots */
+	private List<GridCell> slots;
+	/** free slot numbers */
+	private int[] freeSlots;
+	/** number of free slot numbers */
+	private int nrofFreeSlots;
+
+	public static void reset() {
+		gridobjects = new HashMap<Integer, SparseConnectivityGrid>();
+
+		Settings s = new Settings(World.OPTIMIZATION_SETTINGS_NS);
+		sparseGridEnabled = s.getBoolean(SPARSE_GRID_S, false);
+		if (s.contains(ConnectivityGrid.CELL_SIZE_MULT_S)) {
+			cellSizeMultiplier = s.getInt(ConnectivityGrid.CELL_SIZE_MULT_S);
+			if (cellSizeMultiplier < 1) {
+				throw new SettingsError("Too small value (" +
+						cellSizeMultiplier + ") for " +
+						World.OPTIMIZATION_SETTINGS_NS + "." +
+						ConnectivityGrid.CELL_SIZE_MULT_S);
+			}
+		}
+		else {
+			cellSizeMultiplier = -1;
+		}
+	}
+
+	/**
+	 * Returns true if the sparse grid should be used instead of the dense
+	 * grid (see {@link #SPARSE_GRID_S})
+	 * @return true if the sparse grid is enabled
+	 */
+	public static boolean isEnabled() {
+		return sparseGridEnabled;
+	}
+
+	/**
+	 * Creates a new sparse grid
+	 * @param maxRange Maximum range used by the interfaces of this grid
+	 */
+	private SparseConnectivityGrid(double maxRange) {
+		this.maxRange = maxRange;
+		this.ginterfaces = new ArrayList<NetworkInterface>();
+		this.keys = new long[INITIAL_TABLE_SIZE];
+		this.table = new GridCell[INITIAL_TABLE_SIZE];
+		this.slots = new ArrayList<GridCell>();
+		this.freeSlots = new int[INITIAL_TABLE_SIZE];
+
+		if (cellSizeMultiplier > 0) {
+			this.cellSize = (int)Math.ceil(maxRange * cellSizeMultiplier);
+		}
+		else {
+			this.cellSize = -1; /* chosen when the grid is used */
+		}
+	}
+
+	/**
+	 * Returns a sparse grid object based on a hash value
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @param maxRange Maximum range used by the radio technology using this
+	 *  connectivity grid.
+	 * @return The connectivity grid object for a specific interface
+	 */
+	public static SparseConnectivityGrid SparseConnectivityGridFactory(
+			int key, double maxRange) {
+		if (gridobjects.containsKey((Integer)key)) {
+			return gridobjects.get((Integer)key);
+		} else {
+			SparseConnectivityGrid newgrid =
+				new SparseConnectivityGrid(maxRange);
+			gridobjects.put((Integer)key,newgrid);
+			return newgrid;
+		}
+	}
+
+	/**
+	 * Chooses the cell size and puts the interfaces to their cells in all
+	 * the grids whose cells haven't been created yet. Must be called 
+	 * sequentially before the near interfaces are collected concurrently
+	 * (see {@link #collectNearInterfaces(NetworkInterface, Collection)}).
+	 */
+	public static void createCells() {
+		for (SparseConnectivityGrid grid : gridobjects.values()) {
+			grid.ensureCellSize();
+		}
+	}
+
+	/**
+	 * Adds a network interface to the grid
+	 * @param ni The new network interface
+	 */
+	public void addInterface(NetworkInterface ni) {
+		ginterfaces.add(ni);
+		if (cellSize > 0) {
+			placeInterface(ni);
+		}
+	}
+
+	/**
+	 * Adds interfaces to the grid
+	 * @param interfaces Collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface n : interfaces) {
+			addInterface(n);
+		}
+	}
+
+	/**
+	 * Removes a network interface from the grid
+	 * @param ni The interface to be removed
+	 */
+	public void removeInterface(NetworkInterface ni) {
+		if (ginterfaces.remove(ni) && ni.getOptimizerCell() != -1) {
+			GridCell cell = slots.get(ni.getOptimizerCell());
+			cell.removeInterface(ni);
+			ni.setOptimizerCell(-1);
+			removeIfEmpty(cell);
+		}
+	}
+
+	/**
+	 * Checks and updates (if necessary) interface's position in the grid
+	 * @param ni The interface to update
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		ensureCellSize();
+		GridCell oldCell = slots.get(ni.getOptimizerCell());
+		Coord c = ni.getLocation();
+		long key = cellKey(cellCoord(c.getY()), cellCoord(c.getX()));
+
+		if (key != oldCell.key) {
+			GridCell newCell = getCell(key);
+			if (newCell == null) {
+				newCell = createCell(key);
+			}
+			oldCell.moveInterface(ni, newCell);
+			ni.setOptimizerCell(newCell.slot);
+			removeIfEmpty(oldCell);
+		}
+	}
+
+	/**
+	 * Returns all interfaces that use the same technology and channel
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		return ginterfaces;
+	}
+
+	/**
+	 * Returns all interfaces that are "near" (i.e., in neighboring grid cells)
+	 * and use the same technology and channel as the given interface
+	 * @param ni The interface whose neighboring interfaces are returned
+	 * @return List of near interfaces
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface ni) {
+		ArrayList<NetworkInterface> niList = new ArrayList<NetworkInterface>();
+		collectNearInterfaces(ni, niList);
+		return niList;
+	}
+
+	/**
+	 * Adds all interfaces that are "near" (i.e., in neighboring grid cells)
+	 * and use the same technology and channel as the given interface to
+	 * the given collection. The cells are checked in the same order as in
+	 * {@link ConnectivityGrid}. The grid is not modified, so this can be
+	 * called concurrently for different interfaces. Nothing is added if 
+	 * the cells haven't been created yet (see {@link #createCells()}); 
+	 * they are created by the first {@link #updateLocation(NetworkInterface)}
+	 * otherwise.
+	 * @param ni The interface whose neighboring interfaces are collected
+	 * @param result The collection where the interfaces are added to
+	 */
+	@Override
+	public void collectNearInterfaces(NetworkInterface ni,
+			Collection<NetworkInterface> result) {
+		if (cellSize < 0 || ni.getOptimizerCell() == -1) {
+			return; /* no cells yet or not in this grid */
+		}
+
+		Coord c = ni.getLocation();
+		int row = cellCoord(c.getY());
+		int col = cellCoord(c.getX());
+
+		for (int i=row-1; i <= row+1; i++) {
+			for (int j=col-1; j <= col+1; j++) {
+				GridCell cell = getCell(cellKey(i, j));
+				if (cell == null) {
+					continue;
+				}
+				ArrayList<NetworkInterface> cellInterfaces = cell.interfaces;
+				for (int k=0, n=cellInterfaces.size(); k < n; k++) {
+					result.add(cellInterfaces.get(k));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a stamp of the cells near the given interface. The stamp is
+	 * the largest version of the existing cells in the neighborhood. A
+	 * cell's version is set to the grid's change count every time the cell
+	 * gains or loses an interface, and the versions of the cells around a
+	 * cell are updated when the cell is removed, so the stamp grows whenever
+	 * the interfaces near the given interface change.
+	 * @param ni The interface whose neighboring cells are checked
+	 * @return The stamp
+	 */
+	@Override
+	public long getNearInterfacesVersion(NetworkInterface ni) {
+		if (cellSize < 0) {
+			return -1; /* cells are not created yet */
+		}
+
+		long version = 0;
+		Coord c = ni.getLocation();
+		int row = cellCoord(c.getY());
+		int col = cellCoord(c.getX());
+
+		for (int i=row-1; i <= row+1; i++) {
+			for (int j=col-1; j <= col+1; j++) {
+				GridCell cell = getCell(cellKey(i, j));
+				if (cell != null && cell.version > version) {
+					version = cell.version;
+				}
+			}
+		}
+		return version;
+	}
+
+	/**
+	 * Chooses the cell size (if it isn't chosen yet) based on the current
+	 * density of the interfaces and puts all interfaces to their cells
+	 */
+	private void ensureCellSize() {
+		if (cellSize > 0) {
+			return;
+		}
+
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for (NetworkInterface ni : ginterfaces) {
+			Coord c = ni.getLocation();
+			minX = Math.min(minX, c.getX());
+			minY = Math.min(minY, c.getY());
+			maxX = Math.max(maxX, c.getX());
+			maxY = Math.max(maxY, c.getY());
+		}
+
+		double size = maxRange;
+		if (ginterfaces.size() > 0) {
+			double area = (maxX - minX) * (maxY - minY);
+			size = Math.max(size, Math.sqrt(area / ginterfaces.size()));
+		}
+		this.cellSize = Math.max(1, (int)Math.ceil(size));
+
+		for (NetworkInterface ni : ginterfaces) {
+			placeInterface(ni);
+		}
+	}
+
+	/**
+	 * Puts an interface to the cell of its current location
+	 * @param ni The interface
+	 */
+	private void placeInterface(NetworkInterface ni) {
+		Coord c = ni.getLocation();
+		long key = cellKey(cellCoord(c.getY()), cellCoord(c.getX()));
+		GridCell cell = getCell(key);
+		if (cell == null) {
+			cell = createCell(key);
+		}
+		cell.addInterface(ni);
+		ni.setOptimizerCell(cell.slot);
+	}
+
+	/**
+	 * Returns the row or column index of a cell for a coordinate value
+	 * @param value The x or y value of a coordinate
+	 * @return The column or row index
+	 */
+	private int cellCoord(double value) {
+		return (int)Math.floor(value / cellSize);
+	}
+
+	/**
+	 * Returns the hash table key of the cell in the given row and column
+	 * @param row The row
+	 * @param col The column
+	 * @return The key
+	 */
+	private static long cellKey(int row, int col) {
+		return ((long)row << 32) | (col & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Returns the position of a key in the hash table where the search for
+	 * the key should start
+	 * @param key The key
+	 * @return The position
+	 */
+	private int tableIndex(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & (table.length - 1);
+	}
+
+	/**
+	 * Returns the cell with the given key
+	 * @param key The key of the cell
+	 * @return The cell or null if there is no such cell
+	 */
+	private GridCell getCell(long key) {
+		int mask = table.length - 1;
+		for (int i = tableIndex(key); table[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return table[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates a new cell and adds it to the hash table
+	 * @param key The key of the cell
+	 * @return The new cell
+	 */
+	private GridCell createCell(long key) {
+		if ((nrofCells + 1) * 2 > table.length) {
+			resizeTable(table.length * 2);
+		}
+
+		GridCell cell = new GridCell(key);
+		if (nrofFreeSlots > 0) {
+			cell.slot = freeSlots[--nrofFreeSlots];
+			slots.set(cell.slot, cell);
+		}
+		else {
+			cell.slot = slots.size();
+			slots.add(cell);
+		}
+
+		putCell(cell);
+		nrofCells++;
+		return cell;
+	}
+
+	/**
+	 * Puts a cell to the first free position of the hash table
+	 * @param cell The cell
+	 */
+	private void putCell(GridCell cell) {
+		int mask = table.length - 1;
+		int i = tableIndex(cell.key);
+		while (table[i] != null) {
+			i = (i + 1) & mask;
+		}
+		keys[i] = cell.key;
+		table[i] = cell;
+	}
+
+	/**
+	 * Changes the size of the hash table
+	 * @param size The new size (must be a power of two)
+	 */
+	private void resizeTable(int size) {
+		GridCell[] oldTable = this.table;
+		this.keys = new long[size];
+		this.table = new GridCell[size];
+		for (GridCell cell : oldTable) {
+			if (cell != null) {
+				putCell(cell);
+			}
+		}
+	}
+
+	/**
+	 * Removes a cell if it doesn't contain any interfaces. The versions of
+	 * the cells around the removed cell are updated so that the near
+	 * interfaces stamps of the interfaces in them change.
+	 * @param cell The cell
+	 */
+	private void removeIfEmpty(GridCell cell) {
+		if (cell.interfaces.size() > 0) {
+			return;
+		}
+
+		int mask = table.length - 1;
+		int i = tableIndex(cell.key);
+		while (table[i] != cell) {
+			i = (i + 1) & mask;
+		}
+
+		/* remove and move the following entries of the same probe
+		   sequence backwards to fill the gap */
+		table[i] = null;
+		for (int j = (i + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+			int k = tableIndex(keys[j]);
+			boolean kInGap = (i <= j) ? (i < k && k <= j) : (i < k || k <= j);
+			if (!kInGap) {
+				keys[i] = keys[j];
+				table[i] = table[j];
+				table[j] = null;
+				i = j;
+			}
+		}
+		nrofCells--;
+
+		slots.set(cell.slot, null);
+		if (nrofFreeSlots == freeSlots.length) {
+			int[] newFreeSlots = new int[freeSlots.length * 2];
+			System.arraycopy(freeSlots, 0, newFreeSlots, 0, nrofFreeSlots);
+			freeSlots = newFreeSlots;
+		}
+		freeSlots[nrofFreeSlots++] = cell.slot;
+
+		int row = (int)(cell.key >> 32);
+		int col = (int)cell.key;
+		for (int r=row-1; r <= row+1; r++) {
+			for (int c=col-1; c <= col+1; c++) {
+				GridCell neighbor = getCell(cellKey(r, c));
+				if (neighbor != null) {
+					neighbor.version = ++nrofChanges;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the edge length of the cells
+	 * @return The cell size or -1 if it isn't chosen yet
+	 */
+	public int getCellSize() {
+		return this.cellSize;
+	}
+
+	/**
+	 * Returns the number of (non-empty) cells in the grid
+	 * @return The number of cells
+	 */
+	public int getNrofCells() {
+		return this.nrofCells;
+	}
+
+	/**
+	 * Returns a string representation of the grid
+	 * @return a string representation of the grid
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " with " + this.nrofCells +
+			" cells, cell size=" + this.cellSize;
+	}
+
+	/**
+	 * A single cell in the grid. Contains the interfaces that are
+	 * currently in that part of the grid.
+	 */
+	private class GridCell {
+		// how large array is initially chosen
+		private static final int EXPECTED_INTERFACE_COUNT = 5;
+		private ArrayList<NetworkInterface> interfaces;
+		/** hash table key of the cell */
+		private long key;
+		/** slot number of the cell */
+		private int slot;
+		/** grid's change count at the time an interface last entered or
+		 * left the cell, or a neighbor cell was removed */
+		private long version;
+
+		private GridCell(long key) {
+			this.key = key;
+			this.interfaces = new ArrayList<NetworkInterface>(
+					EXPECTED_INTERFACE_COUNT);
+			this.version = ++nrofChanges;
+		}
+
+		/**
+		 * Adds an interface to this cell
+		 * @param ni The interface to add
+		 */
+		public void addInterface(NetworkInterface ni) {
+			this.interfaces.add(ni);
+			this.version = ++nrofChanges;
+		}
+
+		/**
+		 * Removes an interface from this cell
+		 * @param ni The interface to remove
+		 */
+		public void removeInterface(NetworkInterface ni) {
+			this.interfaces.remove(ni);
+			this.version = ++nrofChanges;
+		}
+
+		/**
+		 * Moves a interface in a Cell to another Cell
+		 * @param ni The interface to move
+		 * @param to The cell where the interface should be moved to
+		 */
+		public void moveInterface(NetworkInterface ni, GridCell to) {
+			to.addInterface(ni);
+			boolean removeOk = this.interfaces.remove(ni);
+			this.version = ++nrofChanges;
+			assert removeOk : "interface " + ni +
+				" not found from cell with " + interfaces.toString();
+		}
+
+		/**
+		 * Returns a string representation of the cell
+		 * @return a string representation of the cell
+		 */
+		public String toString() {
+			return getClass().getSimpleName() + " with " +
+				this.interfaces.size() + " interfaces :" + this.interfaces;
+		}
+	}
+}
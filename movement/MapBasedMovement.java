@@ -8,6 +8,8 @@ import input.WKTMapReader;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -396,6 +398,65 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		return cachedMap;
 	}
 	
+	/**
+	 * Returns true if the model has its own state. Subclasses are not 
+	 * supported unless they override this method too.
+	 */
+	@Override
+	public boolean supportsParallelMovement() {
+		return getClass() == MapBasedMovement.class && hasOwnState();
+	}
+	
+	/**
+	 * Returns true if the activeness of the model is stateless. Subclasses
+	 * are not supported unless they override this method too.
+	 */
+	@Override
+	public boolean supportsCheckpoint() {
+		return getClass() == MapBasedMovement.class && 
+			hasStatelessActiveness();
+	}
+	
+	/**
+	 * Writes also the path settings and the location of the last map node.
+	 * The map itself is not written but it is checked on restore that the 
+	 * model uses a map with the same number of nodes.
+	 */
+	@Override
+	public void writeState(ObjectOutputStream out) throws IOException {
+		super.writeState(out);
+		out.writeInt(map.getNodes().size());
+		out.writeInt(this.minPathLength);
+		out.writeInt(this.maxPathLength);
+		out.writeBoolean(this.backAllowed);
+		out.writeObject(this.okMapNodeTypes);
+		out.writeObject(lastMapNode == null ? null : lastMapNode.getLocation());
+	}
+	
+	@Override
+	public void readState(ObjectInputStream in) throws IOException {
+		super.readState(in);
+		int nrofNodes = in.readInt();
+		if (nrofNodes != map.getNodes().size()) {
+			throw new IOException("Checkpoint map has " + nrofNodes + 
+					" nodes instead of " + map.getNodes().size());
+		}
+		this.minPathLength = in.readInt();
+		this.maxPathLength = in.readInt();
+		this.backAllowed = in.readBoolean();
+		this.okMapNodeTypes = (int[])readObject(in);
+		Coord last = (Coord)readObject(in);
+		if (last == null) {
+			this.lastMapNode = null;
+		}
+		else {
+			this.lastMapNode = map.getNodeByCoord(last);
+			if (this.lastMapNode == null) {
+				throw new IOException("No map node at " + last);
+			}
+		}
+	}
+	
 	@Override
 	public MapBasedMovement replicate() {
 		return new MapBasedMovement(this);
@@ -4,6 +4,9 @@
  */
 package movement;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Random;
 
 import util.ActivenessHandler;
@@ -44,9 +47,24 @@ public abstract class MovementModel {
 	public static final String WORLD_SIZE = "worldSize";
 	/** movement models' rng seed -setting id ({@value})*/
 	public static final String RNG_SEED = "rngSeed";
+	/** 
+	 * Should every replicated movement model have its own rng -setting id 
+	 * ({@value}). Boolean (true/false) variable. If true, the n:th replicate
+	 * gets an rng whose seed is the n:th value of a seed sequence created 
+	 * from the {@link #RNG_SEED}; otherwise all movement models share the 
+	 * same rng. Own rngs are needed for moving the hosts in parallel.
+	 * Default is false.
+	 */
+	public static final String RNG_PER_HOST_S = "perHostRng";
 	
 	/** common rng for all movement models in the simulation */
-	protected static Random rng; 
+	private static Random sharedRng;
+	/** rng for the seeds of replicates' own rngs (or null if not used) */
+	private static Random rngSeeds;
+	
+	/** rng of this movement model; the common rng unless 
+	 * {@link #RNG_PER_HOST_S} is used */
+	protected Random rng;
 	
 	/** DTNHost to which this movement model is attached */
 	protected DTNHost host;
@@ -93,6 +111,7 @@ public abstract class MovementModel {
 	 */
 	public MovementModel() {
 		super();
+		this.rng = sharedRng;
 	}
 	
 	/**
@@ -104,6 +123,7 @@ public abstract class MovementModel {
 		double[] times;
 		
 		ah = new ActivenessHandler(settings);
+		this.rng = sharedRng;
 		
 		if (settings.contains(SPEED)) {
 			speeds = settings.getCsvDoubles(SPEED, 2);
@@ -149,6 +169,12 @@ public abstract class MovementModel {
 		this.maxY = mm.maxY;
 		this.ah = mm.ah;
 		this.comBus = null;
+		if (rngSeeds != null) {
+			this.rng = new Random(rngSeeds.nextLong());
+		}
+		else {
+			this.rng = sharedRng;
+		}
 	}
 		
 	/**
@@ -241,6 +267,130 @@ public abstract class MovementModel {
 		return SimClock.getTime() + generateWaitTime();
 	}
 	
+	/**
+	 * Returns true if the host of this model can be moved at the same time
+	 * as other hosts whose models return true. This is the case if getting 
+	 * paths and wait times reads and modifies only this model's own state 
+	 * (or state that is immutable). This implementation returns false.
+	 * @return true if the model supports parallel movement
+	 * @see #hasOwnState()
+	 */
+	public boolean supportsParallelMovement() {
+		return false;
+	}
+	
+	/**
+	 * Returns true if this model has its own rng and its activeness is
+	 * resolved without modifying state that is shared with other models.
+	 * Subclasses that don't share any other mutable state can use this for 
+	 * {@link #supportsParallelMovement()}.
+	 * @return true if the state of this class is not shared with others
+	 */
+	protected boolean hasOwnState() {
+		return rng != sharedRng && (ah == null || ah.isStateless());
+	}
+	
+	/**
+	 * Returns true if the state of this model can be written to a warmup
+	 * checkpoint with {@link #writeState(ObjectOutputStream)} and restored
+	 * with {@link #readState(ObjectInputStream)}. Subclasses that support
+	 * checkpoints must write and read all of their mutable state. This
+	 * implementation returns false.
+	 * @return true if the model supports checkpoints
+	 * @see core.WarmupCheckpoint
+	 */
+	public boolean supportsCheckpoint() {
+		return false;
+	}
+	
+	/**
+	 * Returns true if the activeness of this model doesn't have state that
+	 * would need to be checkpointed. Subclasses can use this for
+	 * {@link #supportsCheckpoint()}.
+	 * @return true if the activeness handler is stateless
+	 */
+	protected boolean hasStatelessActiveness() {
+		return ah == null || ah.isStateless();
+	}
+	
+	/**
+	 * Writes the settings and the state of this model to a checkpoint.
+	 * Subclasses that support checkpoints must call this method first and
+	 * then write their own settings and state.
+	 * @param out The stream to write to
+	 * @throws IOException if writing fails
+	 */
+	public void writeState(ObjectOutputStream out) throws IOException {
+		out.writeUTF(getClass().getName());
+		out.writeDouble(this.minSpeed);
+		out.writeDouble(this.maxSpeed);
+		out.writeDouble(this.minWaitTime);
+		out.writeDouble(this.maxWaitTime);
+		out.writeInt(this.maxX);
+		out.writeInt(this.maxY);
+		out.writeObject(this.rng);
+	}
+	
+	/**
+	 * Restores the state of this model from a checkpoint written by
+	 * {@link #writeState(ObjectOutputStream)}
+	 * @param in The stream to read from
+	 * @throws IOException if reading fails or the checkpoint is not for
+	 * this kind of a model
+	 */
+	public void readState(ObjectInputStream in) throws IOException {
+		String className = in.readUTF();
+		if (!className.equals(getClass().getName())) {
+			throw new IOException("Checkpoint is for " + className + 
+					", not for " + getClass().getName());
+		}
+		this.minSpeed = in.readDouble();
+		this.maxSpeed = in.readDouble();
+		this.minWaitTime = in.readDouble();
+		this.maxWaitTime = in.readDouble();
+		this.maxX = in.readInt();
+		this.maxY = in.readInt();
+		this.rng = (Random)readObject(in);
+	}
+	
+	/**
+	 * Writes the state shared by all movement models (the rngs) to a
+	 * checkpoint. Must be written before the states of the models.
+	 * @param out The stream to write to
+	 * @throws IOException if writing fails
+	 */
+	public static void writeSharedState(ObjectOutputStream out) 
+			throws IOException {
+		out.writeObject(sharedRng);
+		out.writeObject(rngSeeds);
+	}
+	
+	/**
+	 * Restores the state shared by all movement models from a checkpoint
+	 * @param in The stream to read from
+	 * @throws IOException if reading fails
+	 */
+	public static void readSharedState(ObjectInputStream in) 
+			throws IOException {
+		sharedRng = (Random)readObject(in);
+		rngSeeds = (Random)readObject(in);
+	}
+	
+	/**
+	 * Reads an object from a checkpoint
+	 * @param in The stream to read from
+	 * @return The object
+	 * @throws IOException if reading fails
+	 */
+	protected static Object readObject(ObjectInputStream in) 
+			throws IOException {
+		try {
+			return in.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+	}
+	
 	/**
 	 * Sets the module communication bus for this movement model
 	 * @param comBus The communications bus to set
@@ -276,12 +426,17 @@ public abstract class MovementModel {
 	 */
 	public static void reset() {
 		Settings s = new Settings(MOVEMENT_MODEL_NS);
+		int seed = 0;
 		if (s.contains(RNG_SEED)) {
-			int seed = s.getInt(RNG_SEED);
-			rng = new Random(seed);
+			seed = s.getInt(RNG_SEED);
+		}
+		sharedRng = new Random(seed);
+		
+		if (s.getBoolean(RNG_PER_HOST_S, false)) {
+			rngSeeds = new Random(seed);
 		}
 		else {
-			rng = new Random(0);
+			rngSeeds = null;
 		}
 	}
 	
@@ -4,6 +4,10 @@
  */
 package movement;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import core.Coord;
 import core.Settings;
 
@@ -53,6 +57,32 @@ public class RandomWaypoint extends MovementModel {
 		return p;
 	}
 	
+	@Override
+	public boolean supportsParallelMovement() {
+		return hasOwnState();
+	}
+	
+	/**
+	 * Returns true if the activeness of the model is stateless. Subclasses
+	 * are not supported unless they override this method too.
+	 */
+	@Override
+	public boolean supportsCheckpoint() {
+		return getClass() == RandomWaypoint.class && hasStatelessActiveness();
+	}
+	
+	@Override
+	public void writeState(ObjectOutputStream out) throws IOException {
+		super.writeState(out);
+		out.writeObject(this.lastWaypoint);
+	}
+	
+	@Override
+	public void readState(ObjectInputStream in) throws IOException {
+		super.readState(in);
+		this.lastWaypoint = (Coord)readObject(in);
+	}
+	
 	@Override
 	public RandomWaypoint replicate() {
 		return new RandomWaypoint(this);
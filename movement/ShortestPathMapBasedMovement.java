@@ -4,6 +4,8 @@
  */
 package movement;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.List;
 
 import movement.map.DijkstraPathFinder;
@@ -41,8 +43,8 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	 */
 	protected ShortestPathMapBasedMovement(ShortestPathMapBasedMovement mbm) {
 		super(mbm);
-		this.pathFinder = mbm.pathFinder;
-		this.pois = mbm.pois;
+		this.pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
+		this.pois = new PointsOfInterest(mbm.pois, rng);
 	}
 	
 	@Override
@@ -65,6 +67,28 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 		return p;
 	}	
 	
+	@Override
+	public boolean supportsParallelMovement() {
+		return getClass() == ShortestPathMapBasedMovement.class && 
+			hasOwnState();
+	}
+	
+	@Override
+	public boolean supportsCheckpoint() {
+		return getClass() == ShortestPathMapBasedMovement.class && 
+			hasStatelessActiveness();
+	}
+	
+	/**
+	 * Restores the state and makes the points of interest use the restored
+	 * rng. The POI settings themselves are not part of the checkpoint.
+	 */
+	@Override
+	public void readState(ObjectInputStream in) throws IOException {
+		super.readState(in);
+		this.pois = new PointsOfInterest(this.pois, rng);
+	}
+	
 	@Override
 	public ShortestPathMapBasedMovement replicate() {
 		return new ShortestPathMapBasedMovement(this);
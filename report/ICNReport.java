@@ -11,6 +11,7 @@ import core.Settings;
 import core.DTNHost;
 import core.SimClock;
 import core.Message;
+import core.Message.PacketType;
 import core.MessageListener;
 
 /**
@@ -54,11 +55,11 @@ public class ICNReport extends Report implements MessageListener {
 	}
 
 	public void messageTransferred(Message m, DTNHost f, DTNHost t, boolean firstDelivery) {
-		String type = (String) m.getProperty("type");
+		PacketType type = m.getPacketType();
 
 		if (!isWarmupID(m.getId())) {
 			// response rate
-			if (type.equals("request") && m.getFrom() == f && !(currMessage == m || currFrom == f || currTo == t)) {
+			if (type == PacketType.REQUEST && m.getFrom() == f && !(currMessage == m || currFrom == f || currTo == t)) {
 				currMessage = m;
 				currFrom = f;
 				currTo = t;
@@ -73,7 +74,7 @@ public class ICNReport extends Report implements MessageListener {
 				}
 			}
 			// efficiency
-			if (type.equals("data")) {
+			if (type == PacketType.DATA) {
 				// total transfers
 				this.total++;
 				// transfers that are not to the destination
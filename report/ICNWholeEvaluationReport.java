@@ -11,6 +11,7 @@ import core.Settings;
 import core.DTNHost;
 import core.SimClock;
 import core.Message;
+import core.Message.PacketType;
 import core.MessageListener;
 
 /**
@@ -55,12 +56,12 @@ public class ICNWholeEvaluationReport extends Report implements MessageListener
 	}
 
 	public void messageTransferred(Message m, DTNHost f, DTNHost t, boolean firstDelivery) {
-		String type = (String) m.getProperty("type");
+		PacketType type = m.getPacketType();
 
 		if (!isWarmupID(m.getId())) {
 			
 
-			if (type.equals("request")) {
+			if (type == PacketType.REQUEST) {
 				
 				if(!firstDelivery){
 					//m.getFrom() == f && 
@@ -88,7 +89,7 @@ public class ICNWholeEvaluationReport extends Report implements MessageListener
 				}
 			}
 			// efficiency
-			if (type.equals("data")) {
+			if (type == PacketType.DATA) {
 				// total transfers
 				this.total++;
 				// transfers that are not to the destination
@@ -7,12 +7,16 @@ package routing;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
 
 import routing.util.EnergyModel;
+import routing.util.EvictionPolicy;
+import routing.util.ExpiryWheel;
 import routing.util.MessageTransferAcceptPolicy;
 import routing.util.RoutingInfo;
+import routing.util.SummaryVector;
 import util.Tuple;
 
 import core.Connection;
@@ -21,6 +25,7 @@ import core.Message;
 import core.MessageListener;
 import core.NetworkInterface;
 import core.Settings;
+import core.SettingsError;
 import core.SimClock;
 
 /**
@@ -36,15 +41,48 @@ public abstract class ActiveRouter extends MessageRouter {
 	/** should messages that final recipient marks as delivered be deleted
 	 * from message buffer */
 	protected boolean deleteDelivered;
+	/** Transfer slots -setting id ({@value}). Integer valued. How many 
+	 * messages the host can send and receive concurrently (in total) over
+	 * different connections. With more than one slot, the concurrent 
+	 * transfers share the speed of the network interfaces (see 
+	 * {@link NetworkInterface#setTransferSpeedShared(boolean)}); with one
+	 * slot, every transfer runs at the full connection speed. Default=1. */
+	public static final String TRANSFER_SLOTS_S = "transferSlots";
+	/** maximum number of concurrent transfers */
+	private int transferSlots;
+	/** Fastest connection -setting id ({@value}). Boolean valued. If set to
+	 * true and the host has connections to the same host over several 
+	 * network interfaces (e.g., Bluetooth and WLAN), messages are sent 
+	 * over the connection with the highest expected speed (see 
+	 * {@link #getFastestConnection(Connection)}) whichever of the 
+	 * connections the router chose. Default=false. */
+	public static final String FASTEST_CONNECTION_S = "fastestConnection";
+	/** should transfers be moved to the fastest connection to the host */
+	private boolean fastestConnection;
 	
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
-	/** how often TTL check (discarding old messages) is performed */
-	public static int TTL_CHECK_INTERVAL = 60;
 	/** connection(s) that are currently used for sending */
 	protected ArrayList<Connection> sendingConnections;
-	/** sim time when the last TTL check was done */
-	private double lastTtlCheck;
+	/** IDs of the messages sent over the connections in
+	 * {@link #sendingConnections} (in the same order) */
+	private ArrayList<String> sendingIds;
+	/** how many sending connections each message is pinned by */
+	private HashMap<String, Integer> pinnedMessages;
+	/** buffer eviction policy or null if {@link #getNextMessageToRemove}
+	 * scans the buffer for the oldest message */
+	private EvictionPolicy evictionPolicy;
+	/** pins the messages that are being sent */
+	private EvictionPolicy.Pinning sendPinning;
+	/** the buffered messages by their expiry time */
+	private ExpiryWheel expiryWheel;
+	/** messages taken from {@link #expiryWheel} (reused list) */
+	private List<Message> dueMessages;
+	/** empty summary vector of the configured type or null if summary
+	 * vectors are not used */
+	private SummaryVector summaryVectorType;
+	/** summary vectors of the other hosts of the connections that are up */
+	private HashMap<Connection, SummaryVector> peerVectors;
 	
 	private MessageTransferAcceptPolicy policy;
 	private EnergyModel energy;
@@ -59,6 +97,15 @@ public abstract class ActiveRouter extends MessageRouter {
 		this.policy = new MessageTransferAcceptPolicy(s);
 		
 		this.deleteDelivered = s.getBoolean(DELETE_DELIVERED_S, false);
+		this.transferSlots = s.getInt(TRANSFER_SLOTS_S, 1);
+		if (this.transferSlots < 1) {
+			throw new SettingsError("Invalid value for " + 
+					s.getFullPropertyName(TRANSFER_SLOTS_S) + 
+					": at least one transfer slot is needed");
+		}
+		this.fastestConnection = s.getBoolean(FASTEST_CONNECTION_S, false);
+		this.evictionPolicy = EvictionPolicy.createPolicy(s);
+		this.summaryVectorType = SummaryVector.createPrototype(s);
 		
 		if (s.contains(EnergyModel.INIT_ENERGY_S)) {
 			this.energy = new EnergyModel(s);
@@ -74,15 +121,76 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ActiveRouter(ActiveRouter r) {
 		super(r);
 		this.deleteDelivered = r.deleteDelivered;
+		this.transferSlots = r.transferSlots;
+		this.fastestConnection = r.fastestConnection;
 		this.policy = r.policy;
 		this.energy = (r.energy != null ? r.energy.replicate() : null);
+		this.evictionPolicy = (r.evictionPolicy != null ?
+				r.evictionPolicy.replicate() : null);
+		this.summaryVectorType = r.summaryVectorType;
 	}
 	
 	@Override
 	public void init(DTNHost host, List<MessageListener> mListeners) {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
-		this.lastTtlCheck = 0;
+		this.sendingIds = new ArrayList<String>(1);
+		this.pinnedMessages = new HashMap<String, Integer>();
+		this.sendPinning = new EvictionPolicy.Pinning() {
+			public boolean isPinned(Message m) {
+				return pinnedMessages.containsKey(m.getId()) &&
+					isSending(m.getId());
+			}
+		};
+		this.expiryWheel = new ExpiryWheel();
+		this.dueMessages = new ArrayList<Message>();
+		this.peerVectors = (this.summaryVectorType != null ?
+				new HashMap<Connection, SummaryVector>() : null);
+		if (this.transferSlots > 1) {
+			for (NetworkInterface ni : host.getInterfaces()) {
+				ni.setTransferSpeedShared(true);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the buffer eviction policy of this router
+	 * @return The policy or null if no policy is used
+	 */
+	public EvictionPolicy getEvictionPolicy() {
+		return this.evictionPolicy;
+	}
+	
+	/**
+	 * Sets the buffer eviction policy. Must be called before any messages
+	 * are added to the buffer (i.e., from a constructor).
+	 * @param policy The policy to use or null to use the default selection
+	 * of {@link #getNextMessageToRemove(boolean)}
+	 */
+	protected void setEvictionPolicy(EvictionPolicy policy) {
+		this.evictionPolicy = policy;
+	}
+	
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		if (this.evictionPolicy != null) {
+			Message old = getMessage(m.getId());
+			if (old != null) {
+				this.evictionPolicy.messageRemoved(old);
+			}
+			this.evictionPolicy.messageAdded(m);
+		}
+		this.expiryWheel.add(m);
+		super.addToMessages(m, newMessage);
+	}
+	
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null && this.evictionPolicy != null) {
+			this.evictionPolicy.messageRemoved(m);
+		}
+		return m;
 	}
 	
 	/**
@@ -94,7 +202,19 @@ public abstract class ActiveRouter extends MessageRouter {
 	@Override
 	public void changedConnection(Connection con) {
 		if (this.energy != null && con.isUp() && !con.isInitiator(getHost())) {
-			this.energy.reduceDiscoveryEnergy();
+			this.energy.reduceDiscoveryEnergy(con.getInterface(getHost()));
+		}
+		
+		if (this.peerVectors != null) {
+			if (con.isUp()) {
+				/* summary vector exchange */
+				MessageRouter other = con.getOtherNode(getHost()).getRouter();
+				this.peerVectors.put(con,
+						other.getSummaryVector(this.summaryVectorType));
+			}
+			else {
+				this.peerVectors.remove(con);
+			}
 		}
 	}
 	
@@ -163,7 +283,9 @@ public abstract class ActiveRouter extends MessageRouter {
 	
 	/**
 	 * Tries to start a transfer of message using a connection. Is starting
-	 * succeeds, the connection is added to the watch list of active connections
+	 * succeeds, the connection is added to the watch list of active connections.
+	 * If {@link #FASTEST_CONNECTION_S} is set, the fastest connection to the
+	 * other host of the connection is used instead.
 	 * @param m The message to transfer
 	 * @param con The connection to use
 	 * @return the value returned by 
@@ -172,15 +294,26 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected int startTransfer(Message m, Connection con) {
 		int retVal;
 		
+		if (this.fastestConnection) {
+			con = getFastestConnection(con);
+		}
 		if (!con.isReadyForTransfer()) {
 			return TRY_LATER_BUSY;
 		}
 		
-		if (!policy.acceptSending(getHost(), con.getOtherNode(getHost()), con, m)) {
+		if (isInPeerVector(m, con)) {
+			/* the other host already knows the message; don't replicate
+			   it just to have it rejected. A Bloom vector may be wrong, 
+			   so the message is not deleted as delivered. */
+			return DENIED_OLD;
+		}
+		else if (!policy.acceptSending(getHost(), con.getOtherNode(getHost()), con, m)) {
 			return MessageRouter.DENIED_POLICY;
 		}
+		else {
+			retVal = con.startTransfer(getHost(), m);
+		}
 		
-		retVal = con.startTransfer(getHost(), m);
 		if (retVal == RCV_OK) { // started transfer
 			addToSendingConnections(con);
 		}
@@ -193,6 +326,56 @@ public abstract class ActiveRouter extends MessageRouter {
 		return retVal;
 	}
 	
+	/**
+	 * Returns the connection that a new transfer to the other host of a 
+	 * connection should use: the connection to the same host that is ready
+	 * for a transfer and has the highest {@link Connection#getExpectedSpeed()
+	 * expected speed}. Hosts with several network interfaces can have a
+	 * connection to the same host over each of them.
+	 * @param con The connection
+	 * @return The fastest ready connection to the same host, or the given
+	 * connection if no connection to the host is ready for a transfer
+	 */
+	protected Connection getFastestConnection(Connection con) {
+		if (getHost().getInterfaces().size() == 1) {
+			return con; /* only one connection per host */
+		}
+		
+		DTNHost other = con.getOtherNode(getHost());
+		Connection fastest = null;
+		double fastestSpeed = -1;
+		List<Connection> connections = getConnections();
+		for (int i=0, n=connections.size(); i<n; i++) {
+			Connection c = connections.get(i);
+			if (c.getOtherNode(getHost()) != other || 
+					!c.isReadyForTransfer()) {
+				continue;
+			}
+			double speed = c.getExpectedSpeed();
+			if (speed > fastestSpeed) {
+				fastest = c;
+				fastestSpeed = speed;
+			}
+		}
+		
+		return (fastest != null ? fastest : con);
+	}
+	
+	/**
+	 * Returns true if the summary vector of the other host of a connection
+	 * says that the host knows the message
+	 * @param m The message
+	 * @param con The connection
+	 * @return True if the message should not be offered over the connection
+	 */
+	private boolean isInPeerVector(Message m, Connection con) {
+		if (this.peerVectors == null) {
+			return false;
+		}
+		SummaryVector sv = this.peerVectors.get(con);
+		return sv != null && sv.contains(m.getIdIndex());
+	}
+	
 	/**
 	 * Makes rudimentary checks (that we have at least one message and one connection)
 	 * about can this router start transfer.
@@ -211,18 +394,19 @@ public abstract class ActiveRouter extends MessageRouter {
 	
 	/**
 	 * Checks if router "wants" to start receiving message (i.e. router 
-	 * isn't transferring, doesn't have the message and has room for it).
+	 * has a free transfer slot, doesn't have the message and has room for
+	 * it).
 	 * @param m The message to check
 	 * @return A return code similar to 
 	 * {@link MessageRouter#receiveMessage(Message, DTNHost)}, i.e. 
 	 * {@link MessageRouter#RCV_OK} if receiving seems to be OK, 
-	 * TRY_LATER_BUSY if router is transferring, DENIED_OLD if the router
+	 * TRY_LATER_BUSY if all transfer slots are in use, DENIED_OLD if the router
 	 * is already carrying the message or it has been delivered to
 	 * this router (as final recipient), or DENIED_NO_SPACE if the message does not fit into buffer
 	 */
 	protected int checkReceiving(Message m, DTNHost from) {
 		if (isTransferring()) {
-			return TRY_LATER_BUSY; // only one connection at a time
+			return TRY_LATER_BUSY; // no free transfer slots
 		}
 	
 		if ( hasMessage(m.getId()) || isDeliveredMessage(m) || super.isBlacklistedMessage(m.getId())) {
@@ -279,16 +463,25 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 	
 	/**
-	 * Drops messages whose TTL is less than zero.
+	 * Drops messages whose TTL has run out (TTL &lt;= 0). Only the messages
+	 * that have become due since the previous call are checked. Messages
+	 * that are being sent are dropped after the transfer is over.
 	 */
 	protected void dropExpiredMessages() {
-		Message[] messages = getMessageCollection().toArray(new Message[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl(); 
-			if (ttl <= 0) {
-				deleteMessage(messages[i].getId(), true);
+		this.expiryWheel.removeDue(SimClock.getTime(), this.dueMessages);
+		for (int i=0, n=this.dueMessages.size(); i<n; i++) {
+			Message m = this.dueMessages.get(i);
+			if (getMessage(m.getId()) != m) {
+				continue; /* not in the buffer anymore */
+			}
+			if (m.getTtl() > 0 || isSending(m.getId())) {
+				this.expiryWheel.add(m); /* check again later */
+			}
+			else {
+				deleteMessage(m.getId(), true);
 			}
 		}
+		this.dueMessages.clear();
 	}
 	
 	/**
@@ -305,7 +498,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	
 	/**
 	 * Returns the oldest (by receive time) message in the message buffer 
-	 * (that is not being sent if excludeMsgBeingSent is true).
+	 * (that is not being sent if excludeMsgBeingSent is true). If an
+	 * {@link EvictionPolicy} is set, the message is selected by the policy.
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
 	 * being sent from the oldest message check (i.e. if oldest message is
 	 * being sent, the second oldest message is returned)
@@ -314,6 +508,11 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * exludeMsgBeingSent is true)
 	 */
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
+		if (this.evictionPolicy != null) {
+			return this.evictionPolicy.getNextToEvict(getHost(),
+					excludeMsgBeingSent ? this.sendPinning : null);
+		}
+		
 		Collection<Message> messages = this.getMessageCollection();
 		Message oldest = null;
 		for (Message m : messages) {
@@ -496,29 +695,54 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @param con The connection to add
 	 */
 	protected void addToSendingConnections(Connection con) {
+		String id = con.getMessage().getId();
+		Integer count = this.pinnedMessages.get(id);
+		this.pinnedMessages.put(id, count == null ? 1 : count + 1);
 		this.sendingConnections.add(con);
+		this.sendingIds.add(id);
+	}
+	
+	/**
+	 * Removes a connection from the sending connections and unpins the
+	 * message that was sent over it.
+	 * @param index Index of the connection in {@link #sendingConnections}
+	 */
+	private void removeFromSendingConnections(int index) {
+		String id = this.sendingIds.remove(index);
+		Integer count = this.pinnedMessages.get(id);
+		if (count == 1) {
+			this.pinnedMessages.remove(id);
+		}
+		else {
+			this.pinnedMessages.put(id, count - 1);
+		}
+		this.sendingConnections.remove(index);
 	}
 		
 	/**
-	 * Returns true if this router is transferring something at the moment or
-	 * some transfer has not been finalized.
-	 * @return true if this router is transferring something
+	 * Returns true if all transfer slots of this router are in use, i.e., 
+	 * the router is transferring (or has not finalized) as many messages
+	 * as it has slots. With the default single slot, this is true whenever
+	 * the router is transferring something.
+	 * @return true if this router can't start more transfers
+	 * @see #TRANSFER_SLOTS_S
 	 */
 	public boolean isTransferring() {
-		if (this.sendingConnections.size() > 0) {
-			return true; // sending something
+		int transfers = this.sendingConnections.size();
+		if (transfers >= this.transferSlots) {
+			return true; // sending in all slots
 		}
 		
 		List<Connection> connections = getConnections();
 		
-		if (connections.size() == 0) {
-			return false; // not connected
-		}
-		
 		for (int i=0, n=connections.size(); i<n; i++) {
 			Connection con = connections.get(i);
-			if (!con.isReadyForTransfer()) {
-				return true;	// a connection isn't ready for new transfer
+			if (!con.isReadyForTransfer() && 
+					(transfers == 0 || !this.sendingConnections.contains(con))) {
+				/* a connection isn't ready for new transfer */
+				if (++transfers >= this.transferSlots) {
+					return true;
+				}
 			}
 		}
 		
@@ -555,15 +779,15 @@ public abstract class ActiveRouter extends MessageRouter {
 	/**
 	 * Checks out all sending connections to finalize the ready ones 
 	 * and abort those whose connection went down. Also drops messages
-	 * whose TTL <= 0 (checking every one simulated minute).
+	 * whose TTL <= 0.
 	 * @see #addToSendingConnections(Connection)
 	 */
 	@Override
 	public void update() {		
 		super.update();
 		
-		/* in theory we can have multiple sending connections even though
-		  currently all routers allow only one concurrent sending connection */
+		/* there are multiple sending connections if the router has more
+		   than one transfer slot */
 		for (int i=0; i<this.sendingConnections.size(); ) {
 			boolean removeCurrent = false;
 			Connection con = sendingConnections.get(i);
@@ -572,6 +796,12 @@ public abstract class ActiveRouter extends MessageRouter {
 			if (con.isMessageTransferred()) {
 				if (con.getMessage() != null) {
 					transferDone(con);
+					if (this.peerVectors != null &&
+							this.peerVectors.containsKey(con)) {
+						/* the other host knows the message now */
+						this.peerVectors.get(con).add(
+								con.getMessage().getIdIndex());
+					}
 					con.finalizeTransfer();
 				} /* else: some other entity aborted transfer */
 				removeCurrent = true;
@@ -586,11 +816,11 @@ public abstract class ActiveRouter extends MessageRouter {
 			} 
 			
 			if (removeCurrent) {
+				removeFromSendingConnections(i);
 				// if the message being sent was holding excess buffer, free it
 				if (this.getFreeBufferSize() < 0) {
 					this.makeRoomForMessage(0);
 				}
-				sendingConnections.remove(i);
 			}
 			else {
 				/* index increase needed only if nothing was removed */
@@ -598,16 +828,10 @@ public abstract class ActiveRouter extends MessageRouter {
 			}
 		}
 		
-		/* time to do a TTL check and drop old messages? Only if not sending */
-		if (SimClock.getTime() - lastTtlCheck >= TTL_CHECK_INTERVAL && sendingConnections.size() == 0) {
-			dropExpiredMessages();
-			lastTtlCheck = SimClock.getTime();
-		}
+		dropExpiredMessages();
 		
 		if (energy != null) {
-			/* TODO: add support for other interfaces */
-			NetworkInterface iface = getHost().getInterface(1);
-			energy.update(iface, getHost().getComBus());
+			energy.update(getHost().getInterfaces(), getHost().getComBus());
 		}
 	}
 	
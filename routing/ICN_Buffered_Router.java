@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.util.List;
+
+import routing.util.MessageFifo;
+
+import core.DTNHost;
+import core.Message;
+import core.Message.PacketType;
+import core.MessageListener;
+import core.Settings;
+
+/**
+ * Superclass of the ICN routers that limit the number of buffered data and
+ * request messages separately. The data and request messages of the buffer
+ * are kept in FIFOs that are updated whenever a message is added to or
+ * removed from the message buffer. {@link #FIFO_buffer_manage()} drops the
+ * oldest messages of a FIFO that has more messages than its limit.
+ */
+public abstract class ICN_Buffered_Router extends ActiveRouter {
+	/** Maximum number of data messages in the buffer -setting id
+	 * ({@value}). Read from the namespace of the router. */
+	public static final String dataBufferSize_str = "dataBufferSize";
+	/** Maximum number of request messages in the buffer -setting id
+	 * ({@value}). Read from the namespace of the router. */
+	public static final String requestBufferSize_str = "requestBufferSize";
+
+	// BE CAREFUL WHEN SETTING BUFFER SIZES FOR DATA AND REQUEST
+	// WE DON't WANT THESE 2 VALUES TO HAVE A SUM GREATER THAN BUFFER SIZE DECLARED FOR MESSAGE ROUTER through Group.BufferSize of the setting file
+
+	private int dataBufferSize;
+	private int requestBufferSize;
+
+	/** the data messages of the buffer, oldest first */
+	private MessageFifo dataBuffer;
+	/** the request messages of the buffer, oldest first */
+	private MessageFifo requestBuffer;
+
+	/**
+	 * Constructor. Reads the data and request buffer sizes from the given
+	 * namespace.
+	 * @param s The settings object
+	 * @param namespace Namespace of the buffer size settings
+	 */
+	protected ICN_Buffered_Router(Settings s, String namespace) {
+		super(s);
+		Settings bufferSettings = new Settings(namespace);
+		this.dataBufferSize = bufferSettings.getInt(dataBufferSize_str);
+		this.requestBufferSize = bufferSettings.getInt(requestBufferSize_str);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param r The router prototype where setting values are copied from
+	 */
+	protected ICN_Buffered_Router(ICN_Buffered_Router r) {
+		super(r);
+		this.dataBufferSize = r.dataBufferSize;
+		this.requestBufferSize = r.requestBufferSize;
+	}
+
+	@Override
+	public void init(DTNHost host, List<MessageListener> mListeners) {
+		super.init(host, mListeners);
+		this.dataBuffer = new MessageFifo();
+		this.requestBuffer = new MessageFifo();
+	}
+
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		super.addToMessages(m, newMessage);
+		PacketType type = m.getPacketType();
+		if (type == PacketType.DATA) {
+			this.dataBuffer.add(m);
+		}
+		else if (type == PacketType.REQUEST) {
+			this.requestBuffer.add(m);
+		}
+	}
+
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null) {
+			this.dataBuffer.remove(id);
+			this.requestBuffer.remove(id);
+		}
+		return m;
+	}
+
+	/**
+	 * Drops the oldest data and request messages until there are no more
+	 * of them in the buffer than the data and request buffer sizes allow.
+	 */
+	protected void FIFO_buffer_manage() {
+		dropOldest(this.dataBuffer, this.dataBufferSize);
+		dropOldest(this.requestBuffer, this.requestBufferSize);
+	}
+
+	/**
+	 * Drops the oldest messages of a FIFO until it is within its limit
+	 * @param fifo The FIFO
+	 * @param limit Maximum number of messages in the FIFO
+	 */
+	private void dropOldest(MessageFifo fifo, int limit) {
+		while (fifo.size() > limit) {
+			deleteMessage(fifo.getOldest().getId(), true);
+		}
+	}
+
+	/**
+	 * Returns the data messages of the buffer
+	 * @return The data messages, oldest first
+	 */
+	protected MessageFifo getDataBuffer() {
+		return this.dataBuffer;
+	}
+
+	/**
+	 * Returns the request messages of the buffer
+	 * @return The request messages, oldest first
+	 */
+	protected MessageFifo getRequestBuffer() {
+		return this.requestBuffer;
+	}
+}
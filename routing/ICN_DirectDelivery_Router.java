@@ -10,6 +10,7 @@ import java.util.Collection;
 
 import core.Settings;
 import core.Message;
+import core.Message.PacketType;
 import core.DTNHost;
 import core.Connection;
 import core.MessageListener;
@@ -45,17 +46,17 @@ public class ICN_DirectDelivery_Router extends ActiveRouter {
 	public Message messageTransferred(String id, DTNHost from) {
 		Message m = super.messageTransferred(id, from);
 		// only check buffer messages if received message is an interest packet
-		if (m.getProperty("type").equals("request")) {
-			String idToFind = (String) m.getProperty("target");
-			if (hasMessage(idToFind)) {
-				Message match = getMessage(idToFind);
+		if (m.getPacketType() == PacketType.REQUEST) {
+			String idToFind = m.getTarget();
+			Message match = getContentStore().getData(idToFind);
+			if (match != null) {
 				// set request packet
 				match.setRequest(m);
 				// set the destination packet of this information to the source of request packet
 				match.setTo(m.getFrom());
 				
 				//notify about successful interest/request 
-				this.deliveredMessages.put(id, m);
+				addToDeliveredMessages(m);
 				for (MessageListener ml : this.mListeners) {
 					ml.messageTransferred(m, from, getHost(), true);
 				}
@@ -97,14 +98,14 @@ public class ICN_DirectDelivery_Router extends ActiveRouter {
 		
 		//sending requests around 
 		for (Message m : this.getMessageCollection()) {
-			String type = (String) m.getProperty("type");
+			PacketType type = m.getPacketType();
 			//alteration			
 			/*if (m.isResponse()) {
 				transferBuffer.add(0,m);
 			} else
 			*/
 			//end of alteration
-			if (type.equals("request")) {
+			if (type == PacketType.REQUEST) {
 				transferBuffer.add(m);
 			}
 		}
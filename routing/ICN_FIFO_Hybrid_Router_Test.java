@@ -10,6 +10,7 @@ import java.util.Collection;
 
 import core.Settings;
 import core.Message;
+import core.Message.PacketType;
 import core.DTNHost;
 import core.Connection;
 
@@ -27,9 +28,6 @@ public class ICN_FIFO_Hybrid_Router_Test extends ActiveRouter {
 	public static final String BINARY_MODE = "binaryMode";
 	/** SprayAndWait router's settings name space ({@value})*/ 
 	public static final String ICN_HYBRID_NS = "ICN_FIFO_Hybrid_Router_Test";
-	/** Message property key */
-	public static final String MSG_COUNT_PROPERTY = ICN_HYBRID_NS + "." +
-		"copies";
 	
 	protected int initialNrofCopies;
 	protected boolean isBinary;	
@@ -68,10 +66,10 @@ public class ICN_FIFO_Hybrid_Router_Test extends ActiveRouter {
 	public Message messageTransferred(String id, DTNHost from) {
 		Message m = super.messageTransferred(id, from);
 		// only check buffer messages if received message is an interest packet
-		if (m.getProperty("type").equals("request")) {
-			String idToFind = (String) m.getProperty("target");
-			if (hasMessage(idToFind)) {
-				Message match = getMessage(idToFind);
+		if (m.getPacketType() == PacketType.REQUEST) {
+			String idToFind = m.getTarget();
+			Message match = getContentStore().getData(idToFind);
+			if (match != null) {
 				// set request packet
 				match.setRequest(m);
 				// set the destination packet of this information to the source of request packet
@@ -82,10 +80,10 @@ public class ICN_FIFO_Hybrid_Router_Test extends ActiveRouter {
 		}
 
 		//when received message is a non-response data
-		String type = (String) m.getProperty("type");
-		if(m.isResponse()== false && type.equals("data")){
-			Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);		
-			assert nrofCopies != null : "Not a SnW message: " + m;
+		PacketType type = m.getPacketType();
+		if(m.isResponse()== false && type == PacketType.DATA){
+			int nrofCopies = m.getCopies();		
+			assert nrofCopies != Message.NO_COPIES : "Not a SnW message: " + m;
 			
 			if(isBinary){
 				//in binary SnW receiving node gets ceil(n/2) copies
@@ -95,7 +93,7 @@ public class ICN_FIFO_Hybrid_Router_Test extends ActiveRouter {
 				//in standard SnW receving node gets only single copy
 				nrofCopies = 1;
 			}
-			m.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);				
+			m.setCopies(nrofCopies);				
 		}
 		
 		return m;
@@ -120,24 +118,24 @@ public class ICN_FIFO_Hybrid_Router_Test extends ActiveRouter {
 		List<Message> requestBuffer = new ArrayList<Message>();
 		
 		for (Message m : this.getMessageCollection()) {
-			String type = (String) m.getProperty("type");
+			PacketType type = m.getPacketType();
 
 			//"response" packets  
 			if (m.isResponse()== true) {
 
 				//check if property is added
-				if(m.getProperty(MSG_COUNT_PROPERTY) == null){
-					m.addProperty(MSG_COUNT_PROPERTY, new Integer(initialNrofCopies));
+				if(!m.hasCopies()){
+					m.setCopies(initialNrofCopies);
 				}
 					
 				responseBuffer.add(0,m);
 			}
-			if(type.equals("data") && m.isResponse()== false){
+			if(type == PacketType.DATA && m.isResponse()== false){
 				
 				//create a list of "data" this router is still carrying and nrofcopies >1
-				if(m.getProperty(MSG_COUNT_PROPERTY) != null){
-					Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);
-					assert nrofCopies != null : "SnW message " + m + " didn't have " + 
+				if(m.hasCopies()){
+					int nrofCopies = m.getCopies();
+					assert nrofCopies != Message.NO_COPIES : "SnW message " + m + " didn't have " + 
 					"nrof copies property!";		
 
 					if(nrofCopies >1){
@@ -145,7 +143,7 @@ public class ICN_FIFO_Hybrid_Router_Test extends ActiveRouter {
 					}				
 				}
 			}
-			if (type.equals("request")){
+			if (type == PacketType.REQUEST){
 				requestBuffer.add(m);
 			}			
 		}
@@ -174,14 +172,14 @@ public class ICN_FIFO_Hybrid_Router_Test extends ActiveRouter {
 
 	@Override
 	protected void transferDone(Connection con) {
-		Integer nrofCopies;
+		int nrofCopies;
 		String msgId = con.getMessage().getId();
 		/* get this router's copy of the message */
 		Message msg = getMessage(msgId);
 
 		//check if it is response packet
-		String type = (String) msg.getProperty("type");
-		if(type.equals("data")){
+		PacketType type = msg.getPacketType();
+		if(type == PacketType.DATA){
 			if (msg == null) { // message has been dropped from the buffer after..
 					return; // ..start of transfer -> no need to reduce amount of copies
 				}	
@@ -191,8 +189,8 @@ public class ICN_FIFO_Hybrid_Router_Test extends ActiveRouter {
 				msg.setRequest(null);
 				msg.setTo(null);
 				/* reduce the amount of copies left */
-				nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
-				assert nrofCopies != null : "SnW message " + msg + " didn't have " + "nrof copies property!";		
+				nrofCopies = msg.getCopies();
+				assert nrofCopies != Message.NO_COPIES : "SnW message " + msg + " didn't have " + "nrof copies property!";		
 
 				if (isBinary) { 
 					nrofCopies /= 2;
@@ -200,15 +198,15 @@ public class ICN_FIFO_Hybrid_Router_Test extends ActiveRouter {
 				else {
 					nrofCopies--;
 				}
-				msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+				msg.setCopies(nrofCopies);
 			}
 			
 			//SnW "data", i.e non-reponse SnW "data" after "response" data is sent, SnW property is retained and become non-response again 
 			if(msg.isResponse()== false){
-				if(msg.getProperty(MSG_COUNT_PROPERTY) != null){
+				if(msg.hasCopies()){
 					/* reduce the amount of copies left */
-					nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
-					assert nrofCopies != null : "SnW message " + msg + " didn't have " + "nrof copies property!";		
+					nrofCopies = msg.getCopies();
+					assert nrofCopies != Message.NO_COPIES : "SnW message " + msg + " didn't have " + "nrof copies property!";		
 
 					if (isBinary) { 
 						nrofCopies /= 2;
@@ -216,7 +214,7 @@ public class ICN_FIFO_Hybrid_Router_Test extends ActiveRouter {
 					else {
 						nrofCopies--;
 					}
-					msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);						
+					msg.setCopies(nrofCopies);						
 				}
 			}
 		}		
@@ -4,30 +4,24 @@
  */
 package routing;
 
-import java.util.List;
-import java.util.ArrayList;
-import java.util.Collection;
+import routing.util.EvictionPolicy;
 
 import core.Settings;
-import core.Message;
-import core.DTNHost;
-import core.Connection;
-import core.Coord;
-
-import util.Tuple;
 
 /**
- * request response router to handle requests and return message packet
+ * {@link ICN_Policy_Router} that drops the message created nearest to the host's
+ * current location first when the buffer is full.
+ * Same as ICN_Policy_Router with the {@link EvictionPolicy#EVICTION_POLICY_S}
+ * setting "{@value routing.util.EvictionPolicy#NEAREST}".
  */
-public class ICN_Nearest_Router extends ActiveRouter {
+public class ICN_Nearest_Router extends ICN_Policy_Router {
 	/**
 	 * Constructor. Creates a new request response router based on the settings in
 	 * the given Settings object.
 	 * @param s The settings object
 	 */
 	public ICN_Nearest_Router(Settings s) {
-		super(s);
-		//TODO: read&use request response router specific settings (if any)
+		super(s, EvictionPolicy.NEAREST);
 	}
 	
 	/**
@@ -36,77 +30,6 @@ public class ICN_Nearest_Router extends ActiveRouter {
 	 */
 	protected ICN_Nearest_Router(ICN_Nearest_Router r) {
 		super(r);
-		//TODO: copy request response settings here (if any)
-	}
-
-	// from perspective of receiving host
-	@Override
-	public Message messageTransferred(String id, DTNHost from) {
-		Message m = super.messageTransferred(id, from);
-		// only check buffer messages if received message is an interest packet
-		if (m.getProperty("type").equals("request")) {
-			String idToFind = (String) m.getProperty("target");
-			if (hasMessage(idToFind)) {
-				Message match = getMessage(idToFind);
-				// set request packet
-				match.setRequest(m);
-				// set the destination packet of this information to the source of request packet
-				match.setTo(m.getFrom());
-				// remove interest packet from buffer because it has served its purpose
-				removeFromMessages(id);
-			}
-		}
-		return m;
-	}
-	
-	// from perspective of transferring host
-	@Override
-	public void update() {
-		super.update();
-		if (isTransferring() || !canStartTransfer()) {
-			return; // transferring, don't try other connections yet
-		}
-		/**
-		 * 1) transfer only response and request packets
-		 * 2) prioritise response packets to be sent through the same
-		 * connection where it received the interest packets
-		 */
-		ArrayList<Message> transferBuffer = new ArrayList<Message>();
-		// ArrayList<Message> responseBuffer = new ArrayList<Message>();
-		for (Message m : this.getMessageCollection()) {
-			String type = (String) m.getProperty("type");
-			if (m.isResponse()) {
-				transferBuffer.add(0,m);
-			} else if (type.equals("request")) {
-				transferBuffer.add(m);
-			}
-		}
-		this.tryMessagesToConnections(transferBuffer, this.getConnections());
-	}
-
-	@Override
-	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-
-		Message nearest = null;
-        Double smallest = 0.0;
-		for (Message m : messages) {
-			if (excludeMsgBeingSent && isSending(m.getId())) {
-				continue; // skip the message(s) that router is sending
-			}
-
-            // get distance between current message location and location of message creation
-            Double curr_dist = this.getHost().getLocation()
-                        .distance((Coord) m.getProperty("initiallocation"));
-			if (nearest == null) {
-				nearest = m;
-			} else if (curr_dist < smallest) {
-                smallest = curr_dist;
-                nearest = m;
-            }
-		}
-		
-		return nearest;
 	}
 	
 	@Override
@@ -114,4 +37,4 @@ public class ICN_Nearest_Router extends ActiveRouter {
 		return new ICN_Nearest_Router(this);
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,103 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package routing;
+
+import java.util.ArrayList;
+
+import routing.util.EvictionPolicy;
+
+import core.Settings;
+import core.Message;
+import core.Message.PacketType;
+import core.DTNHost;
+
+/**
+ * request response router to handle requests and return message packet.
+ * Messages are dropped from a full buffer using the {@link EvictionPolicy}
+ * set with the {@link EvictionPolicy#EVICTION_POLICY_S} setting 
+ * (oldest first if the setting is not defined).
+ */
+public class ICN_Policy_Router extends ActiveRouter {
+	/**
+	 * Constructor. Creates a new request response router based on the settings in
+	 * the given Settings object.
+	 * @param s The settings object
+	 */
+	public ICN_Policy_Router(Settings s) {
+		this(s, EvictionPolicy.OLDEST);
+	}
+	
+	/**
+	 * Constructor for routers that use some other eviction policy when
+	 * the {@link EvictionPolicy#EVICTION_POLICY_S} setting is not defined.
+	 * @param s The settings object
+	 * @param defaultPolicy Name of the default eviction policy
+	 */
+	protected ICN_Policy_Router(Settings s, String defaultPolicy) {
+		super(s);
+		if (getEvictionPolicy() == null) {
+			setEvictionPolicy(EvictionPolicy.createPolicy(defaultPolicy));
+		}
+	}
+	
+	/**
+	 * Copy constructor.
+	 * @param r The router prototype where setting values are copied from
+	 */
+	protected ICN_Policy_Router(ICN_Policy_Router r) {
+		super(r);
+	}
+
+	// from perspective of receiving host
+	@Override
+	public Message messageTransferred(String id, DTNHost from) {
+		Message m = super.messageTransferred(id, from);
+		// only check buffer messages if received message is an interest packet
+		if (m.getPacketType() == PacketType.REQUEST) {
+			String idToFind = m.getTarget();
+			Message match = getContentStore().getData(idToFind);
+			if (match != null) {
+				// set request packet
+				match.setRequest(m);
+				// set the destination packet of this information to the source of request packet
+				match.setTo(m.getFrom());
+				// remove interest packet from buffer because it has served its purpose
+				removeFromMessages(id);
+			}
+		}
+		return m;
+	}
+	
+	// from perspective of transferring host
+	@Override
+	public void update() {
+		super.update();
+		if (isTransferring() || !canStartTransfer()) {
+			return; // transferring, don't try other connections yet
+		}
+		/**
+		 * 1) transfer only response and request packets
+		 * 2) prioritise response packets to be sent through the same
+		 * connection where it received the interest packets
+		 */
+		ArrayList<Message> transferBuffer = new ArrayList<Message>();
+		// ArrayList<Message> responseBuffer = new ArrayList<Message>();
+		for (Message m : this.getMessageCollection()) {
+			PacketType type = m.getPacketType();
+			if (m.isResponse()) {
+				transferBuffer.add(0,m);
+			} else if (type == PacketType.REQUEST) {
+				transferBuffer.add(m);
+			}
+		}
+		this.tryMessagesToConnections(transferBuffer, this.getConnections());
+	}
+
+	@Override
+	public ICN_Policy_Router replicate() {
+		return new ICN_Policy_Router(this);
+	}
+
+}
@@ -10,6 +10,7 @@ import java.util.Collection;
 
 import core.Settings;
 import core.Message;
+import core.Message.PacketType;
 import core.DTNHost;
 import core.Connection;
 import core.Coord;
@@ -44,10 +45,10 @@ public class ICN_Random_Router extends ActiveRouter {
 	public Message messageTransferred(String id, DTNHost from) {
 		Message m = super.messageTransferred(id, from);
 		// only check buffer messages if received message is an interest packet
-		if (m.getProperty("type").equals("request")) {
-			String idToFind = (String) m.getProperty("target");
-			if (hasMessage(idToFind)) {
-				Message match = getMessage(idToFind);
+		if (m.getPacketType() == PacketType.REQUEST) {
+			String idToFind = m.getTarget();
+			Message match = getContentStore().getData(idToFind);
+			if (match != null) {
 				// set request packet
 				match.setRequest(m);
 				// set the destination packet of this information to the source of request packet
@@ -74,10 +75,10 @@ public class ICN_Random_Router extends ActiveRouter {
 		ArrayList<Message> transferBuffer = new ArrayList<Message>();
 		// ArrayList<Message> responseBuffer = new ArrayList<Message>();
 		for (Message m : this.getMessageCollection()) {
-			String type = (String) m.getProperty("type");
+			PacketType type = m.getPacketType();
 			if (m.isResponse()) {
 				transferBuffer.add(0,m);
-			} else if (type.equals("request")) {
+			} else if (type == PacketType.REQUEST) {
 				transferBuffer.add(m);
 			}
 		}
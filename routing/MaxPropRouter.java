@@ -17,6 +17,7 @@ import java.util.Set;
 import routing.maxprop.MaxPropDijkstra;
 import routing.maxprop.MeetingProbabilitySet;
 import routing.util.RoutingInfo;
+import util.IntHashSet;
 import util.Tuple;
 import core.Connection;
 import core.DTNHost;
@@ -62,8 +63,9 @@ public class MaxPropRouter extends ActiveRouter {
 	/** From host of the last cost calculation */
 	private DTNHost lastCostFrom;
 	
-	/** Map of which messages have been sent to which hosts from this host */
-	private Map<DTNHost, Set<String>> sentMessages;
+	/** Map of which messages (by {@link Message#getIdIndex() ID index}) have
+	 * been sent to which hosts from this host */
+	private Map<DTNHost, IntHashSet> sentMessages;
 		
 	/** Over how many samples the "average number of bytes transferred per
 	 * transfer opportunity" is taken */
@@ -117,7 +119,7 @@ public class MaxPropRouter extends ActiveRouter {
 		this.dijkstra = new MaxPropDijkstra(this.allProbs);
 		this.ackedMessageIds = new HashSet<String>();
 		this.avgSamples = new int[BYTES_TRANSFERRED_AVG_SAMPLES];
-		this.sentMessages = new HashMap<DTNHost, Set<String>>();
+		this.sentMessages = new HashMap<DTNHost, IntHashSet>();
 	}	
 
 	@Override
@@ -210,9 +212,8 @@ public class MaxPropRouter extends ActiveRouter {
 	@Override
 	protected void transferDone(Connection con) {
 		Message m = con.getMessage();
-		String id = m.getId();
 		DTNHost recipient = con.getOtherNode(getHost());
-		Set<String> sentMsgIds = this.sentMessages.get(recipient);
+		IntHashSet sentMsgIds = this.sentMessages.get(recipient);
 		
 		/* was the message delivered to the final recipient? */
 		if (m.getTo() == recipient) { 
@@ -222,10 +223,10 @@ public class MaxPropRouter extends ActiveRouter {
 		
 		/* update the map of where each message is already sent */
 		if (sentMsgIds == null) {
-			sentMsgIds = new HashSet<String>();
+			sentMsgIds = new IntHashSet();
 			this.sentMessages.put(recipient, sentMsgIds);
 		}		
-		sentMsgIds.add(id);
+		sentMsgIds.add(m.getIdIndex());
 	}
 	
 	/**
@@ -352,7 +353,7 @@ public class MaxPropRouter extends ActiveRouter {
 		for (Connection con : getConnections()) {
 			DTNHost other = con.getOtherNode(getHost());
 			MaxPropRouter othRouter = (MaxPropRouter)other.getRouter();
-			Set<String> sentMsgIds = this.sentMessages.get(other);
+			IntHashSet sentMsgIds = this.sentMessages.get(other);
 			
 			if (othRouter.isTransferring()) {
 				continue; // skip hosts that are transferring
@@ -361,12 +362,12 @@ public class MaxPropRouter extends ActiveRouter {
 			for (Message m : msgCollection) {
 				/* skip messages that the other host has or that have
 				 * passed the other host */
-				if (othRouter.hasMessage(m.getId()) || m.getHops().contains(other)) {
+				if (othRouter.hasMessage(m.getId()) || m.hasPassed(other)) {
 					continue; 
 				}
 				/* skip message if this host has already sent it to the other
 				   host (regardless of if the other host still has it) */
-				if (sentMsgIds != null && sentMsgIds.contains(m.getId())) {
+				if (sentMsgIds != null && sentMsgIds.contains(m.getIdIndex())) {
 					continue;
 				}
 				/* message was a good candidate for sending */
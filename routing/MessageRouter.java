@@ -12,14 +12,20 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 
+import routing.util.ContentStore;
+import routing.util.MessageHistory;
 import routing.util.RoutingInfo;
+import routing.util.SummaryVector;
 
+import util.LongHashMap;
 import util.Tuple;
 
 import core.Application;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.Message.PacketType;
+import core.MessageIdRegistry;
 import core.MessageListener;
 import core.Settings;
 import core.SettingsError;
@@ -49,6 +55,19 @@ public abstract class MessageRouter {
 	 * </UL>
 	 */ 
 	public static final String SEND_QUEUE_MODE_S = "sendQueue";
+	/**
+	 * Maximum number of delivered and blacklisted message IDs to remember
+	 * -setting id ({@value}). Integer value, separately for both histories.
+	 * When a history is full, the ID whose message expires first is
+	 * forgotten. Default is no limit.
+	 */
+	public static final String HISTORY_SIZE_S = "historySize";
+	/**
+	 * Message history expiry -setting id ({@value}). How long (seconds) the
+	 * ID of a delivered or blacklisted message is remembered after the TTL
+	 * of the message has run out. Default is to never forget the IDs.
+	 */
+	public static final String HISTORY_EXPIRY_S = "historyExpiry";
 	
 	/** Setting value for random queue mode */
 	public static final int Q_MODE_RANDOM = 1;
@@ -81,23 +100,43 @@ public abstract class MessageRouter {
 	
 	//originally private
 	protected List<MessageListener> mListeners;
-	/** The messages being transferred with msgID_hostName keys */
-	private HashMap<String, Message> incomingMessages;
+	/** The messages being transferred with (msgID index, host address) keys
+	 * (see {@link #incomingKey(int, DTNHost)}) */
+	private LongHashMap<Message> incomingMessages;
 	/** The messages this router is carrying */
 	private HashMap<String, Message> messages; 
-	/** The messages this router has received as the final recipient */
+	/** IDs of the messages this router has received as the final
+	 * recipient */
 	//originally it is private HashMap<String, Message> deliveredMessages;
-	protected HashMap<String, Message> deliveredMessages; 
-	/** The messages that Applications on this router have blacklisted */
-	private HashMap<String, Object> blacklistedMessages;
+	protected MessageHistory deliveredMessages;
+	/** IDs of the messages that Applications on this router have
+	 * blacklisted */
+	private MessageHistory blacklistedMessages;
 	/** Host where this router belongs to */
 	private DTNHost host;
 	/** size of the buffer */
 	private int bufferSize;
+	/** sum of the sizes of the messages in {@link #messages} */
+	private int occupiedBytes;
+	/** sum of the sizes of the buffered data messages */
+	private int dataBytes;
+	/** sum of the sizes of the buffered request messages */
+	private int requestBytes;
+	/** number of buffered data messages */
+	private int nrofDataMessages;
+	/** number of buffered request messages */
+	private int nrofRequestMessages;
+	/** content name index of the buffered data and request messages */
+	private ContentStore contentStore;
 	/** TTL for all messages */
 	protected int msgTtl;
 	/** Queue mode for sending messages */
 	private int sendQueueMode;
+	/** maximum size of the delivered and blacklisted message histories */
+	private int historySize;
+	/** how long message IDs are remembered after their TTL (negative if
+	 * forever) */
+	private double historyExpiry;
 
 	/** applications attached to the host */
 	private HashMap<String, Collection<Application>> applications = null;
@@ -129,7 +168,23 @@ public abstract class MessageRouter {
 		else {
 			sendQueueMode = Q_MODE_RANDOM;
 		}
-		
+
+		this.historySize = MessageHistory.UNLIMITED;
+		this.historyExpiry = -1;
+		if (s.contains(HISTORY_SIZE_S)) {
+			this.historySize = s.getInt(HISTORY_SIZE_S);
+			if (this.historySize < 1) {
+				throw new SettingsError("Invalid value for " +
+						s.getFullPropertyName(HISTORY_SIZE_S));
+			}
+		}
+		if (s.contains(HISTORY_EXPIRY_S)) {
+			this.historyExpiry = s.getDouble(HISTORY_EXPIRY_S);
+			if (this.historyExpiry < 0) {
+				throw new SettingsError("Invalid value for " +
+						s.getFullPropertyName(HISTORY_EXPIRY_S));
+			}
+		}
 	}
 	
 	/**
@@ -139,10 +194,16 @@ public abstract class MessageRouter {
 	 * @param mListeners The message listeners
 	 */
 	public void init(DTNHost host, List<MessageListener> mListeners) {
-		this.incomingMessages = new HashMap<String, Message>();
+		this.incomingMessages = new LongHashMap<Message>();
 		this.messages = new HashMap<String, Message>();
-		this.deliveredMessages = new HashMap<String, Message>();
-		this.blacklistedMessages = new HashMap<String, Object>();
+		this.deliveredMessages = new MessageHistory(this.historySize,
+				this.historyExpiry);
+		this.blacklistedMessages = new MessageHistory(this.historySize,
+				this.historyExpiry);
+		this.occupiedBytes = 0;
+		this.dataBytes = this.requestBytes = 0;
+		this.nrofDataMessages = this.nrofRequestMessages = 0;
+		this.contentStore = new ContentStore();
 		this.mListeners = mListeners;
 		this.host = host;
 	}
@@ -155,6 +216,8 @@ public abstract class MessageRouter {
 		this.bufferSize = r.bufferSize;
 		this.msgTtl = r.msgTtl;
 		this.sendQueueMode = r.sendQueueMode;
+		this.historySize = r.historySize;
+		this.historyExpiry = r.historyExpiry;
 
 		this.applications = new HashMap<String, Collection<Application>>();
 		for (Collection<Application> apps : r.applications.values()) {
@@ -175,6 +238,10 @@ public abstract class MessageRouter {
 				app.update(this.host);
 			}
 		}
+
+		double now = SimClock.getTime();
+		this.deliveredMessages.forgetExpired(now);
+		this.blacklistedMessages.forgetExpired(now);
 	}
 	
 	/**
@@ -209,7 +276,16 @@ public abstract class MessageRouter {
 	 * @return true if a message with the same ID has been received by this host as the final recipient.
 	 */
 	protected boolean isDeliveredMessage(Message m) {
-		return (this.deliveredMessages.containsKey(m.getId()));
+		return (this.deliveredMessages.contains(m.getIdIndex()));
+	}
+
+	/**
+	 * Remembers that a message has been delivered to this host as the
+	 * final recipient
+	 * @param m The delivered message
+	 */
+	protected void addToDeliveredMessages(Message m) {
+		this.deliveredMessages.add(m, SimClock.getTime());
 	}
 	
 	/** 
@@ -221,7 +297,31 @@ public abstract class MessageRouter {
 	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
 	 */
 	protected boolean isBlacklistedMessage(String id) {
-		return this.blacklistedMessages.containsKey(id);
+		int index = MessageIdRegistry.indexOf(id);
+		return index >= 0 && this.blacklistedMessages.contains(index);
+	}
+	
+	/**
+	 * Returns a summary vector of the messages this router knows about:
+	 * the messages in the buffer, the messages delivered to this host and
+	 * the blacklisted messages.
+	 * @param type An empty vector of the type to create
+	 * @return The summary vector
+	 */
+	public SummaryVector getSummaryVector(SummaryVector type) {
+		SummaryVector sv = type.newVector(this.messages.size() +
+				this.deliveredMessages.size() +
+				this.blacklistedMessages.size());
+		for (Message m : this.messages.values()) {
+			sv.add(m.getIdIndex());
+		}
+		for (int idIndex : this.deliveredMessages.getIds()) {
+			sv.add(idIndex);
+		}
+		for (int idIndex : this.blacklistedMessages.getIds()) {
+			sv.add(idIndex);
+		}
+		return sv;
 	}
 	
 	/**
@@ -258,17 +358,86 @@ public abstract class MessageRouter {
 	 * @return The amount of free space (Integer.MAX_VALUE if the buffer size isn't defined)
 	 */
 	public int getFreeBufferSize() {
-		int occupancy = 0;
-		
 		if (this.getBufferSize() == Integer.MAX_VALUE) {
 			return Integer.MAX_VALUE;
 		}
 		
-		for (Message m : getMessageCollection()) {
-			occupancy += m.getSize();
-		}
+		return this.getBufferSize() - this.occupiedBytes;
+	}
+	
+	/**
+	 * Returns the sum of the sizes of all the messages in the buffer.
+	 * @return The number of occupied bytes
+	 */
+	public int getOccupiedBufferSize() {
+		return this.occupiedBytes;
+	}
+	
+	/**
+	 * Returns the sum of the sizes of the buffered messages whose "type"
+	 * property is "data".
+	 * @return The number of bytes occupied by data messages
+	 */
+	public int getDataBufferOccupancy() {
+		return this.dataBytes;
+	}
+	
+	/**
+	 * Returns the sum of the sizes of the buffered messages whose "type"
+	 * property is "request".
+	 * @return The number of bytes occupied by request messages
+	 */
+	public int getRequestBufferOccupancy() {
+		return this.requestBytes;
+	}
+	
+	/**
+	 * Returns the number of buffered messages whose "type" property is "data"
+	 * @return How many data messages this router has
+	 */
+	public int getNrofDataMessages() {
+		return this.nrofDataMessages;
+	}
+	
+	/**
+	 * Returns the number of buffered messages whose "type" property is
+	 * "request"
+	 * @return How many request messages this router has
+	 */
+	public int getNrofRequestMessages() {
+		return this.nrofRequestMessages;
+	}
+	
+	/**
+	 * Returns the content store that indexes the buffered data messages by
+	 * content name and the buffered request messages by the name they ask
+	 * for. The store must not be modified.
+	 * @return The content store of this router
+	 */
+	public ContentStore getContentStore() {
+		return this.contentStore;
+	}
+	
+	/**
+	 * Updates the buffer occupancy counters for a message that was added to
+	 * (sign 1) or removed from (sign -1) the buffer. The message's size and
+	 * "type" property must not change while it is buffered.
+	 * @param m The message
+	 * @param sign 1 for an added message, -1 for a removed one
+	 */
+	private void updateOccupancy(Message m, int sign) {
+		int size = sign * m.getSize();
+		this.occupiedBytes += size;
 		
-		return this.getBufferSize() - occupancy;
+		PacketType type = m.getPacketType();
+		if (type == PacketType.DATA) {
+			this.dataBytes += size;
+			this.nrofDataMessages += sign;
+		}
+		else if (type == PacketType.REQUEST) {
+			this.requestBytes += size;
+			this.nrofRequestMessages += sign;
+		}
 	}
 	
 	/**
@@ -363,11 +532,11 @@ public abstract class MessageRouter {
 			// -> put to buffer
 			addToMessages(aMessage, false);
 		} else if (isFirstDelivery) {
-			this.deliveredMessages.put(id, aMessage);
+			addToDeliveredMessages(aMessage);
 		} else if (outgoing == null) {
 			// Blacklist messages that an app wants to drop.
 			// Otherwise the peer will just try to send it back again.
-			this.blacklistedMessages.put(id, null);
+			this.blacklistedMessages.add(incoming, SimClock.getTime());
 		}
 		
 		for (MessageListener ml : this.mListeners) {
@@ -384,7 +553,17 @@ public abstract class MessageRouter {
 	 * @param from Who the message was from (previous hop).
 	 */
 	protected void putToIncomingBuffer(Message m, DTNHost from) {
-		this.incomingMessages.put(m.getId() + "_" + from.toString(), m);
+		this.incomingMessages.put(incomingKey(m.getIdIndex(), from), m);
+	}
+	
+	/**
+	 * Returns the incoming buffer key of a message from a host
+	 * @param idIndex Index of the message ID in the {@link MessageIdRegistry}
+	 * @param from Who the message was from (previous hop)
+	 * @return The key
+	 */
+	private static long incomingKey(int idIndex, DTNHost from) {
+		return ((long)idIndex << 32) | (from.getAddress() & 0xFFFFFFFFL);
 	}
 	
 	/**
@@ -395,7 +574,11 @@ public abstract class MessageRouter {
 	 * @return The found message or null if such message wasn't found
 	 */
 	protected Message removeFromIncomingBuffer(String id, DTNHost from) {
-		return this.incomingMessages.remove(id + "_" + from.toString());
+		int index = MessageIdRegistry.indexOf(id);
+		if (index < 0) {
+			return null;
+		}
+		return this.incomingMessages.remove(incomingKey(index, from));
 	}
 	
 	/**
@@ -405,7 +588,18 @@ public abstract class MessageRouter {
 	 * @return True if such message is incoming right now
 	 */
 	protected boolean isIncomingMessage(String id) {
-		return this.incomingMessages.containsKey(id);
+		int index = MessageIdRegistry.indexOf(id);
+		if (index < 0) {
+			return false;
+		}
+		/* the sender isn't known; go through the table in place */
+		for (int i = 0, n = this.incomingMessages.capacity(); i < n; i++) {
+			Message m = this.incomingMessages.valueAt(i);
+			if (m != null && m.getIdIndex() == index) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	/**
@@ -416,7 +610,13 @@ public abstract class MessageRouter {
 	 * message, if false, nothing is informed.
 	 */
 	protected void addToMessages(Message m, boolean newMessage) {
-		this.messages.put(m.getId(), m);
+		Message old = this.messages.put(m.getId(), m);
+		if (old != null) {
+			updateOccupancy(old, -1);
+			this.contentStore.messageRemoved(old);
+		}
+		updateOccupancy(m, 1);
+		this.contentStore.messageAdded(m);
 		
 		if (newMessage) {
 			for (MessageListener ml : this.mListeners) {
@@ -432,6 +632,10 @@ public abstract class MessageRouter {
 	 */
 	protected Message removeFromMessages(String id) {
 		Message m = this.messages.remove(id);
+		if (m != null) {
+			updateOccupancy(m, -1);
+			this.contentStore.messageRemoved(m);
+		}
 		return m;
 	}
 	
@@ -576,8 +780,9 @@ public abstract class MessageRouter {
 			incoming.addMoreInfo(new RoutingInfo(m));
 		}
 		
-		for (Message m : this.deliveredMessages.values()) {
-			delivered.addMoreInfo(new RoutingInfo(m + " path:" + m.getHops()));
+		for (int idIndex : this.deliveredMessages.getIds()) {
+			delivered.addMoreInfo(new RoutingInfo(
+					MessageIdRegistry.getId(idIndex)));
 		}
 		
 		for (Connection c : host.getConnections()) {
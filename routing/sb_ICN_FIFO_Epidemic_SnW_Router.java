@@ -10,6 +10,7 @@ import java.util.Collection;
 
 import core.Settings;
 import core.Message;
+import core.Message.PacketType;
 import core.DTNHost;
 import core.Connection;
 
@@ -20,7 +21,7 @@ import util.Tuple;
  */
  
 //ICN Hybrid: send request like epidemic and data like SnW  
-public class sb_ICN_FIFO_Epidemic_SnW_Router extends ActiveRouter {
+public class sb_ICN_FIFO_Epidemic_SnW_Router extends ICN_Buffered_Router {
 	
 	/** identifier for the initial number of copies setting ({@value})*/ 
 	public static final String NROF_COPIES = "nrofCopies";
@@ -28,9 +29,6 @@ public class sb_ICN_FIFO_Epidemic_SnW_Router extends ActiveRouter {
 	public static final String BINARY_MODE = "binaryMode";
 	/** SprayAndWait router's settings name space ({@value})*/ 
 	public static final String ICN_HYBRID_NS = "sb_ICN_FIFO_Epidemic_SnW_Router";
-	/** Message property key */
-	public static final String MSG_COUNT_PROPERTY = ICN_HYBRID_NS + "." +
-		"copies";
 	
 	protected int initialNrofCopies;
 	protected boolean isBinary;	
@@ -41,33 +39,17 @@ public class sb_ICN_FIFO_Epidemic_SnW_Router extends ActiveRouter {
 	//property key for returning reponse to the transferring node that just sends request
 	public static final String TO_TRANSFERRING_HOST_PROPERTY = "request_transferring_host_ID_to_response";	
 	
-	//FIFO buffer management 
-	public static final String dataBufferSize_str = "dataBufferSize";
-	public static final String requestBufferSize_str = "requestBufferSize";
-	
-	// BE CAREFUL WHEN SETTING BUFFER SIZES FOR DATA AND REQUEST 
-	// WE DON't WANT THESE 2 VALUES TO HAVE A SUM GREATER THAN BUFFER SIZE DECLARED FOR MESSAGE ROUTER through Group.BufferSize of the setting file
- 
-	private int dataBufferSize;
-	private int requestBufferSize;
-
-	//initialise data and request buffers 
-	private ArrayList<Message> dataBuffer = new ArrayList<Message>(); 
-	private ArrayList<Message> requestBuffer = new ArrayList<Message>();	
-	
 	/**
 	 * Constructor. Creates a new request response router based on the settings in
 	 * the given Settings object.
 	 * @param s The settings object
 	 */
 	public sb_ICN_FIFO_Epidemic_SnW_Router(Settings s) {
-		super(s);
+		super(s, ICN_HYBRID_NS);
 		//TODO: read&use request response router specific settings (if any)
 		Settings hybridSettings = new Settings(ICN_HYBRID_NS);
 		initialNrofCopies = hybridSettings.getInt(NROF_COPIES);
 		isBinary = hybridSettings.getBoolean(BINARY_MODE);
-		dataBufferSize = hybridSettings.getInt(dataBufferSize_str);
-		requestBufferSize = hybridSettings.getInt(requestBufferSize_str);
 	}
 	
 	/**
@@ -79,8 +61,6 @@ public class sb_ICN_FIFO_Epidemic_SnW_Router extends ActiveRouter {
 		//TODO: copy request response settings here (if any)
 		this.initialNrofCopies = r.initialNrofCopies;
 		this.isBinary = r.isBinary;
-		this.dataBufferSize = r.dataBufferSize;
-		this.requestBufferSize = r.requestBufferSize;
 	}
 
 	@Override
@@ -94,10 +74,10 @@ public class sb_ICN_FIFO_Epidemic_SnW_Router extends ActiveRouter {
 		Message m = super.messageTransferred(id, from);
 			
 		// only check buffer messages if received message is an interest packet
-		if (m.getProperty("type").equals("request")) {
-			String idToFind = (String) m.getProperty("target");
-			if (hasMessage(idToFind)) {
-				Message match = getMessage(idToFind);
+		if (m.getPacketType() == PacketType.REQUEST) {
+			String idToFind = m.getTarget();
+			Message match = getContentStore().getData(idToFind);
+			if (match != null) {
 				
 				if(match.isResponse()){
 					// update request packet
@@ -121,17 +101,17 @@ public class sb_ICN_FIFO_Epidemic_SnW_Router extends ActiveRouter {
 			
 			else{
 				//check if request buffer is full
-				FIFO_packet_manage(requestBuffer,m,requestBufferSize);
+				FIFO_buffer_manage();
 			}
 		}
 		
 		//when received message is a response
 		if(m.isResponse()== true){
 			//check if data buffer is full
-			FIFO_packet_manage(dataBuffer,m,dataBufferSize);
+			FIFO_buffer_manage();
 			
-			Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);		
-			assert nrofCopies != null : "Not a SnW message: " + m;
+			int nrofCopies = m.getCopies();		
+			assert nrofCopies != Message.NO_COPIES : "Not a SnW message: " + m;
 			
 			if(isBinary){
 				//in binary SnW receiving node gets ceil(n/2) copies
@@ -141,7 +121,7 @@ public class sb_ICN_FIFO_Epidemic_SnW_Router extends ActiveRouter {
 				//in standard SnW receving node gets only single copy
 				nrofCopies = 1;
 			}
-			m.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);				
+			m.setCopies(nrofCopies);				
 		}
 		
 		return m;
@@ -154,6 +134,7 @@ public class sb_ICN_FIFO_Epidemic_SnW_Router extends ActiveRouter {
 		if (isTransferring() || !canStartTransfer()) {
 			return; // transferring, don't try other connections yet
 		}
+		FIFO_buffer_manage();
 		/**
 		 * 1) transfer response, data and request packets
 		 * 2) prioritise response packets to be sent through the same
@@ -170,8 +151,8 @@ public class sb_ICN_FIFO_Epidemic_SnW_Router extends ActiveRouter {
 				if(m.isResponse()){
 					
 					//check if property is added
-					if(m.getProperty(MSG_COUNT_PROPERTY) == null){
-					m.addProperty(MSG_COUNT_PROPERTY, new Integer(initialNrofCopies));
+					if(!m.hasCopies()){
+					m.setCopies(initialNrofCopies);
 					}
 					
 					if(c.getOtherNode(getHost()) == m.getProperty(TO_TRANSFERRING_HOST_PROPERTY)){
@@ -186,20 +167,16 @@ public class sb_ICN_FIFO_Epidemic_SnW_Router extends ActiveRouter {
 				
 				
 		for (Message m : this.getMessageCollection()) {
-			String type = (String) m.getProperty("type");
+			PacketType type = m.getPacketType();
 			
-			if(type.equals("data")){
-				//check for self-generated data by this node 
-				if(!dataBuffer.contains(m)){
-					FIFO_packet_manage(dataBuffer,m,dataBufferSize); // FIFO manage to add this node's self-generated data to dataBuffer
-				}
+			if(type == PacketType.DATA){
 			
 				if(m.isResponse()){
 
 					//create a list of "response" this router is still carrying and nrofcopies >1
-					if(m.getProperty(MSG_COUNT_PROPERTY) != null){
-						Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);
-						assert nrofCopies != null : "SnW message " + m + " didn't have " + 
+					if(m.hasCopies()){
+						int nrofCopies = m.getCopies();
+						assert nrofCopies != Message.NO_COPIES : "SnW message " + m + " didn't have " + 
 						"nrof copies property!";		
 
 						if(nrofCopies >1){
@@ -209,12 +186,7 @@ public class sb_ICN_FIFO_Epidemic_SnW_Router extends ActiveRouter {
 				}
 			}
 			
-			else if (type.equals("request")){
-				
-				//check for self-generated request
-				if(!requestBuffer.contains(m)){
-					FIFO_packet_manage(requestBuffer,m,requestBufferSize); // FIFO manage to add this node's self-generated request to requestBuffer 
-				}
+			else if (type == PacketType.REQUEST){
 				
 				if(m.getProperty(TRANSFERRING_HOST_PROPERTY) == null){
 					m.addProperty(TRANSFERRING_HOST_PROPERTY, getHost()); //tracking ID of current transferring host to return response later on 
@@ -235,25 +207,6 @@ public class sb_ICN_FIFO_Epidemic_SnW_Router extends ActiveRouter {
 		transferBuffer.addAll(transferredRequestBuffer);
 		
 		this.tryMessagesToConnections(transferBuffer, this.getConnections());
-		
-		//mechanism to ensure no excess of packets in types' buffers 
-		/* do a copy to avoid concurrent modification exceptions */
-		ArrayList<Message> temp = new ArrayList<Message>(this.getMessageCollection());
-		ArrayList<Message> dataToBeRemoved = new ArrayList<Message>();
-		ArrayList<Message> requestToBeRemoved = new ArrayList<Message>();
-		
-		for(Message m: dataBuffer){
-			if(!temp.contains(m)){
-				dataToBeRemoved.add(m);
-			}
-		}
-		dataBuffer.removeAll(dataToBeRemoved);
-		for(Message m: requestBuffer){
-			if(!temp.contains(m)){
-				requestToBeRemoved.add(m);
-			}
-		}
-		requestBuffer.removeAll(requestToBeRemoved);
 	}
 	
 
@@ -267,7 +220,7 @@ public class sb_ICN_FIFO_Epidemic_SnW_Router extends ActiveRouter {
 
 	@Override
 	protected void transferDone(Connection con) {
-		Integer nrofCopies;
+		int nrofCopies;
 		String msgId = con.getMessage().getId();
 		/* get this router's copy of the message */
 		Message msg = getMessage(msgId);
@@ -280,8 +233,8 @@ public class sb_ICN_FIFO_Epidemic_SnW_Router extends ActiveRouter {
 			else{
 				
 				/* reduce the amount of copies left */
-				nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
-				assert nrofCopies != null : "SnW message " + msg + " didn't have " + "nrof copies property!";		
+				nrofCopies = msg.getCopies();
+				assert nrofCopies != Message.NO_COPIES : "SnW message " + msg + " didn't have " + "nrof copies property!";		
 
 				if (isBinary) { 
 					nrofCopies /= 2;
@@ -289,34 +242,13 @@ public class sb_ICN_FIFO_Epidemic_SnW_Router extends ActiveRouter {
 				else {
 					nrofCopies--;
 				}
-				msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+				msg.setCopies(nrofCopies);
 			}
 							
 		}
 				
 	}
 
-	//function to manage packets in FIFO way when buffer is full 
-	protected void FIFO_packet_manage(ArrayList<Message> bufferList, Message packetToAdd, int bufferLimit){
-		
-		if(bufferList.size() < bufferLimit){
-				bufferList.add(packetToAdd);//new packet add to the end of the list 
-		}
-		else{
-			//buffer is full
-			//return oldest element to remove; 
-			Message packetToRemove = bufferList.get(0); //oldest element is at the beginning of buffer 
-			
-			bufferList.add(packetToAdd);
-			
-			if(bufferList.remove(packetToRemove)) {  //remove oldest packet from buffer list 
-				deleteMessage(packetToRemove.getId(), true);
-				//boolean haha = bufferList.remove(packetToRemove);
-			}
-						
-		}		
-	}
-	
 	//Jing's FIFO buffer management
 	//no longer needed 
 	@Override
@@ -10,6 +10,7 @@ import java.util.Collection;
 
 import core.Settings;
 import core.Message;
+import core.Message.PacketType;
 import core.DTNHost;
 import core.Connection;
 
@@ -18,7 +19,7 @@ import util.Tuple;
 /**
  * request response router to handle requests and return message packet
  */
-public class sb_ICN_FIFO_SnW_Epidemic_Router extends ActiveRouter {
+public class sb_ICN_FIFO_SnW_Epidemic_Router extends ICN_Buffered_Router {
 	
 	/** identifier for the initial number of copies setting ({@value})*/ 
 	public static final String NROF_COPIES = "nrofCopies";
@@ -26,38 +27,21 @@ public class sb_ICN_FIFO_SnW_Epidemic_Router extends ActiveRouter {
 	public static final String BINARY_MODE = "binaryMode";
 	/** SprayAndWait router's settings name space ({@value})*/ 
 	public static final String ICN_SPRAYANDWAIT_NS = "sb_ICN_FIFO_SnW_Epidemic_Router";
-	/** Message property key */
-	public static final String MSG_COUNT_PROPERTY = ICN_SPRAYANDWAIT_NS + "." +
-		"copies";
 	
 	protected int initialNrofCopies;
 	protected boolean isBinary;
 	
-	public static final String dataBufferSize_str = "dataBufferSize";
-	public static final String requestBufferSize_str = "requestBufferSize";
-	
-	// BE CAREFUL WHEN SETTING BUFFER SIZES FOR DATA AND REQUEST 
-	// WE DON't WANT THESE 2 VALUES TO HAVE A SUM GREATER THAN BUFFER SIZE DECLARED FOR MESSAGE ROUTER through Group.BufferSize of the setting file
- 
-	private int dataBufferSize;
-	private int requestBufferSize;
-	
-	//initialise data and request buffers 
-	private ArrayList<Message> dataBuffer = new ArrayList<Message>(); 
-	private ArrayList<Message> requestBuffer = new ArrayList<Message>();
 	/**
 	 * Constructor. Creates a new request response router based on the settings in
 	 * the given Settings object.
 	 * @param s The settings object
 	 */
 	public sb_ICN_FIFO_SnW_Epidemic_Router(Settings s) {
-		super(s);
+		super(s, ICN_SPRAYANDWAIT_NS);
 		//TODO: read&use request response router specific settings (if any)
 		Settings snwSettings = new Settings(ICN_SPRAYANDWAIT_NS);
 		initialNrofCopies = snwSettings.getInt(NROF_COPIES);
 		isBinary = snwSettings.getBoolean(BINARY_MODE);
-		dataBufferSize = snwSettings.getInt(dataBufferSize_str);
-		requestBufferSize = snwSettings.getInt(requestBufferSize_str);
 	}
 	
 	/**
@@ -69,8 +53,6 @@ public class sb_ICN_FIFO_SnW_Epidemic_Router extends ActiveRouter {
 		//TODO: copy request response settings here (if any)
 		this.initialNrofCopies = r.initialNrofCopies;
 		this.isBinary = r.isBinary;
-		this.dataBufferSize = r.dataBufferSize;
-		this.requestBufferSize = r.requestBufferSize;
 		
 	}
 
@@ -85,23 +67,22 @@ public class sb_ICN_FIFO_SnW_Epidemic_Router extends ActiveRouter {
 		Message m = super.messageTransferred(id, from);
 		
 		
-		if(m.getProperty("type").equals("data")){
+		if(m.getPacketType() == PacketType.DATA){
 			//check if data buffer is full
-			FIFO_packet_manage(dataBuffer,m,dataBufferSize);
+			FIFO_buffer_manage();
 		}
 		
 		// only check buffer messages if received message is an interest packet
-		if (m.getProperty("type").equals("request")) {
+		if (m.getPacketType() == PacketType.REQUEST) {
 								
-			String idToFind = (String) m.getProperty("target");
+			String idToFind = m.getTarget();
 			
-			Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);		
-			assert nrofCopies != null : "Not a SnW message: " + m;
+			int nrofCopies = m.getCopies();		
+			assert nrofCopies != Message.NO_COPIES : "Not a SnW message: " + m;
 			
 			
-			if (hasMessage(idToFind)) {
-					
-				Message match = getMessage(idToFind);
+			Message match = getContentStore().getData(idToFind);
+			if (match != null) {
 				// set request packet
 				match.setRequest(m);
 				// set the destination packet of this information to the source of request packet
@@ -122,10 +103,10 @@ public class sb_ICN_FIFO_SnW_Epidemic_Router extends ActiveRouter {
 						//in standard SnW receving node gets only single copy
 						nrofCopies = 1;
 					}
-					m.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);	
+					m.setCopies(nrofCopies);	
 				
 					//check if request buffer is full
-					FIFO_packet_manage(requestBuffer,m,requestBufferSize);
+					FIFO_buffer_manage();
 				}
 				else if(nrofCopies == 1){
 					//Direct Delivery mechanism of final SnW copy of request 
@@ -144,6 +125,7 @@ public class sb_ICN_FIFO_SnW_Epidemic_Router extends ActiveRouter {
 		if (isTransferring() || !canStartTransfer()) {
 			return; // transferring, don't try other connections yet
 		}
+		FIFO_buffer_manage();
 	
 		/**
 		 * 1) transfer only response and request packets
@@ -156,34 +138,25 @@ public class sb_ICN_FIFO_SnW_Epidemic_Router extends ActiveRouter {
 		List<Message> unsorted_finalRequestCopy = new ArrayList<Message>();
 		
 		for (Message m : this.getMessageCollection()) {
-			String type = (String) m.getProperty("type");
+			PacketType type = m.getPacketType();
 			
-			if(type.equals("data")){
-				//check for self-generated data by this node 
-				if(!dataBuffer.contains(m)){
-					FIFO_packet_manage(dataBuffer,m,dataBufferSize); // FIFO manage to add this node's self-generated data to dataBuffer
-				}
+			if(type == PacketType.DATA){
 				//transfer buffer
 				if (m.isResponse()) {
 					responseBuffer.add(0,m);
 				} 					
 			}
 			
-			else if (type.equals("request")) {
+			else if (type == PacketType.REQUEST) {
 
 				//check if property is added
-				if(m.getProperty(MSG_COUNT_PROPERTY) == null){
-					m.addProperty(MSG_COUNT_PROPERTY, new Integer(initialNrofCopies));
-				}
-				
-				//check for self-generated request
-				if(!requestBuffer.contains(m)){
-					FIFO_packet_manage(requestBuffer,m,requestBufferSize); // FIFO manage to add this node's self-generated request to requestBuffer 
+				if(!m.hasCopies()){
+					m.setCopies(initialNrofCopies);
 				}
 				
 				//create a list of "request" this router is still carrying and nrofcopies >1
-				Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);
-				assert nrofCopies != null : "SnW message " + m + " didn't have " + 
+				int nrofCopies = m.getCopies();
+				assert nrofCopies != Message.NO_COPIES : "SnW message " + m + " didn't have " + 
 				"nrof copies property!";		
 
 				if(nrofCopies >1){ 
@@ -210,25 +183,6 @@ public class sb_ICN_FIFO_SnW_Epidemic_Router extends ActiveRouter {
 		List<Message> sorted_finalRequestCopy = sortByQueueMode(unsorted_finalRequestCopy);		
 		this.tryMessagesToConnections(sorted_finalRequestCopy, this.getConnections());
 		
-		//mechanism to ensure no excess of packets in types' buffers 
-		/* do a copy to avoid concurrent modification exceptions */
-		ArrayList<Message> temp = new ArrayList<Message>(this.getMessageCollection());
-		ArrayList<Message> dataToBeRemoved = new ArrayList<Message>();
-		ArrayList<Message> requestToBeRemoved = new ArrayList<Message>();
-		
-		for(Message m: dataBuffer){
-			if(!temp.contains(m)){
-				dataToBeRemoved.add(m);
-			}
-		}
-		dataBuffer.removeAll(dataToBeRemoved);
-		for(Message m: requestBuffer){
-			if(!temp.contains(m)){
-				requestToBeRemoved.add(m);
-			}
-		}
-		requestBuffer.removeAll(requestToBeRemoved);
-		
 	}
 
 
@@ -242,55 +196,34 @@ public class sb_ICN_FIFO_SnW_Epidemic_Router extends ActiveRouter {
 
 	@Override
 	protected void transferDone(Connection con) {
-		Integer nrofCopies;
+		int nrofCopies;
 		String msgId = con.getMessage().getId();
 		/* get this router's copy of the message */
 		Message msg = getMessage(msgId);
 
-		String type = (String) msg.getProperty("type");
+		PacketType type = msg.getPacketType();
 		
-		//check if it is request packet as only "request" packet has MSG_COUNT_PROPERTY property 
-		if(type.equals("request")){
+		//check if it is request packet as only "request" packet has a copy count 
+		if(type == PacketType.REQUEST){
 			if (msg == null) { // message has been dropped from the buffer after..
 				return; // ..start of transfer -> no need to reduce amount of copies
 			}
 					
 			/* reduce the amount of copies left */
-			nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+			nrofCopies = msg.getCopies();
 			if (isBinary) { 
 				nrofCopies /= 2;
 			}
 			else {
 				nrofCopies--;
 			}
-			msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+			msg.setCopies(nrofCopies);
 			//property update DONE! 
 			
 		}
 	}
 
 
-	//function to manage packets in FIFO way when buffer is full 
-	protected void FIFO_packet_manage(ArrayList<Message> bufferList, Message packetToAdd, int bufferLimit){
-		
-		if(bufferList.size() < bufferLimit){
-				bufferList.add(packetToAdd);//new packet add to the end of the list 
-		}
-		else{
-			//buffer is full
-			//return oldest element to remove; 
-			Message packetToRemove = bufferList.get(0); //oldest element is at the beginning of buffer 
-			
-			bufferList.add(packetToAdd);
-			
-			if(bufferList.remove(packetToRemove)) {  //remove oldest packet from buffer list 
-				deleteMessage(packetToRemove.getId(), true);
-				//boolean haha = bufferList.remove(packetToRemove);
-			}
-						
-		}		
-	}
-
 	//Jing's FIFO buffer management for the ENTIRE BIG BUFFER 
 	//no longer needed as FIFO buffer management is implemented above 
 	@Override
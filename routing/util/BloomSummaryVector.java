@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+/**
+ * Summary vector that stores the message ID indices in a Bloom filter.
+ * The filter is sized for the number of messages it is created for; the
+ * bit positions are derived from the ID index with double hashing.
+ */
+public class BloomSummaryVector extends SummaryVector {
+	/** smallest filter size (bits) */
+	private static final int MIN_BITS = 64;
+
+	/** filter bits per message */
+	private int bitsPerMessage;
+	/** number of bits set for each message */
+	private int nrofHashes;
+	/** the filter */
+	private long[] bits;
+	/** size of the filter in bits */
+	private int size;
+
+	/**
+	 * Constructor.
+	 * @param bitsPerMessage Filter bits per message
+	 * @param nrofMessages Number of messages the filter is sized for
+	 */
+	public BloomSummaryVector(int bitsPerMessage, int nrofMessages) {
+		this.bitsPerMessage = bitsPerMessage;
+		/* optimal number of hash functions is ln 2 * bits per message */
+		this.nrofHashes = Math.max(1, (int)Math.round(bitsPerMessage *
+				Math.log(2)));
+		this.size = Math.max(MIN_BITS, bitsPerMessage * nrofMessages);
+		this.bits = new long[(this.size + 63) / 64];
+	}
+
+	@Override
+	public BloomSummaryVector newVector(int nrofMessages) {
+		return new BloomSummaryVector(this.bitsPerMessage, nrofMessages);
+	}
+
+	@Override
+	public void add(int idIndex) {
+		long h = hash(idIndex);
+		int h1 = (int)h;
+		int h2 = (int)(h >>> 32) | 1;
+		for (int i = 0; i < this.nrofHashes; i++) {
+			int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % this.size;
+			this.bits[bit >>> 6] |= 1L << bit;
+		}
+	}
+
+	@Override
+	public boolean contains(int idIndex) {
+		long h = hash(idIndex);
+		int h1 = (int)h;
+		int h2 = (int)(h >>> 32) | 1;
+		for (int i = 0; i < this.nrofHashes; i++) {
+			int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % this.size;
+			if ((this.bits[bit >>> 6] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Mixes the bits of an ID index (64-bit finalizer of MurmurHash3)
+	 */
+	private static long hash(int idIndex) {
+		long h = idIndex;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
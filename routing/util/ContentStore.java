@@ -0,0 +1,180 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+
+import core.Message;
+import core.Message.PacketType;
+
+/**
+ * Content store of an ICN router. Indexes the buffered data messages by
+ * their content name and keeps a pending interest table (PIT) of the
+ * buffered request messages by the name of the content they ask for
+ * (the "target" property). Several data messages (copies or versions) can
+ * share a content name; looking up a name, adding and removing a message
+ * are constant time operations regardless of how many messages share the
+ * name.
+ * <P>The content name of a message is its {@link #CONTENT_NAME_PROPERTY}
+ * property or, if that is not set, its ID.</P>
+ */
+public class ContentStore {
+	/** Name of the message property holding the content name */
+	public static final String CONTENT_NAME_PROPERTY =
+		Message.CONTENT_NAME_PROPERTY;
+	/** Name of the request message property holding the requested name */
+	public static final String TARGET_PROPERTY = Message.TARGET_PROPERTY;
+
+	/** the buffered data messages by content name, oldest first */
+	private HashMap<String, MessageFifo> data;
+	/** the buffered request messages by requested name, oldest first */
+	private HashMap<String, MessageFifo> interests;
+
+	/**
+	 * Constructor. Creates an empty content store.
+	 */
+	public ContentStore() {
+		this.data = new HashMap<String, MessageFifo>();
+		this.interests = new HashMap<String, MessageFifo>();
+	}
+
+	/**
+	 * Returns the content name of a data message
+	 * @param m The message
+	 * @return The {@link #CONTENT_NAME_PROPERTY} property of the message or
+	 * the ID of the message if the property is not set
+	 */
+	public static String getContentName(Message m) {
+		String name = m.getContentName();
+		return (name != null ? name : m.getId());
+	}
+
+	/**
+	 * Informs the store that a message was added to the buffer. Data
+	 * messages are indexed by their content name and request messages by
+	 * the name they ask for; other messages are ignored.
+	 * @param m The message that was added
+	 */
+	public void messageAdded(Message m) {
+		PacketType type = m.getPacketType();
+		if (type == PacketType.DATA) {
+			add(this.data, getContentName(m), m);
+		}
+		else if (type == PacketType.REQUEST && m.getTarget() != null) {
+			add(this.interests, m.getTarget(), m);
+		}
+	}
+
+	/**
+	 * Informs the store that a message was removed from the buffer
+	 * @param m The message that was removed
+	 */
+	public void messageRemoved(Message m) {
+		PacketType type = m.getPacketType();
+		if (type == PacketType.DATA) {
+			remove(this.data, getContentName(m), m);
+		}
+		else if (type == PacketType.REQUEST && m.getTarget() != null) {
+			remove(this.interests, m.getTarget(), m);
+		}
+	}
+
+	/**
+	 * Returns a buffered data message with the given content name. If
+	 * there are several, the one that was buffered first is returned.
+	 * @param name The content name
+	 * @return The data message or null if there is no data with that name
+	 */
+	public Message getData(String name) {
+		MessageFifo copies = this.data.get(name);
+		return (copies != null ? copies.getOldest() : null);
+	}
+
+	/**
+	 * Returns true if there is buffered data with the given content name
+	 * @param name The content name
+	 * @return True if the name can be served from this store
+	 */
+	public boolean hasData(String name) {
+		return this.data.containsKey(name);
+	}
+
+	/**
+	 * Returns all buffered data messages with the given content name. The
+	 * collection must not be modified.
+	 * @param name The content name
+	 * @return The data messages, oldest first (empty if there are none)
+	 */
+	public Collection<Message> getAllData(String name) {
+		MessageFifo copies = this.data.get(name);
+		if (copies == null) {
+			return Collections.emptyList();
+		}
+		return copies.getMessages();
+	}
+
+	/**
+	 * Returns the buffered request messages that ask for the given content
+	 * name, so that all of them can be answered at once. The collection
+	 * must not be modified.
+	 * @param name The content name
+	 * @return The pending interests, oldest first (empty if there are none)
+	 */
+	public Collection<Message> getPendingInterests(String name) {
+		MessageFifo pending = this.interests.get(name);
+		if (pending == null) {
+			return Collections.emptyList();
+		}
+		return pending.getMessages();
+	}
+
+	/**
+	 * Returns the number of buffered request messages that ask for the
+	 * given content name
+	 * @param name The content name
+	 * @return The number of pending interests
+	 */
+	public int getNrofPendingInterests(String name) {
+		MessageFifo pending = this.interests.get(name);
+		return (pending != null ? pending.size() : 0);
+	}
+
+	/**
+	 * Returns the number of different content names that have data in the
+	 * store
+	 * @return The number of names
+	 */
+	public int getNrofNames() {
+		return this.data.size();
+	}
+
+	/**
+	 * Adds a message to the FIFO of a name, creating the FIFO if needed
+	 */
+	private static void add(HashMap<String, MessageFifo> index, String name,
+			Message m) {
+		MessageFifo fifo = index.get(name);
+		if (fifo == null) {
+			fifo = new MessageFifo();
+			index.put(name, fifo);
+		}
+		fifo.add(m);
+	}
+
+	/**
+	 * Removes a message from the FIFO of a name and the FIFO from the index
+	 * if it became empty
+	 */
+	private static void remove(HashMap<String, MessageFifo> index,
+			String name, Message m) {
+		MessageFifo fifo = index.get(name);
+		if (fifo != null && fifo.remove(m.getId()) != null &&
+				fifo.size() == 0) {
+			index.remove(name);
+		}
+	}
+}
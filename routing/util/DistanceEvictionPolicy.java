@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.LinkedHashMap;
+
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Eviction policy that drops the message whose creation location (the
+ * "initiallocation" property) is nearest to, or furthest from, the current
+ * location of the host. The distance changes whenever the host moves, so
+ * it can't be kept in a sorted index; the messages are compared when a
+ * message needs to be dropped. Messages without a creation location are
+ * treated as if they were created at the host's location. Ties are broken
+ * in favour of the message that was added to the buffer first.
+ */
+public class DistanceEvictionPolicy extends EvictionPolicy {
+	/** Name of the message property holding the creation location */
+	public static final String LOCATION_PROPERTY = Message.LOCATION_PROPERTY;
+
+	/** Drop the nearest (true) or the furthest (false) message */
+	private boolean nearest;
+	/** The buffered messages in the order they were added */
+	private LinkedHashMap<String, Message> messages;
+
+	/**
+	 * Constructor.
+	 * @param nearest If true, the message created nearest to the host is
+	 * dropped first; if false, the one created furthest from it
+	 */
+	public DistanceEvictionPolicy(boolean nearest) {
+		this.nearest = nearest;
+		this.messages = new LinkedHashMap<String, Message>();
+	}
+
+	@Override
+	public void messageAdded(Message m) {
+		this.messages.remove(m.getId());
+		this.messages.put(m.getId(), m);
+	}
+
+	@Override
+	public void messageRemoved(Message m) {
+		this.messages.remove(m.getId());
+	}
+
+	@Override
+	public Message getNextToEvict(DTNHost host, Pinning pinning) {
+		Coord loc = host.getLocation();
+		Message selected = null;
+		double selectedDist = 0;
+
+		for (Message m : this.messages.values()) {
+			if (pinning != null && pinning.isPinned(m)) {
+				continue;
+			}
+			Coord created = m.getInitialLocation();
+			double dist = (created == null ? 0 : loc.distance(created));
+			if (selected == null || (nearest ? dist < selectedDist :
+					dist > selectedDist)) {
+				selected = m;
+				selectedDist = dist;
+			}
+		}
+
+		return selected;
+	}
+
+	@Override
+	public DistanceEvictionPolicy replicate() {
+		return new DistanceEvictionPolicy(this.nearest);
+	}
+}
@@ -4,6 +4,8 @@
  */
 package routing.util;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.Random;
 
 import core.*;
@@ -13,8 +15,13 @@ import core.*;
  * discovery), scan responses, and data transmission. If scanning is done more 
  * often than 1/s, constant scanning is assumed (and power consumption does not
  * increase from {@link #scanEnergy} value).
+ * <P>The scanning, scan response, and transmit energy values can also be set
+ * for a network interface type in the namespace of the interface (e.g., 
+ * <CODE>btInterface.transmitEnergy</CODE>), so hosts with several radios
+ * use the energy of each radio. The values that are not set for an 
+ * interface are read from the namespace of the router.</P>
  */
-public class EnergyModel implements ModuleCommunicationListener {
+public class EnergyModel {
 	/** Initial units of energy -setting id ({@value}). Can be either a 
 	 * single value, or a range of two values. In the latter case, the used
 	 * value is a uniformly distributed random value between the two values. */
@@ -44,11 +51,16 @@ public class EnergyModel implements ModuleCommunicationListener {
 	/** {@link ModuleCommunicationBus} identifier for the "current amount of 
 	 * energy left" variable. Value type: double */
 	public static final String ENERGY_VALUE_ID = "Energy.value";
+	/** {@link ModuleCommunicationBus} slot handle of {@link #ENERGY_VALUE_ID}
+	 */
+	public static final int ENERGY_VALUE_SLOT = 
+		ModuleCommunicationBus.registerDouble(ENERGY_VALUE_ID);
 	
 	/** Initial energy levels from the settings */
 	private final double[] initEnergy;
 	private double warmupTime;
-	/** current energy level */
+	/** current energy level until the model is initialized; after that
+	 * the level is kept in the communication bus */
 	private double currentEnergy;
 	/** energy usage per scan */
 	private double scanEnergy;
@@ -59,6 +71,8 @@ public class EnergyModel implements ModuleCommunicationListener {
 	/** sim time of the last energy updated */
 	private double lastUpdate;
 	private ModuleCommunicationBus comBus;
+	/** energy usage values of the interface types; shared with replicas */
+	private HashMap<String, InterfaceEnergy> interfaceEnergies;
 	private static Random rng = null;
 
 	/**
@@ -77,6 +91,7 @@ public class EnergyModel implements ModuleCommunicationListener {
 		this.scanEnergy = s.getDouble(SCAN_ENERGY_S);
 		this.transmitEnergy = s.getDouble(TRANSMIT_ENERGY_S);
 		this.scanResponseEnergy = s.getDouble(SCAN_RSP_ENERGY_S);
+		this.interfaceEnergies = new HashMap<String, InterfaceEnergy>();
 	
 		if (s.contains(WARMUP_S)) {
 			this.warmupTime = s.getInt(WARMUP_S);
@@ -101,6 +116,7 @@ public class EnergyModel implements ModuleCommunicationListener {
 		this.transmitEnergy = proto.transmitEnergy;
 		this.warmupTime  = proto.warmupTime;
 		this.scanResponseEnergy = proto.scanResponseEnergy;
+		this.interfaceEnergies = proto.interfaceEnergies;
 		this.comBus = null;
 		this.lastUpdate = 0;
 	}
@@ -133,7 +149,10 @@ public class EnergyModel implements ModuleCommunicationListener {
 	 * @return the current energy level
 	 */
 	public double getEnergy() {
-		return this.currentEnergy;
+		if (this.comBus == null) {
+			return this.currentEnergy;
+		}
+		return this.comBus.getDouble(ENERGY_VALUE_SLOT, 0);
 	}
 	
 	/**
@@ -151,10 +170,10 @@ public class EnergyModel implements ModuleCommunicationListener {
 			return; /* model not initialized (via update) yet */
 		}
 		
-		if (amount >= this.currentEnergy) {
-			comBus.updateProperty(ENERGY_VALUE_ID, 0.0);
+		if (amount >= getEnergy()) {
+			comBus.setDouble(ENERGY_VALUE_SLOT, 0.0);
 		} else {
-			comBus.updateDouble(ENERGY_VALUE_ID, -amount);
+			comBus.updateDouble(ENERGY_VALUE_SLOT, -amount);
 		}
 		
 	}
@@ -167,45 +186,113 @@ public class EnergyModel implements ModuleCommunicationListener {
 		reduceEnergy(this.scanResponseEnergy);
 	}
 	
+	/**
+	 * Reduces the energy reserve for the amount that is used when another
+	 * host connects (does device discovery) to the given interface
+	 * @param iface The interface that was discovered
+	 */
+	public void reduceDiscoveryEnergy(NetworkInterface iface) {
+		reduceEnergy(getInterfaceEnergy(iface).scanResponseEnergy);
+	}
+	
 	/**
 	 * Reduces the energy reserve for the amount that is used by sending data
 	 * and scanning for the other nodes. 
 	 */
 	public void update(NetworkInterface iface, ModuleCommunicationBus comBus) {
+		double delta = startUpdate(comBus);
+		update(iface, delta);
+	}
+	
+	/**
+	 * Reduces the energy reserve for the amount that is used by sending data
+	 * and scanning for the other nodes over all the given interfaces
+	 * @param interfaces The interfaces of the host
+	 * @param comBus The communication bus of the host
+	 */
+	public void update(List<NetworkInterface> interfaces, 
+			ModuleCommunicationBus comBus) {
+		double delta = startUpdate(comBus);
+		for (int i=0, n=interfaces.size(); i<n; i++) {
+			update(interfaces.get(i), delta);
+		}
+	}
+	
+	/**
+	 * Starts an energy update round
+	 * @param comBus The communication bus of the host
+	 * @return Time since the previous update
+	 */
+	private double startUpdate(ModuleCommunicationBus comBus) {
 		double simTime = SimClock.getTime();
 		double delta = simTime - this.lastUpdate;
 		
 		if (this.comBus == null) {
 			this.comBus = comBus;
-			this.comBus.addProperty(ENERGY_VALUE_ID, this.currentEnergy);
-			this.comBus.subscribe(ENERGY_VALUE_ID, this);
+			this.comBus.addDouble(ENERGY_VALUE_SLOT, this.currentEnergy);
 		}
+		this.lastUpdate = simTime;
+		return delta;
+	}
+	
+	/**
+	 * Reduces the energy used by one interface since the previous update
+	 * @param iface The interface
+	 * @param delta Time since the previous update
+	 */
+	private void update(NetworkInterface iface, double delta) {
+		InterfaceEnergy e = getInterfaceEnergy(iface);
 		
-		if (simTime > this.lastUpdate && iface.isTransferring()) {
+		if (delta > 0 && iface.isTransferring()) {
 			/* sending or receiving data */
-			reduceEnergy(delta * this.transmitEnergy);
+			reduceEnergy(delta * e.transmitEnergy);
 		}
-		this.lastUpdate = simTime;
 		
 		if (iface.isScanning()) {
 			/* scanning at this update round */
 			if (iface.getTransmitRange() > 0) {
 				if (delta < 1) {
-					reduceEnergy(this.scanEnergy * delta);
+					reduceEnergy(e.scanEnergy * delta);
 				} else {
-					reduceEnergy(this.scanEnergy);
+					reduceEnergy(e.scanEnergy);
 				}
 			}
 		}
 	}
+	
+	/**
+	 * Returns the energy usage values of an interface's type. The values are
+	 * read from the settings when an interface of the type is first seen.
+	 * @param iface The interface
+	 * @return The energy usage values
+	 */
+	private InterfaceEnergy getInterfaceEnergy(NetworkInterface iface) {
+		String type = iface.getInterfaceType();
+		InterfaceEnergy e = this.interfaceEnergies.get(type);
+		if (e == null) {
+			Settings s = new Settings(type);
+			e = new InterfaceEnergy(
+					s.getDouble(SCAN_ENERGY_S, this.scanEnergy),
+					s.getDouble(TRANSMIT_ENERGY_S, this.transmitEnergy),
+					s.getDouble(SCAN_RSP_ENERGY_S, this.scanResponseEnergy));
+			this.interfaceEnergies.put(type, e);
+		}
+		return e;
+	}
 		
 	/**
-	 * Called by the combus if the energy value is changed
-	 * @param key The energy ID
-	 * @param newValue The new energy value
+	 * Energy usage values of a network interface type
 	 */
-	public void moduleValueChanged(String key, Object newValue) {
-		this.currentEnergy = (Double)newValue;
+	private static class InterfaceEnergy {
+		private final double scanEnergy;
+		private final double transmitEnergy;
+		private final double scanResponseEnergy;
+		
+		private InterfaceEnergy(double scanEnergy, double transmitEnergy,
+				double scanResponseEnergy) {
+			this.scanEnergy = scanEnergy;
+			this.transmitEnergy = transmitEnergy;
+			this.scanResponseEnergy = scanResponseEnergy;
+		}
 	}
-	
 }
\ No newline at end of file
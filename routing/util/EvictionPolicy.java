@@ -0,0 +1,129 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import core.DTNHost;
+import core.Message;
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Buffer eviction policy for routers. Decides which message is dropped
+ * next when the message buffer is full. A policy is told about every
+ * message that enters or leaves the buffer so it can keep its own index
+ * of the messages instead of scanning the whole buffer for each drop.
+ * Each router has its own policy instance (see {@link #replicate()}).
+ */
+public abstract class EvictionPolicy {
+	/** Eviction policy -setting id ({@value}). Name of the policy that
+	 * selects the message to drop when the buffer is full. One of
+	 * {@link #OLDEST}, {@link #NEWEST}, {@link #SHORTEST_TTL},
+	 * {@link #MOST_HOPS}, {@link #NEAREST} or {@link #FURTHEST}. If not set,
+	 * the router uses its own selection method. */
+	public static final String EVICTION_POLICY_S = "evictionPolicy";
+
+	/** Drop the message that was received first ({@value}) */
+	public static final String OLDEST = "oldest";
+	/** Drop the message that was received last ({@value}) */
+	public static final String NEWEST = "newest";
+	/** Drop the message whose TTL runs out first ({@value}) */
+	public static final String SHORTEST_TTL = "shortestTtl";
+	/** Drop the message that has travelled the most hops ({@value}) */
+	public static final String MOST_HOPS = "mostHops";
+	/** Drop the message created nearest to the host's location ({@value}) */
+	public static final String NEAREST = "nearest";
+	/** Drop the message created furthest from the host's location
+	 * ({@value}) */
+	public static final String FURTHEST = "furthest";
+
+	/**
+	 * Tells which messages must not be dropped at the moment (e.g. because
+	 * they are being sent).
+	 */
+	public interface Pinning {
+		/**
+		 * Returns true if the message can't be dropped right now
+		 * @param m The message to check
+		 * @return True if the message is pinned
+		 */
+		public boolean isPinned(Message m);
+	}
+
+	/**
+	 * Creates a policy based on the {@link #EVICTION_POLICY_S} setting of
+	 * the given settings object.
+	 * @param s The settings to read the policy name from
+	 * @return The policy or null if the setting was not defined
+	 * @throws SettingsError if the policy name is unknown
+	 */
+	public static EvictionPolicy createPolicy(Settings s) {
+		if (!s.contains(EVICTION_POLICY_S)) {
+			return null;
+		}
+		try {
+			return createPolicy(s.getSetting(EVICTION_POLICY_S));
+		} catch (SettingsError e) {
+			throw new SettingsError(e.getMessage() + " for setting " +
+					s.getFullPropertyName(EVICTION_POLICY_S));
+		}
+	}
+
+	/**
+	 * Creates a policy by name.
+	 * @param name Name of the policy
+	 * @return The policy
+	 * @throws SettingsError if the policy name is unknown
+	 */
+	public static EvictionPolicy createPolicy(String name) {
+		if (name.equals(OLDEST)) {
+			return new IndexedEvictionPolicy(IndexedEvictionPolicy.KEY_OLDEST);
+		}
+		else if (name.equals(NEWEST)) {
+			return new IndexedEvictionPolicy(IndexedEvictionPolicy.KEY_NEWEST);
+		}
+		else if (name.equals(SHORTEST_TTL)) {
+			return new IndexedEvictionPolicy(
+					IndexedEvictionPolicy.KEY_SHORTEST_TTL);
+		}
+		else if (name.equals(MOST_HOPS)) {
+			return new IndexedEvictionPolicy(
+					IndexedEvictionPolicy.KEY_MOST_HOPS);
+		}
+		else if (name.equals(NEAREST)) {
+			return new DistanceEvictionPolicy(true);
+		}
+		else if (name.equals(FURTHEST)) {
+			return new DistanceEvictionPolicy(false);
+		}
+		throw new SettingsError("Unknown eviction policy '" + name + "'");
+	}
+
+	/**
+	 * Informs the policy that a message was added to the buffer
+	 * @param m The message that was added
+	 */
+	public abstract void messageAdded(Message m);
+
+	/**
+	 * Informs the policy that a message was removed from the buffer
+	 * @param m The message that was removed
+	 */
+	public abstract void messageRemoved(Message m);
+
+	/**
+	 * Returns the message that should be dropped next.
+	 * @param host The host whose buffer the policy is managing
+	 * @param pinning Tells which messages can't be dropped, or null if
+	 * any message can be dropped
+	 * @return The message to drop or null if no message can be dropped
+	 */
+	public abstract Message getNextToEvict(DTNHost host, Pinning pinning);
+
+	/**
+	 * Returns a new, empty policy with the same configuration as this one
+	 * @return The new policy
+	 */
+	public abstract EvictionPolicy replicate();
+}
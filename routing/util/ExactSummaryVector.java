@@ -0,0 +1,36 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.BitSet;
+
+/**
+ * Summary vector that stores the exact set of message ID indices
+ */
+public class ExactSummaryVector extends SummaryVector {
+	private BitSet ids;
+
+	/**
+	 * Constructor. Creates an empty vector.
+	 */
+	public ExactSummaryVector() {
+		this.ids = new BitSet();
+	}
+
+	@Override
+	public ExactSummaryVector newVector(int nrofMessages) {
+		return new ExactSummaryVector();
+	}
+
+	@Override
+	public void add(int idIndex) {
+		this.ids.set(idIndex);
+	}
+
+	@Override
+	public boolean contains(int idIndex) {
+		return this.ids.get(idIndex);
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import core.Message;
+
+/**
+ * Hashed timing wheel of buffered messages keyed on the time their TTL runs
+ * out. The wheel has a fixed number of one second slots and a message is
+ * put in the slot of its expiry second (modulo the number of slots), so
+ * adding a message is a constant time operation and finding the expired
+ * messages only looks at the slots whose time has come. Messages that
+ * expire more than a wheel revolution ahead just stay in their slot for
+ * more rounds.
+ * <P>A message is expired after its due time, when its
+ * {@link Message#getTtl() TTL} has dropped to zero, i.e., during the last
+ * minute before its {@link Message#getExpiryTime() expiry time}. Messages
+ * are not removed from the wheel when they leave the buffer; the owner
+ * should check that a due message is still buffered. Messages with
+ * infinite TTL are not added.</P>
+ */
+public class ExpiryWheel {
+	/** length of a slot (seconds) */
+	public static final double SLOT_LENGTH = 1.0;
+	/** number of slots */
+	public static final int NROF_SLOTS = 1024;
+
+	/** the slots; null if nothing has been put in the slot yet */
+	private List<Message>[] slots;
+	/** number of messages in the wheel */
+	private int size;
+	/** the slot number (time in slots) up to which the wheel is processed */
+	private long tick;
+
+	/**
+	 * Constructor. Creates an empty wheel.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public ExpiryWheel() {
+		this.slots = new List[NROF_SLOTS];
+		this.size = 0;
+		this.tick = 0;
+	}
+
+	/**
+	 * Returns the time after which a message is expired
+	 * @param m The message
+	 * @return The due time or Double.MAX_VALUE if the message never expires
+	 */
+	public static double getDueTime(Message m) {
+		double expiry = m.getExpiryTime();
+		return (expiry == Double.MAX_VALUE ? expiry : expiry - 60);
+	}
+
+	/**
+	 * Adds a message to the wheel. A message whose due time has passed
+	 * already is returned by the next call of {@link #removeDue}.
+	 * @param m The message
+	 */
+	public void add(Message m) {
+		double due = getDueTime(m);
+		if (due == Double.MAX_VALUE) {
+			return;
+		}
+		long t = Math.max((long)Math.floor(due / SLOT_LENGTH), this.tick);
+		int i = (int)(t % NROF_SLOTS);
+		if (this.slots[i] == null) {
+			this.slots[i] = new ArrayList<Message>();
+		}
+		this.slots[i].add(m);
+		this.size++;
+	}
+
+	/**
+	 * Removes the messages whose due time is before the given time from
+	 * the wheel
+	 * @param now Current simulation time
+	 * @param due The list where the removed messages are added in the order
+	 * of their slots
+	 */
+	public void removeDue(double now, List<Message> due) {
+		long nowTick = (long)Math.floor(now / SLOT_LENGTH);
+		if (this.size > 0) {
+			/* no need to go around more than once */
+			long first = Math.max(this.tick, nowTick - NROF_SLOTS + 1);
+			for (long t = first; t <= nowTick; t++) {
+				List<Message> slot = this.slots[(int)(t % NROF_SLOTS)];
+				if (slot != null && !slot.isEmpty()) {
+					removeDue(slot, now, due);
+				}
+			}
+		}
+		this.tick = Math.max(this.tick, nowTick);
+	}
+
+	/**
+	 * Moves the due messages of a slot to the due list
+	 */
+	private void removeDue(List<Message> slot, double now, List<Message> due) {
+		int kept = 0;
+		for (int i = 0, n = slot.size(); i < n; i++) {
+			Message m = slot.get(i);
+			if (getDueTime(m) < now) {
+				due.add(m);
+				this.size--;
+			}
+			else { /* due on a later round or later on this second */
+				slot.set(kept++, m);
+			}
+		}
+		for (int i = slot.size() - 1; i >= kept; i--) {
+			slot.remove(i);
+		}
+	}
+
+	/**
+	 * Returns the number of messages in the wheel
+	 * @return The number of messages
+	 */
+	public int size() {
+		return this.size;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Eviction policy that keeps the buffered messages sorted by a key that
+ * does not change while the message is in the buffer (receive time,
+ * expiry time or hop count). The next message to drop is the first one in
+ * the index that is not pinned, so finding it doesn't require scanning the
+ * whole buffer. Messages with equal keys are dropped in the order they
+ * were added to the buffer.
+ */
+public class IndexedEvictionPolicy extends EvictionPolicy {
+	/** Key type: receive time, smallest first */
+	public static final int KEY_OLDEST = 0;
+	/** Key type: receive time, largest first */
+	public static final int KEY_NEWEST = 1;
+	/** Key type: expiry time, smallest first */
+	public static final int KEY_SHORTEST_TTL = 2;
+	/** Key type: hop count, largest first */
+	public static final int KEY_MOST_HOPS = 3;
+
+	/** Orders entries by key and then by insertion order */
+	private static final Comparator<Entry> ENTRY_ORDER =
+		new Comparator<Entry>() {
+		public int compare(Entry e1, Entry e2) {
+			int c = Double.compare(e1.key, e2.key);
+			if (c != 0) {
+				return c;
+			}
+			return (e1.seq < e2.seq ? -1 : (e1.seq == e2.seq ? 0 : 1));
+		}
+	};
+
+	/** Which key the messages are sorted by */
+	private int keyType;
+	/** The buffered messages in eviction order */
+	private TreeSet<Entry> index;
+	/** Index entries by message ID */
+	private HashMap<String, Entry> entries;
+	/** Sequence number for the next added message */
+	private long nextSeq;
+
+	/**
+	 * Constructor.
+	 * @param keyType Which key to sort the messages by (one of the KEY_
+	 * constants)
+	 */
+	public IndexedEvictionPolicy(int keyType) {
+		this.keyType = keyType;
+		this.index = new TreeSet<Entry>(ENTRY_ORDER);
+		this.entries = new HashMap<String, Entry>();
+		this.nextSeq = 0;
+	}
+
+	/**
+	 * Returns the sort key of a message. Smaller keys are dropped first.
+	 * @param m The message
+	 * @return The key
+	 */
+	private double getKey(Message m) {
+		switch (this.keyType) {
+		case KEY_OLDEST:
+			return m.getReceiveTime();
+		case KEY_NEWEST:
+			return -m.getReceiveTime();
+		case KEY_SHORTEST_TTL:
+			return m.getExpiryTime();
+		default:
+			return -m.getHopCount();
+		}
+	}
+
+	@Override
+	public void messageAdded(Message m) {
+		Entry e = new Entry(m, getKey(m), nextSeq++);
+		Entry old = this.entries.put(m.getId(), e);
+		if (old != null) {
+			this.index.remove(old);
+		}
+		this.index.add(e);
+	}
+
+	@Override
+	public void messageRemoved(Message m) {
+		Entry e = this.entries.remove(m.getId());
+		if (e != null) {
+			this.index.remove(e);
+		}
+	}
+
+	@Override
+	public Message getNextToEvict(DTNHost host, Pinning pinning) {
+		for (Entry e : this.index) {
+			if (pinning == null || !pinning.isPinned(e.msg)) {
+				return e.msg;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public IndexedEvictionPolicy replicate() {
+		return new IndexedEvictionPolicy(this.keyType);
+	}
+
+	/**
+	 * One buffered message in the index
+	 */
+	private static class Entry {
+		private Message msg;
+		private double key;
+		private long seq;
+
+		private Entry(Message msg, double key, long seq) {
+			this.msg = msg;
+			this.key = key;
+			this.seq = seq;
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import core.Message;
+
+/**
+ * First-in-first-out set of messages. Adding, removing and looking up a
+ * message by its ID and finding the oldest message are constant time
+ * operations. Adding a message that is already in the set does not change
+ * its position.
+ */
+public class MessageFifo {
+	/** the messages by ID, in the order they were added */
+	private LinkedHashMap<String, Message> messages;
+
+	/**
+	 * Constructor. Creates an empty FIFO.
+	 */
+	public MessageFifo() {
+		this.messages = new LinkedHashMap<String, Message>();
+	}
+
+	/**
+	 * Adds a message to the end of the FIFO unless a message with the same
+	 * ID is already in it.
+	 * @param m The message to add
+	 */
+	public void add(Message m) {
+		if (!this.messages.containsKey(m.getId())) {
+			this.messages.put(m.getId(), m);
+		}
+	}
+
+	/**
+	 * Removes a message from the FIFO
+	 * @param id ID of the message to remove
+	 * @return The removed message or null if there was no message with
+	 * the given ID
+	 */
+	public Message remove(String id) {
+		return this.messages.remove(id);
+	}
+
+	/**
+	 * Returns true if a message with the given ID is in the FIFO
+	 * @param id ID of the message
+	 * @return True if the message is in the FIFO
+	 */
+	public boolean contains(String id) {
+		return this.messages.containsKey(id);
+	}
+
+	/**
+	 * Returns the message that was added first
+	 * @return The oldest message or null if the FIFO is empty
+	 */
+	public Message getOldest() {
+		Iterator<Message> i = this.messages.values().iterator();
+		return (i.hasNext() ? i.next() : null);
+	}
+
+	/**
+	 * Returns the number of messages in the FIFO
+	 * @return The number of messages
+	 */
+	public int size() {
+		return this.messages.size();
+	}
+
+	/**
+	 * Returns the messages in the order they were added. The collection
+	 * must not be modified.
+	 * @return The messages, oldest first
+	 */
+	public Collection<Message> getMessages() {
+		return this.messages.values();
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Arrays;
+
+import util.IntHashSet;
+
+import core.Message;
+
+/**
+ * Duplicate suppression store. Remembers the {@link Message#getIdIndex()
+ * ID indices} of messages (e.g., the ones delivered to or blacklisted by a
+ * router) without keeping the messages themselves. The store can be
+ * bounded in size and an ID can be forgotten a while after the TTL of its
+ * message has run out, when no copy of the message can arrive any more.
+ * When the store is full, the ID whose message expires first is forgotten
+ * (the one remembered first if they expire at the same time).
+ */
+public class MessageHistory {
+	/** Value for no size limit */
+	public static final int UNLIMITED = Integer.MAX_VALUE;
+
+	/** the remembered IDs; the table only grows with the number of IDs,
+	 * so its size is bounded by the maximum size of the store */
+	private IntHashSet ids;
+	/** number of remembered IDs */
+	private int size;
+	/** maximum number of remembered IDs */
+	private int maxSize;
+	/** how long (seconds) an ID is remembered after the TTL of its message
+	 * has run out, or negative if the IDs don't expire */
+	private double expiryDelay;
+
+	/* min-heap of the remembered IDs by (forget time, sequence number);
+	   only used if the IDs can be forgotten. Without expiry, the forget
+	   time only orders the IDs for dropping when the store is full. */
+	private double[] forgetTimes;
+	private long[] seqs;
+	private int[] heapIds;
+	private long nextSeq;
+
+	/**
+	 * Constructor.
+	 * @param maxSize Maximum number of remembered IDs or {@link #UNLIMITED}
+	 * @param expiryDelay How long (seconds) an ID is remembered after the
+	 * TTL of its message has run out; negative to remember the IDs until
+	 * the store is full
+	 */
+	public MessageHistory(int maxSize, double expiryDelay) {
+		this.ids = new IntHashSet();
+		this.size = 0;
+		this.maxSize = maxSize;
+		this.expiryDelay = expiryDelay;
+		if (isForgetting()) {
+			this.forgetTimes = new double[16];
+			this.seqs = new long[16];
+			this.heapIds = new int[16];
+		}
+	}
+
+	/**
+	 * Returns true if IDs are ever forgotten
+	 */
+	private boolean isForgetting() {
+		return this.maxSize != UNLIMITED || this.expiryDelay >= 0;
+	}
+
+	/**
+	 * Remembers the ID of a message
+	 * @param m The message
+	 * @param now Current simulation time
+	 */
+	public void add(Message m, double now) {
+		int id = m.getIdIndex();
+		if (!this.ids.add(id)) {
+			return; /* copies of a message expire at the same time */
+		}
+		this.size++;
+
+		if (!isForgetting()) {
+			return;
+		}
+
+		double forgetTime = m.getExpiryTime();
+		if (this.expiryDelay > 0 && forgetTime != Double.MAX_VALUE) {
+			forgetTime += this.expiryDelay;
+		}
+		push(forgetTime, id);
+		forgetExpired(now);
+		while (this.size > this.maxSize) {
+			this.ids.remove(pop());
+		}
+	}
+
+	/**
+	 * Returns true if the ID of a message is remembered
+	 * @param idIndex ID index of the message
+	 * @return True if the ID is in the store
+	 */
+	public boolean contains(int idIndex) {
+		return this.ids.contains(idIndex);
+	}
+
+	/**
+	 * Forgets the IDs whose forget time has passed
+	 * @param now Current simulation time
+	 */
+	public void forgetExpired(double now) {
+		if (this.expiryDelay < 0) {
+			return;
+		}
+		while (this.size > 0 && this.forgetTimes[0] <= now) {
+			this.ids.remove(pop());
+		}
+	}
+
+	/**
+	 * Returns the number of remembered IDs
+	 * @return The number of IDs
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the remembered IDs
+	 * @return The ID indices in increasing order in a new array
+	 */
+	public int[] getIds() {
+		int[] list = this.ids.toArray();
+		Arrays.sort(list);
+		return list;
+	}
+
+	/**
+	 * Returns true if heap entry i should be forgotten before entry j
+	 */
+	private boolean before(int i, int j) {
+		if (this.forgetTimes[i] != this.forgetTimes[j]) {
+			return this.forgetTimes[i] < this.forgetTimes[j];
+		}
+		return this.seqs[i] < this.seqs[j];
+	}
+
+	private void swap(int i, int j) {
+		double t = this.forgetTimes[i];
+		this.forgetTimes[i] = this.forgetTimes[j];
+		this.forgetTimes[j] = t;
+		long s = this.seqs[i];
+		this.seqs[i] = this.seqs[j];
+		this.seqs[j] = s;
+		int id = this.heapIds[i];
+		this.heapIds[i] = this.heapIds[j];
+		this.heapIds[j] = id;
+	}
+
+	/**
+	 * Adds an ID to the heap. {@link #size} must already include it.
+	 */
+	private void push(double forgetTime, int id) {
+		int i = this.size - 1;
+		if (i == this.heapIds.length) {
+			int n = this.heapIds.length * 2;
+			this.forgetTimes = Arrays.copyOf(this.forgetTimes, n);
+			this.seqs = Arrays.copyOf(this.seqs, n);
+			this.heapIds = Arrays.copyOf(this.heapIds, n);
+		}
+		this.forgetTimes[i] = forgetTime;
+		this.seqs[i] = this.nextSeq++;
+		this.heapIds[i] = id;
+
+		while (i > 0 && before(i, (i - 1) / 2)) {
+			swap(i, (i - 1) / 2);
+			i = (i - 1) / 2;
+		}
+	}
+
+	/**
+	 * Removes the first ID from the heap
+	 * @return The removed ID
+	 */
+	private int pop() {
+		int id = this.heapIds[0];
+		this.size--;
+		swap(0, this.size);
+
+		int i = 0;
+		while (true) {
+			int first = i;
+			int left = 2 * i + 1;
+			if (left < this.size && before(left, first)) {
+				first = left;
+			}
+			if (left + 1 < this.size && before(left + 1, first)) {
+				first = left + 1;
+			}
+			if (first == i) {
+				break;
+			}
+			swap(i, first);
+			i = first;
+		}
+		return id;
+	}
+}
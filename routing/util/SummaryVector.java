@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Summary vector of the messages a host knows about (carries, has received
+ * as the final recipient or has blacklisted). When a connection comes up,
+ * a router takes the summary vector of the other host and doesn't offer
+ * it messages that are in the vector, so the messages the other host
+ * would reject as old aren't replicated for nothing. Messages are
+ * identified by their {@link core.Message#getIdIndex() ID index}.
+ * <P>The vector is a snapshot taken when the connection came up; messages
+ * sent over the connection are added to it. A message the other host
+ * dropped after the snapshot is not offered again during the contact.
+ * </P>
+ */
+public abstract class SummaryVector {
+	/** Summary vector type -setting id ({@value}). {@link #EXACT} or
+	 * {@link #BLOOM}. If not set, no summary vectors are used and every
+	 * message is offered to the other host. */
+	public static final String SUMMARY_VECTOR_S = "summaryVector";
+	/** Bloom filter bits per message -setting id ({@value}). Size of the
+	 * Bloom filter relative to the number of messages in it. Default =
+	 * {@link #DEF_BLOOM_BITS}. */
+	public static final String BLOOM_BITS_S = "summaryVectorBloomBits";
+
+	/** Exact set of message IDs ({@value}) */
+	public static final String EXACT = "exact";
+	/** Bloom filter of message IDs ({@value}). Smaller than an exact set
+	 * for large ID spaces, but a false positive keeps a message from
+	 * being offered during the contact. */
+	public static final String BLOOM = "bloom";
+	/** Default number of Bloom filter bits per message ({@value}); gives
+	 * about 1% false positives */
+	public static final int DEF_BLOOM_BITS = 10;
+
+	/**
+	 * Creates an empty vector of the type given by the
+	 * {@link #SUMMARY_VECTOR_S} setting. The vectors exchanged on
+	 * connections are created with {@link #newVector(int)} of this one.
+	 * @param s The settings to read the type from
+	 * @return The vector or null if the setting was not defined
+	 * @throws SettingsError if the type is unknown
+	 */
+	public static SummaryVector createPrototype(Settings s) {
+		if (!s.contains(SUMMARY_VECTOR_S)) {
+			return null;
+		}
+		String type = s.getSetting(SUMMARY_VECTOR_S);
+		if (type.equals(EXACT)) {
+			return new ExactSummaryVector();
+		}
+		else if (type.equals(BLOOM)) {
+			int bits = s.getInt(BLOOM_BITS_S, DEF_BLOOM_BITS);
+			if (bits < 1) {
+				throw new SettingsError("Invalid value for " +
+						s.getFullPropertyName(BLOOM_BITS_S));
+			}
+			return new BloomSummaryVector(bits, 0);
+		}
+		throw new SettingsError("Unknown summary vector type '" + type +
+				"' for setting " + s.getFullPropertyName(SUMMARY_VECTOR_S));
+	}
+
+	/**
+	 * Returns a new, empty vector of the same type and configuration as
+	 * this one
+	 * @param nrofMessages Number of messages that will be added to the
+	 * vector (for sizing)
+	 * @return The new vector
+	 */
+	public abstract SummaryVector newVector(int nrofMessages);
+
+	/**
+	 * Adds a message to the vector
+	 * @param idIndex ID index of the message
+	 */
+	public abstract void add(int idIndex);
+
+	/**
+	 * Returns true if the message is (or, for a Bloom filter, may be) in
+	 * the vector
+	 * @param idIndex ID index of the message
+	 * @return True if the message is in the vector
+	 */
+	public abstract boolean contains(int idIndex);
+}
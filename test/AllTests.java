@@ -49,6 +49,16 @@ public class AllTests {
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
+		suite.addTestSuite(ContentStoreTest.class);
+		suite.addTestSuite(LongHashMapTest.class);
+		suite.addTestSuite(IntHashSetTest.class);
+		suite.addTestSuite(SummaryVectorTest.class);
+		suite.addTestSuite(MessageHistoryTest.class);
+		suite.addTestSuite(ExpiryWheelTest.class);
+		suite.addTestSuite(MergedEventQueueTest.class);
+		suite.addTestSuite(TransferDoneQueueTest.class);
+		suite.addTestSuite(SparseConnectivityGridTest.class);
+		suite.addTestSuite(WarmupCheckpointTest.class);
 		//$JUnit-END$
 		return suite;
 	}
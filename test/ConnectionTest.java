@@ -9,6 +9,7 @@ import java.util.List;
 
 import junit.framework.TestCase;
 import core.CBRConnection;
+import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.NetworkInterface;
@@ -29,12 +30,13 @@ public class ConnectionTest extends TestCase {
 	private int index;
 	private SimClock clock = SimClock.getInstance();
 	private int conCount;
+	private TestSettings testSettings;
 	
 	protected void setUp() throws Exception {
 		super.setUp();
 		SimClock.reset(); 
 		clock.setTime(START_TIME);
-		TestSettings testSettings = new TestSettings();
+		testSettings = new TestSettings();
 		testSettings.setNameSpace(TestUtils.IFACE_NS);
 		testSettings.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "1.0");
 		testSettings.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
@@ -44,12 +46,7 @@ public class ConnectionTest extends TestCase {
 		m = new Message[nrof];
 				
 		for (int i=0; i< nrof; i++) {
-			NetworkInterface ni = new TestInterface(testSettings);
-			List<NetworkInterface> li = new ArrayList<NetworkInterface>();
-			li.add(ni);
-
-			ModuleCommunicationBus comBus = new ModuleCommunicationBus();
-			h[i] = new TestDTNHost(li,comBus, testSettings);
+			h[i] = newHost();
 			m[i] = new Message(h[0], h[i],""+i, size[i]);
 		}
 		
@@ -65,6 +62,16 @@ public class ConnectionTest extends TestCase {
 		conCount = 3;
 	}
 
+	private TestDTNHost newHost() {
+		NetworkInterface ni = new TestInterface(testSettings);
+		ni.setTransferSpeedShared(true);
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(ni);
+
+		ModuleCommunicationBus comBus = new ModuleCommunicationBus();
+		return new TestDTNHost(li,comBus, testSettings);
+	}
+	
 	private void con(DTNHost from, DTNHost to) {
 		c[index] = new CBRConnection(from, from.getInterfaces().get(0), to, to.getInterfaces().get(0), speed[index]);
 		index++;
@@ -198,6 +205,125 @@ public class ConnectionTest extends TestCase {
 		assertEquals(count, c[0].getTotalBytesTransferred(), 1); 
 	}
 	
+	public void testTransferSpeedSharing() {
+		DTNHost from = newHost();
+		NetworkInterface ni = from.getInterfaces().get(0);
+		ni.connect(newHost().getInterfaces().get(0));
+		ni.connect(newHost().getInterfaces().get(0));
+		CBRConnection c1 = (CBRConnection)ni.getConnections().get(0);
+		CBRConnection c2 = (CBRConnection)ni.getConnections().get(1);
+		
+		/* speed is 1 Bps; 10 bytes alone take 10 seconds */
+		c1.startTransfer(from, new Message(from, h[1], "s1", 10));
+		assertEquals(START_TIME + 10, c1.getTransferDoneTime());
+		
+		/* after 2 seconds the remaining 8 bytes share the speed with 4 */
+		clock.advance(2);
+		c2.startTransfer(from, new Message(from, h[1], "s2", 4));
+		assertEquals(2, ni.getNrofTransfers());
+		assertEquals(START_TIME + 2 + 16, c1.getTransferDoneTime());
+		assertEquals(START_TIME + 2 + 8, c2.getTransferDoneTime());
+		
+		/* the remaining 4 bytes get the whole speed again */
+		clock.advance(8);
+		assertTrue(c2.isMessageTransferred());
+		c2.finalizeTransfer();
+		assertEquals(1, ni.getNrofTransfers());
+		assertEquals(4, c1.getRemainingByteCount());
+		assertEquals(START_TIME + 10 + 4, c1.getTransferDoneTime());
+	}
+	
+	public void testNoTransferSpeedSharing() {
+		DTNHost from = newHost();
+		NetworkInterface ni = from.getInterfaces().get(0);
+		ni.setTransferSpeedShared(false);
+		NetworkInterface n1 = newHost().getInterfaces().get(0);
+		NetworkInterface n2 = newHost().getInterfaces().get(0);
+		n1.setTransferSpeedShared(false);
+		n2.setTransferSpeedShared(false);
+		ni.connect(n1);
+		ni.connect(n2);
+		CBRConnection c1 = (CBRConnection)ni.getConnections().get(0);
+		CBRConnection c2 = (CBRConnection)ni.getConnections().get(1);
+		
+		/* concurrent transfers both run at the full speed of 1 Bps */
+		c1.startTransfer(from, new Message(from, h[1], "n1", 10));
+		assertEquals(1.0, c2.getExpectedSpeed());
+		c2.startTransfer(from, new Message(from, h[1], "n2", 4));
+		assertEquals(2, ni.getNrofTransfers());
+		assertEquals(START_TIME + 10, c1.getTransferDoneTime());
+		assertEquals(START_TIME + 4, c2.getTransferDoneTime());
+	}
+	
+	public void testTransferringPeers() {
+		DTNHost from = newHost();
+		NetworkInterface ni = from.getInterfaces().get(0);
+		NetworkInterface n1 = newHost().getInterfaces().get(0);
+		NetworkInterface n2 = newHost().getInterfaces().get(0);
+		ni.connect(n1);
+		ni.connect(n2);
+		CBRConnection c1 = (CBRConnection)ni.getConnections().get(0);
+		
+		c1.startTransfer(from, new Message(from, h[1], "p1", 10));
+		assertEquals(1, ni.getNrofTransferringPeers());
+		assertEquals(1, n1.getNrofTransferringPeers());
+		assertEquals(1, n2.getNrofTransferringPeers());
+		
+		c1.finalizeTransfer();
+		assertEquals(0, ni.getNrofTransferringPeers());
+		assertEquals(0, n2.getNrofTransferringPeers());
+		
+		/* a connection going down ends its transfer */
+		c1.startTransfer(from, new Message(from, h[1], "p2", 10));
+		ni.destroyConnection(n1);
+		assertEquals(0, ni.getNrofTransfers());
+		assertEquals(0, n1.getNrofTransfers());
+		assertEquals(0, n1.getNrofTransferringPeers());
+		assertEquals(0, n2.getNrofTransferringPeers());
+	}
+	
+	public void testGetExpectedSpeed() {
+		/* transferring: shares the speed with the other transfer of h[0] */
+		assertEquals(speed[0] / 2.0, c[0].getExpectedSpeed());
+		/* idle: a new transfer would share the speed with c[1]'s transfer */
+		assertEquals(speed[3] / 2.0, c[3].getExpectedSpeed());
+
+		c[1].finalizeTransfer();
+		assertEquals(1.0 * speed[3], c[3].getExpectedSpeed());
+	}
+
+	public void testMultipleInterfaces() {
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new TestInterface(testSettings));
+		li.add(new TestInterface(testSettings));
+		ModuleCommunicationBus comBus = new ModuleCommunicationBus();
+		DTNHost host = new TestDTNHost(li, comBus, testSettings);
+		NetworkInterface n1 = host.getInterfaces().get(0);
+		NetworkInterface n2 = host.getInterfaces().get(1);
+
+		assertEquals(NetworkInterface.RANGE_ID,
+				n1.getComBusId(NetworkInterface.RANGE_ID));
+		assertEquals(NetworkInterface.RANGE_ID + ".2",
+				n2.getComBusId(NetworkInterface.RANGE_ID));
+
+		/* the range of one interface doesn't change the other's */
+		comBus.updateProperty(n2.getComBusId(NetworkInterface.RANGE_ID), 0.0);
+		assertEquals(1.0, n1.getTransmitRange());
+		assertEquals(0.0, n2.getTransmitRange());
+
+		/* connections over each interface; the idle one is used */
+		DTNHost other = new TestDTNHost(li, new ModuleCommunicationBus(),
+				testSettings);
+		n1.connect(other.getInterfaces().get(0));
+		n2.connect(other.getInterfaces().get(1));
+		Connection c1 = n1.getConnections().get(0);
+		Connection c2 = n2.getConnections().get(0);
+		assertEquals(n2, c2.getInterface(host));
+		c1.startTransfer(host, new Message(host, other, "mi", 10));
+		assertEquals(1.0 * c2.getSpeed(), c2.getExpectedSpeed());
+		assertEquals(0, n2.getNrofTransfers());
+	}
+
 	public void testGetOtherNode() {
 		assertEquals(h[1], c[0].getOtherNode(h[0]));
 		assertEquals(h[0], c[0].getOtherNode(h[1]));
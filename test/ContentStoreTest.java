@@ -0,0 +1,88 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.util.ContentStore;
+import core.Message;
+
+/**
+ * Tests for the content name index and pending interest table of
+ * {@link ContentStore}
+ */
+public class ContentStoreTest extends TestCase {
+
+	private ContentStore store;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		store = new ContentStore();
+	}
+
+	private Message data(String id, String name) {
+		Message m = new Message(null, null, id, 10);
+		m.addProperty("type", "data");
+		if (name != null) {
+			m.addProperty(ContentStore.CONTENT_NAME_PROPERTY, name);
+		}
+		return m;
+	}
+
+	private Message interest(String id, String target) {
+		Message m = new Message(null, null, id, 1);
+		m.addProperty("type", "request");
+		m.addProperty(ContentStore.TARGET_PROPERTY, target);
+		return m;
+	}
+
+	public void testNameDefaultsToId() {
+		Message m = data("M1", null);
+		store.messageAdded(m);
+		assertSame(m, store.getData("M1"));
+		assertNull(store.getData("M2"));
+
+		store.messageRemoved(m);
+		assertNull(store.getData("M1"));
+		assertFalse(store.hasData("M1"));
+	}
+
+	public void testSeveralCopies() {
+		Message m1 = data("M1_0_0", "M1");
+		Message m2 = data("M1_1_0", "M1");
+		Message m3 = data("M1_2_0", "M1");
+		store.messageAdded(m1);
+		store.messageAdded(m2);
+		store.messageAdded(m3);
+
+		assertEquals(1, store.getNrofNames());
+		assertEquals(3, store.getAllData("M1").size());
+		assertSame(m1, store.getData("M1"));
+
+		store.messageRemoved(m1);
+		assertSame(m2, store.getData("M1"));
+		store.messageRemoved(m3);
+		assertSame(m2, store.getData("M1"));
+		store.messageRemoved(m2);
+		assertNull(store.getData("M1"));
+		assertEquals(0, store.getNrofNames());
+	}
+
+	public void testPendingInterests() {
+		Message i1 = interest("R1", "M1");
+		Message i2 = interest("R2", "M1");
+		Message i3 = interest("R3", "M2");
+		store.messageAdded(i1);
+		store.messageAdded(i2);
+		store.messageAdded(i3);
+
+		assertEquals(2, store.getNrofPendingInterests("M1"));
+		assertEquals(1, store.getNrofPendingInterests("M2"));
+		assertEquals(0, store.getPendingInterests("M3").size());
+		assertFalse(store.hasData("M1"));
+
+		store.messageRemoved(i1);
+		assertSame(i2, store.getPendingInterests("M1").iterator().next());
+	}
+}
@@ -4,8 +4,12 @@
  */
 package test;
 
+import routing.ActiveRouter;
 import routing.EpidemicRouter;
 import routing.MessageRouter;
+import routing.util.BloomSummaryVector;
+import routing.util.EvictionPolicy;
+import routing.util.SummaryVector;
 import core.DTNHost;
 import core.Message;
 
@@ -439,6 +443,70 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertFalse(mc.next());
 	}
 	
+	/**
+	 * Tests that the buffer occupancy counters follow message additions
+	 * and removals
+	 */
+	public void testOccupancyCounters() {
+		MessageRouter r = h1.getRouter();
+		Message m1 = new Message(h1, h3, msgId1, 10);
+		m1.addProperty("type", "data");
+		Message m2 = new Message(h1, h3, msgId2, 20);
+		m2.addProperty("type", "request");
+		Message m3 = new Message(h1, h3, msgId3, 30);
+		h1.createNewMessage(m1);
+		h1.createNewMessage(m2);
+		h1.createNewMessage(m3);
+		
+		assertEquals(60, r.getOccupiedBufferSize());
+		assertEquals(BUFFER_SIZE - 60, r.getFreeBufferSize());
+		assertEquals(10, r.getDataBufferOccupancy());
+		assertEquals(20, r.getRequestBufferOccupancy());
+		assertEquals(1, r.getNrofDataMessages());
+		assertEquals(1, r.getNrofRequestMessages());
+		
+		r.deleteMessage(msgId2, true);
+		assertEquals(40, r.getOccupiedBufferSize());
+		assertEquals(0, r.getRequestBufferOccupancy());
+		assertEquals(0, r.getNrofRequestMessages());
+		assertEquals(10, r.getDataBufferOccupancy());
+	}
+	
+	/**
+	 * Tests dropping messages using the newest-first eviction policy
+	 */
+	public void testNewestFirstEviction() throws Exception {
+		TestSettings s = new TestSettings("EvictionTest");
+		s.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		s.putSetting(EvictionPolicy.EVICTION_POLICY_S, EvictionPolicy.NEWEST);
+		setRouterProto(new EpidemicRouter(s));
+		super.setUp();
+		
+		h1.createNewMessage(new Message(h1, h3, msgId1, BUFFER_SIZE/3));
+		clock.advance(10);
+		h1.createNewMessage(new Message(h1, h3, msgId2, BUFFER_SIZE/3));
+		clock.advance(10);
+		h1.createNewMessage(new Message(h1, h3, msgId3, BUFFER_SIZE/3));
+		checkCreates(3);
+		clock.advance(10);
+		h1.createNewMessage(new Message(h1, h3, msgId4, BUFFER_SIZE/2));
+		
+		/* the two newest messages should be dropped for the new one */
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertEquals(msgId3, mc.getLastMsg().getId());
+		assertTrue(mc.getLastDropped());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertEquals(msgId2, mc.getLastMsg().getId());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_CREATE, mc.getLastType());
+		assertEquals(msgId4, mc.getLastMsg().getId());
+		
+		assertEquals(2, h1.getNrofMessages());
+		assertTrue(h1.getRouter().hasMessage(msgId1));
+	}
+	
 	public void testTtlExpiry() {
 		final int TIME_STEP = 10;
 		Message m1 = new Message(h1,h3, msgId1, 1);
@@ -619,4 +687,81 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertNotSame(orderedIds, runMessageExchange(true));
 		assertNotSame(orderedIds, runMessageExchange(false));
 	}
+	
+	/**
+	 * Tests that a message is not deleted as delivered when the recipient's
+	 * Bloom summary vector falsely reports that it knows the message
+	 */
+	public void testBloomFalsePositiveNotDeleted() {
+		ts.putSetting(SummaryVector.SUMMARY_VECTOR_S, SummaryVector.BLOOM);
+		ts.putSetting(SummaryVector.BLOOM_BITS_S, "1");
+		ts.putSetting(ActiveRouter.DELETE_DELIVERED_S, "true");
+		utils.setMessageRouterProto(new EpidemicRouter(ts));
+		ts.removeSetting(SummaryVector.SUMMARY_VECTOR_S);
+		ts.removeSetting(SummaryVector.BLOOM_BITS_S);
+		ts.removeSetting(ActiveRouter.DELETE_DELIVERED_S);
+		
+		DTNHost from = utils.createHost(c0, "from");
+		DTNHost to = utils.createHost(c0, "to");
+		to.createNewMessage(new Message(to, from, "BF_KNOWN", 1));
+		
+		/* find a message that the recipient's vector claims it knows */
+		SummaryVector sv = to.getRouter().getSummaryVector(
+				new BloomSummaryVector(1, 0));
+		Message m = null;
+		for (int i=0; m == null; i++) {
+			Message candidate = new Message(from, to, "BF" + i, 1);
+			if (sv.contains(candidate.getIdIndex())) {
+				m = candidate;
+			}
+		}
+		from.createNewMessage(m);
+		
+		from.connect(to);
+		updateAllNodes();
+		assertTrue(from.getRouter().hasMessage(m.getId()));
+		assertFalse(to.getRouter().hasMessage(m.getId()));
+	}
+	
+	/**
+	 * Tests that a router with two transfer slots starts a second transfer
+	 * but refuses a third, and that the concurrent transfers share the speed
+	 */
+	public void testTransferSlots() {
+		ts.putSetting(ActiveRouter.TRANSFER_SLOTS_S, "2");
+		utils.setMessageRouterProto(new EpidemicRouter(ts));
+		ts.removeSetting(ActiveRouter.TRANSFER_SLOTS_S);
+		
+		DTNHost from = utils.createHost(c0, "from");
+		DTNHost r1 = utils.createHost(c0, "r1");
+		DTNHost r2 = utils.createHost(c0, "r2");
+		DTNHost r3 = utils.createHost(c0, "r3");
+		from.createNewMessage(new Message(from, h6, msgId1, TRANSMIT_SPEED));
+		r3.createNewMessage(new Message(r3, h6, msgId2, TRANSMIT_SPEED));
+		checkCreates(2);
+		from.connect(r1);
+		from.connect(r2);
+		from.connect(r3);
+		
+		from.update(true);
+		checkTransferStart(from, r1, msgId1);
+		assertFalse(((ActiveRouter)from.getRouter()).isTransferring());
+		from.update(true);
+		checkTransferStart(from, r2, msgId1);
+		assertTrue(((ActiveRouter)from.getRouter()).isTransferring());
+		
+		/* both slots are in use: no third transfer from or to the host */
+		from.update(true);
+		r3.update(true);
+		assertFalse(mc.next());
+		
+		/* the two transfers share the speed, so each takes two seconds */
+		clock.advance(1);
+		from.update(true);
+		assertFalse(mc.next());
+		clock.advance(1);
+		from.update(true);
+		assertTrue(r1.getRouter().hasMessage(msgId1));
+		assertTrue(r2.getRouter().hasMessage(msgId1));
+	}
 }
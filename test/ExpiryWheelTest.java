@@ -0,0 +1,70 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.util.ExpiryWheel;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Tests for the TTL expiry wheel
+ */
+public class ExpiryWheelTest extends TestCase {
+
+	private ExpiryWheel wheel;
+	private List<Message> due;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		wheel = new ExpiryWheel();
+		due = new ArrayList<Message>();
+	}
+
+	private Message newMessage(String id, int ttl) {
+		Message m = new Message(null, null, id, 10);
+		m.setTtl(ttl);
+		return m;
+	}
+
+	public void testRemoveDue() {
+		Message m1 = newMessage("W1", 2);
+		Message m2 = newMessage("W2", 3);
+		Message inf = newMessage("W3", Message.INFINITE_TTL);
+		wheel.add(m2);
+		wheel.add(m1);
+		wheel.add(inf);
+		assertEquals(2, wheel.size());
+
+		wheel.removeDue(60, due);
+		assertEquals(0, due.size());
+
+		SimClock.getInstance().setTime(60.5);
+		assertTrue(m1.getTtl() <= 0);
+		wheel.removeDue(60.5, due);
+		assertEquals(1, due.size());
+		assertSame(m1, due.get(0));
+		assertEquals(1, wheel.size());
+	}
+
+	public void testLongTtl() {
+		/* expires after several revolutions of the wheel */
+		int ttl = (int)(3 * ExpiryWheel.NROF_SLOTS *
+				ExpiryWheel.SLOT_LENGTH / 60);
+		Message m = newMessage("W4", ttl);
+		wheel.add(m);
+		for (int t = 0; t < ttl * 60 - 60; t += 10) {
+			wheel.removeDue(t, due);
+		}
+		assertEquals(0, due.size());
+		wheel.removeDue(ttl * 60, due);
+		assertEquals(1, due.size());
+		assertEquals(0, wheel.size());
+	}
+}
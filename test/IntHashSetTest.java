@@ -0,0 +1,72 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.IntHashSet;
+
+/**
+ * Tests for {@link IntHashSet}
+ */
+public class IntHashSetTest extends TestCase {
+
+	public void testAddContainsRemove() {
+		IntHashSet set = new IntHashSet();
+		assertTrue(set.add(0));
+		assertTrue(set.add(1 << 30));
+		assertFalse(set.add(0));
+		assertEquals(2, set.size());
+		assertTrue(set.contains(0));
+		assertTrue(set.contains(1 << 30));
+		assertFalse(set.contains(1));
+		assertFalse(set.contains(-1));
+
+		assertTrue(set.remove(0));
+		assertFalse(set.remove(0));
+		assertFalse(set.contains(0));
+		assertEquals(1, set.size());
+
+		try {
+			set.add(-1);
+			fail("Negative value should have failed");
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+	/**
+	 * Compares a long sequence of random operations (with many colliding
+	 * values) to a HashSet
+	 */
+	public void testRandomOperations() {
+		IntHashSet set = new IntHashSet();
+		HashSet<Integer> ref = new HashSet<Integer>();
+		Random rng = new Random(1);
+
+		for (int i = 0; i < 100000; i++) {
+			int value = rng.nextInt(500) * 64;
+			int op = rng.nextInt(3);
+			if (op == 0) {
+				assertEquals(ref.add(value), set.add(value));
+			}
+			else if (op == 1) {
+				assertEquals(ref.remove(value), set.remove(value));
+			}
+			else {
+				assertEquals(ref.contains(value), set.contains(value));
+			}
+			assertEquals(ref.size(), set.size());
+		}
+
+		int[] values = set.toArray();
+		assertEquals(ref.size(), values.length);
+		for (int value : values) {
+			assertTrue(ref.contains(value));
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.LongHashMap;
+
+/**
+ * Tests for {@link LongHashMap}
+ */
+public class LongHashMapTest extends TestCase {
+
+	public void testPutGetRemove() {
+		LongHashMap<String> map = new LongHashMap<String>();
+		assertNull(map.put(1, "a"));
+		assertNull(map.put(1L << 32 | 1, "b"));
+		assertEquals("a", map.put(1, "c"));
+		assertEquals(2, map.size());
+		assertEquals("c", map.get(1));
+		assertEquals("b", map.get(1L << 32 | 1));
+		assertFalse(map.containsKey(2));
+
+		assertEquals("c", map.remove(1));
+		assertNull(map.remove(1));
+		assertNull(map.get(1));
+		assertEquals(1, map.size());
+	}
+
+	/**
+	 * Compares a long sequence of random operations (with many colliding
+	 * keys) to a HashMap
+	 */
+	public void testRandomOperations() {
+		LongHashMap<Integer> map = new LongHashMap<Integer>();
+		HashMap<Long, Integer> ref = new HashMap<Long, Integer>();
+		Random rng = new Random(1);
+
+		for (int i = 0; i < 100000; i++) {
+			long key = rng.nextInt(500) * 64L;
+			int op = rng.nextInt(3);
+			if (op == 0) {
+				assertEquals(ref.put(key, i), map.put(key, i));
+			}
+			else if (op == 1) {
+				assertEquals(ref.remove(key), map.remove(key));
+			}
+			else {
+				assertEquals(ref.get(key), map.get(key));
+			}
+			assertEquals(ref.size(), map.size());
+		}
+
+		for (Long key : ref.keySet()) {
+			assertEquals(ref.get(key), map.get(key));
+		}
+		assertEquals(ref.size(), map.values().size());
+		for (long key : map.keys()) {
+			assertTrue(ref.containsKey(key));
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import input.EventQueue;
+import input.ExternalEvent;
+import input.MergedEventQueue;
+import input.ScheduledUpdatesQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the MergedEventQueue
+ */
+public class MergedEventQueueTest extends TestCase {
+	private static double MAX = Double.MAX_VALUE;
+
+	/**
+	 * Event queue that returns events at the given times
+	 */
+	private static class TimesQueue implements EventQueue {
+		private double[] times;
+		private int next;
+
+		public TimesQueue(double... times) {
+			this.times = times;
+		}
+
+		public ExternalEvent nextEvent() {
+			return new ExternalEvent(nextEventsTime() == MAX ? MAX :
+				this.times[next++]);
+		}
+
+		public double nextEventsTime() {
+			return (next < times.length ? times[next] : MAX);
+		}
+	}
+
+	public void testMerge() {
+		ScheduledUpdatesQueue suq = new ScheduledUpdatesQueue();
+		TimesQueue q1 = new TimesQueue(1, 4, 6);
+		TimesQueue q2 = new TimesQueue(2, 4, 5);
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		queues.add(suq);
+		queues.add(q1);
+		queues.add(q2);
+		MergedEventQueue meq = new MergedEventQueue(queues);
+
+		assertEquals(1.0, meq.nextEventsTime());
+		assertEquals(1.0, meq.nextEvent().getTime());
+		suq.addUpdate(3);
+		suq.addUpdate(4);
+		assertEquals(2.0, meq.nextEvent().getTime());
+		assertEquals(3.0, meq.nextEvent().getTime());
+
+		/* same time: first in the list goes first */
+		assertEquals(4.0, meq.nextEventsTime());
+		assertEquals(4.0, meq.nextEvent().getTime());
+		assertEquals(MAX, suq.nextEventsTime());
+		assertEquals(4.0, meq.nextEvent().getTime());
+		assertEquals(6.0, q1.nextEventsTime());
+		assertEquals(4.0, meq.nextEvent().getTime());
+		assertEquals(5.0, q2.nextEventsTime());
+
+		assertEquals(5.0, meq.nextEvent().getTime());
+		assertEquals(6.0, meq.nextEvent().getTime());
+		assertEquals(MAX, meq.nextEventsTime());
+		assertEquals(MAX, meq.nextEvent().getTime());
+	}
+}
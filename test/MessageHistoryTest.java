@@ -0,0 +1,77 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.util.MessageHistory;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Tests for the delivered/blacklisted message history
+ */
+public class MessageHistoryTest extends TestCase {
+
+	private Message m1;
+	private Message m2;
+	private Message m3;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		m1 = newMessage("HM1", 10);
+		m2 = newMessage("HM2", 5);
+		m3 = newMessage("HM3", 20);
+	}
+
+	private Message newMessage(String id, int ttl) {
+		Message m = new Message(null, null, id, 10);
+		m.setTtl(ttl);
+		return m;
+	}
+
+	public void testUnlimited() {
+		MessageHistory h = new MessageHistory(MessageHistory.UNLIMITED, -1);
+		h.add(m1, 0);
+		h.add(m2, 0);
+		h.add(m1, 0);
+		h.forgetExpired(1e9);
+		assertEquals(2, h.size());
+		assertTrue(h.contains(m1.getIdIndex()));
+		assertTrue(h.contains(m2.getIdIndex()));
+		assertFalse(h.contains(m3.getIdIndex()));
+	}
+
+	public void testSizeLimit() {
+		MessageHistory h = new MessageHistory(2, -1);
+		h.add(m1, 0);
+		h.add(m2, 0);
+		h.add(m3, 0);
+		/* m2 expires first -> it is forgotten */
+		assertEquals(2, h.size());
+		assertTrue(h.contains(m1.getIdIndex()));
+		assertFalse(h.contains(m2.getIdIndex()));
+		assertTrue(h.contains(m3.getIdIndex()));
+	}
+
+	public void testExpiry() {
+		MessageHistory h = new MessageHistory(MessageHistory.UNLIMITED, 60);
+		h.add(m1, 0);
+		h.add(m2, 0);
+		h.add(m3, 0);
+
+		h.forgetExpired(5 * 60 + 59);
+		assertEquals(3, h.size());
+		h.forgetExpired(6 * 60);
+		assertFalse(h.contains(m2.getIdIndex()));
+		h.forgetExpired(11 * 60);
+		assertFalse(h.contains(m1.getIdIndex()));
+		assertTrue(h.contains(m3.getIdIndex()));
+
+		int[] ids = h.getIds();
+		assertEquals(1, ids.length);
+		assertEquals(m3.getIdIndex(), ids[0]);
+	}
+}
@@ -12,6 +12,7 @@ import org.junit.Test;
 import core.DTNHost;
 import core.Message;
 import core.SimClock;
+import core.SimError;
 
 public class MessageTest extends TestCase {
 
@@ -60,5 +61,43 @@ public class MessageTest extends TestCase {
 		assertEquals(value2, msg.getProperty("bar"));
 	}
 
-
+	@Test
+	public void testTypedProperties() {
+		msg.addProperty("type", "request");
+		msg.addProperty("target", "M1");
+		assertEquals(Message.PacketType.REQUEST, msg.getPacketType());
+		assertEquals("M1", msg.getTarget());
+		assertEquals("request", msg.getProperty("type"));
+		
+		try {
+			msg.addProperty("target", "M2");
+			fail("Added a property twice");
+		} catch (SimError e) {
+			// expected
+		}
+		
+		msg.setCopies(3);
+		Message copy = msg.replicate();
+		assertEquals(Message.PacketType.REQUEST, copy.getPacketType());
+		assertEquals("M1", copy.getProperty("target"));
+		assertEquals(3, copy.getCopies());
+		
+		Message ping = new Message(from, to, "P", 10);
+		ping.addProperty("type", "ping");
+		assertNull(ping.getPacketType());
+		assertEquals("ping", ping.getProperty("type"));
+	}
+	
+	@Test
+	public void testReplicatePropertiesCopyOnWrite() {
+		msg.addProperty("foo", "value1");
+		Message copy = msg.replicate();
+		
+		copy.updateProperty("foo", "value2");
+		assertEquals("value1", msg.getProperty("foo"));
+		assertEquals("value2", copy.getProperty("foo"));
+		
+		msg.addProperty("bar", "value3");
+		assertNull(copy.getProperty("bar"));
+	}
 }
@@ -101,6 +101,38 @@ public class ModuleCommunicationBusTest extends TestCase {
 
 		assertEquals(-16.7, b.updateDouble(key, -30));
 		assertEquals(-16.7, b.getDouble(key, -1.0));
-	}	
+	}
+
+	@Test
+	public void testSlots() {
+		String key = "slottst";
+		int slot = ModuleCommunicationBus.registerDouble(key);
+		int intSlot = ModuleCommunicationBus.registerInt("intslottst");
+		assertEquals(slot, ModuleCommunicationBus.registerDouble(key));
+
+		assertFalse(b.contains(slot));
+		assertEquals(-1.0, b.getDouble(slot, -1.0));
+		b.addDouble(slot, 15.5);
+		b.subscribe(slot, mcl);
+		assertEquals(16.5, b.updateDouble(slot, 1.0));
+		assertEquals(key, notifyKey);
+		assertEquals(16.5, notifyValue);
+
+		/* the string keyed methods use the same value */
+		assertTrue(b.containsProperty(key));
+		assertEquals(16.5, b.getDouble(key, -1.0));
+		b.updateProperty(key, 2.5);
+		assertEquals(2.5, b.getDouble(slot, -1.0));
+		assertEquals(2.5, notifyValue);
+
+		b.addInt(intSlot, 3);
+		assertEquals(3, b.getInt("intslottst", -1));
+		try {
+			b.updateProperty(key, "not a double");
+			fail("Invalid value type should have failed");
+		} catch (core.SimError e) {
+			/* expected */
+		}
+	}
 
 }
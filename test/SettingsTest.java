@@ -47,18 +47,26 @@ public class SettingsTest extends TestCase {
 	
 	protected void setUp() throws Exception {
 		super.setUp();
+		Settings.init(writeSettings(INPUT).getAbsolutePath());
+		s = new Settings();
+	}
+	
+	/**
+	 * Writes settings to a temporary file
+	 * @param lines The setting lines
+	 * @return The file
+	 */
+	private File writeSettings(String... lines) throws Exception {
 		File tempFile = File.createTempFile("settingsTest", ".tmp");
 		tempFile.deleteOnExit();
 		
 		PrintWriter out = new PrintWriter(tempFile);
 		
-		for (String s : INPUT) {
+		for (String s : lines) {
 			out.println(s);
 		}
 		out.close();
-		
-		Settings.init(tempFile.getAbsolutePath());
-		s = new Settings();
+		return tempFile;
 	}
 	
 	@Override
@@ -208,6 +216,65 @@ public class SettingsTest extends TestCase {
 		assertEquals("[val1 ; val2",s.getSetting(IRS_S));
 	}
 	
+	/**
+	 * Tests that the cached values follow the run index
+	 */
+	public void testCachedRunIndex() {
+		Settings ns = new Settings("Ns");
+		assertEquals("val1", s.getSetting(RS_S));
+		assertFalse(ns.contains(RS_S));
+		
+		Settings.setRunIndex(2);
+		assertEquals("val3", s.getSetting(RS_S));
+		assertEquals(2, ns.getInt(RS_S));
+		
+		Settings.setRunIndex(0);
+		assertEquals("val1", s.getSetting(RS_S));
+		assertFalse(ns.contains(RS_S));
+	}
+	
+	/**
+	 * Tests that the cached values are dropped when settings are added or
+	 * read again
+	 */
+	public void testCachedValuesAfterInit() throws Exception {
+		assertEquals(1.1, s.getDouble("double"));
+		assertEquals(1, s.getInt("int"));
+		
+		File f = writeSettings("double = 2.2", "int = 2");
+		Settings.addSettings(f.getAbsolutePath());
+		assertEquals(2.2, s.getDouble("double"));
+		assertEquals(2, s.getInt("int"));
+		assertEquals(TST_RES, s.getSetting(TST));
+		
+		Settings.init(f.getAbsolutePath());
+		assertFalse(s.contains(TST));
+		assertEquals(2.2, s.getDouble("double"));
+	}
+	
+	/**
+	 * Tests that the cached values are dropped when the properties are
+	 * changed directly
+	 */
+	public void testCachedValuesAfterPropertiesChange() {
+		TestSettings ts = new TestSettings();
+		ts.putSetting("double", "3.3");
+		assertEquals(3.3, s.getDouble("double"));
+		ts.putSetting("double", "4.4");
+		assertEquals(4.4, s.getDouble("double"));
+		assertFalse(s.contains(TST));
+	}
+	
+	/**
+	 * Tests that the cached constructors create new objects
+	 */
+	public void testCachedConstructor() {
+		Object o1 = s.createIntializedObject("movement.RandomWaypoint");
+		Object o2 = s.createIntializedObject("movement.RandomWaypoint");
+		assertTrue(o2 instanceof movement.RandomWaypoint);
+		assertNotSame(o1, o2);
+	}
+	
 	/**
 	 * Tests disabled run-specific variables
 	 */
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.SparseConnectivityGrid;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.World;
+
+/**
+ * Tests for the sparse connectivity grid
+ */
+public class SparseConnectivityGridTest extends TestCase {
+	private TestSettings ts;
+	private TestUtils utils;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				SparseConnectivityGrid.SPARSE_GRID_S, "true");
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		new TestSettings();
+		SparseConnectivityGrid.reset();
+	}
+
+	/**
+	 * Creates the test utils after the grid settings are in place
+	 */
+	private void init(String cellSizeMult) {
+		if (cellSizeMult != null) {
+			ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+					ConnectivityGrid.CELL_SIZE_MULT_S, cellSizeMult);
+		}
+		SparseConnectivityGrid.reset();
+		utils = new TestUtils(null, null, ts);
+	}
+
+	private SparseConnectivityGrid getGrid() {
+		return SparseConnectivityGrid.SparseConnectivityGridFactory(
+				TestUtils.IFACE_NS.hashCode(), 1.0);
+	}
+
+	private NetworkInterface newInterface(double x, double y) {
+		DTNHost host = utils.createHost(new Coord(x, y));
+		NetworkInterface ni = host.getInterfaces().get(0);
+		if (getGrid().getCellSize() > 0) {
+			/* added to the grid before the host got its location */
+			getGrid().updateLocation(ni);
+		}
+		return ni;
+	}
+
+	private Collection<NetworkInterface> near(NetworkInterface ni) {
+		return getGrid().getNearInterfaces(ni);
+	}
+
+	public void testPlacement() {
+		init("10");
+		NetworkInterface n1 = newInterface(5, 5);
+		NetworkInterface n2 = newInterface(15, 5);
+		NetworkInterface n3 = newInterface(35, 5);
+		NetworkInterface n4 = newInterface(-5, -5);
+		SparseConnectivityGrid grid = getGrid();
+
+		assertEquals(10, grid.getCellSize());
+		assertEquals(4, grid.getNrofCells());
+		assertTrue(near(n1).contains(n2));
+		assertTrue(near(n1).contains(n4));
+		assertFalse(near(n1).contains(n3));
+		assertFalse(near(n2).contains(n4));
+		assertEquals(1, near(n3).size());
+	}
+
+	public void testMoveAcrossCells() {
+		init("10");
+		NetworkInterface n1 = newInterface(5, 5);
+		NetworkInterface n2 = newInterface(15, 5);
+		NetworkInterface n3 = newInterface(35, 5);
+		SparseConnectivityGrid grid = getGrid();
+		long version = grid.getNearInterfacesVersion(n2);
+
+		/* moving within the cell changes nothing */
+		n3.getHost().setLocation(new Coord(39, 9));
+		grid.updateLocation(n3);
+		assertEquals(3, grid.getNrofCells());
+		assertEquals(version, grid.getNearInterfacesVersion(n2));
+
+		/* the old cell is removed and n2 gets a new neighbor */
+		n3.getHost().setLocation(new Coord(25, 5));
+		grid.updateLocation(n3);
+		assertEquals(3, grid.getNrofCells());
+		assertTrue(near(n2).contains(n3));
+		assertFalse(near(n1).contains(n3));
+		assertTrue(grid.getNearInterfacesVersion(n2) > version);
+
+		/* into the same cell as n2 */
+		n3.getHost().setLocation(new Coord(11, 1));
+		grid.updateLocation(n3);
+		assertEquals(2, grid.getNrofCells());
+		assertTrue(near(n1).contains(n3));
+	}
+
+	public void testTableResize() {
+		init("10");
+		List<NetworkInterface> list = new ArrayList<NetworkInterface>();
+		for (int i=0; i<100; i++) {
+			list.add(newInterface(i * 20 + 5, (i % 7) * -20 + 5));
+		}
+		SparseConnectivityGrid grid = getGrid();
+		assertEquals(100, grid.getNrofCells());
+		for (NetworkInterface ni : list) {
+			Collection<NetworkInterface> near = near(ni);
+			assertEquals(1, near.size());
+			assertTrue(near.contains(ni));
+		}
+
+		/* emptying cells keeps the rest of the table consistent */
+		for (int i=0; i<90; i++) {
+			NetworkInterface ni = list.get(i);
+			ni.getHost().setLocation(new Coord(-1000, -1000));
+			grid.updateLocation(ni);
+		}
+		assertEquals(11, grid.getNrofCells());
+		assertEquals(90, near(list.get(0)).size());
+		for (int i=90; i<100; i++) {
+			assertEquals(1, near(list.get(i)).size());
+		}
+	}
+
+	public void testAutomaticCellSize() {
+		init(null);
+		NetworkInterface n1 = newInterface(0, 0);
+		newInterface(100, 0);
+		newInterface(0, 100);
+		newInterface(100, 100);
+		SparseConnectivityGrid grid = getGrid();
+
+		/* no cells before the first use; collecting doesn't create them */
+		assertEquals(-1, grid.getCellSize());
+		assertEquals(0, near(n1).size());
+		assertEquals(0, grid.getNrofCells());
+
+		/* one interface per cell on average */
+		SparseConnectivityGrid.createCells();
+		assertEquals(50, grid.getCellSize());
+		assertEquals(4, grid.getNrofCells());
+		assertEquals(1, near(n1).size());
+	}
+}
@@ -0,0 +1,48 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.util.BloomSummaryVector;
+import routing.util.ExactSummaryVector;
+import routing.util.SummaryVector;
+
+/**
+ * Tests for the summary vectors
+ */
+public class SummaryVectorTest extends TestCase {
+
+	public void testExact() {
+		SummaryVector sv = new ExactSummaryVector().newVector(3);
+		sv.add(0);
+		sv.add(5);
+		sv.add(1000);
+		assertTrue(sv.contains(0));
+		assertTrue(sv.contains(5));
+		assertTrue(sv.contains(1000));
+		assertFalse(sv.contains(1));
+		assertFalse(sv.contains(999));
+	}
+
+	public void testBloom() {
+		int n = 1000;
+		SummaryVector sv = new BloomSummaryVector(10, 0).newVector(n);
+		for (int i = 0; i < n; i++) {
+			sv.add(i * 3);
+		}
+		/* no false negatives */
+		for (int i = 0; i < n; i++) {
+			assertTrue(sv.contains(i * 3));
+		}
+		/* about 1% false positives with 10 bits per message */
+		int falsePositives = 0;
+		for (int i = 0; i < n; i++) {
+			if (sv.contains(i * 3 + 1)) {
+				falsePositives++;
+			}
+		}
+		assertTrue("" + falsePositives, falsePositives < n / 20);
+	}
+}
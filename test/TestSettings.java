@@ -69,6 +69,25 @@ public class TestSettings extends core.Settings {
 		}
 		
 		props.put(nameSpace + key, value);
-	}	
+		propertiesChanged();
+	}
+	
+	/**
+	 * Removes a setting
+	 * @param key
+	 */
+	public void removeSetting(String key) {
+		String nameSpace = getNameSpace();
+		if (nameSpace == null) {
+			nameSpace = "";
+		} else {
+			nameSpace += ".";
+		}
+		
+		if (props != null) {
+			props.remove(nameSpace + key);
+			propertiesChanged();
+		}
+	}
 
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.TransferDoneQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.CBRConnection;
+import core.DTNHost;
+import core.Message;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests for the TransferDoneQueue
+ */
+public class TransferDoneQueueTest extends TestCase {
+	private static final double START_TIME = 10.0;
+	private static final double MAX = Double.MAX_VALUE;
+	private TransferDoneQueue queue;
+	private TestSettings testSettings;
+	private SimClock clock = SimClock.getInstance();
+	private DTNHost from;
+	private CBRConnection c1;
+	private CBRConnection c2;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock.setTime(START_TIME);
+		testSettings = new TestSettings();
+		testSettings.setNameSpace(TestUtils.IFACE_NS);
+		testSettings.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "1.0");
+		testSettings.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+
+		queue = new TransferDoneQueue();
+		CBRConnection.setTransferDoneQueue(queue);
+
+		from = newHost();
+		NetworkInterface ni = from.getInterfaces().get(0);
+		ni.connect(newHost().getInterfaces().get(0));
+		ni.connect(newHost().getInterfaces().get(0));
+		c1 = (CBRConnection)ni.getConnections().get(0);
+		c2 = (CBRConnection)ni.getConnections().get(1);
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		CBRConnection.reset();
+	}
+
+	private DTNHost newHost() {
+		NetworkInterface ni = new TestInterface(testSettings);
+		ni.setTransferSpeedShared(true);
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(ni);
+		return new TestDTNHost(li, new ModuleCommunicationBus(), 
+				testSettings);
+	}
+
+	public void testDoneTimes() {
+		assertEquals(MAX, queue.nextEventsTime());
+		
+		/* speed is 1 Bps */
+		c1.startTransfer(from, new Message(from, from, "m1", 10));
+		assertEquals(START_TIME + 10, queue.nextEventsTime());
+		
+		/* sharing the speed moves the first transfer to later */
+		clock.advance(2);
+		c2.startTransfer(from, new Message(from, from, "m2", 4));
+		assertEquals(START_TIME + 10, queue.nextEventsTime());
+		assertEquals(START_TIME + 10, queue.nextEvent().getTime());
+		assertEquals(START_TIME + 18, queue.nextEventsTime());
+		
+		/* aborted transfers are dropped and the remaining 4 bytes of the
+		   other transfer get the whole speed again */
+		c1.abortTransfer();
+		assertEquals(START_TIME + 6, queue.nextEventsTime());
+		c2.finalizeTransfer();
+		assertEquals(MAX, queue.nextEventsTime());
+		assertEquals(MAX, queue.nextEvent().getTime());
+	}
+
+	public void testEmptyMessagesAreNotQueued() {
+		c1.startTransfer(from, new Message(from, from, "m1", 0));
+		assertEquals(MAX, queue.nextEventsTime());
+	}
+}
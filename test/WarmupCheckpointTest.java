@@ -0,0 +1,157 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import input.EventQueue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.RandomWaypoint;
+import core.DTNHost;
+import core.SimClock;
+import core.UpdateListener;
+import core.WarmupCheckpoint;
+import core.World;
+
+/**
+ * Tests for {@link WarmupCheckpoint}. Compares the state of hosts restored
+ * from a checkpoint to the state of hosts that ran the warmup.
+ */
+public class WarmupCheckpointTest extends TestCase {
+	private static final double WARMUP = 1000;
+	private static final double UP_INT = 1.0;
+	private static final int NROF_HOSTS = 5;
+	private static final int NROF_UPDATES = 500;
+
+	private File dir;
+	private List<DTNHost> hosts;
+	private RandomWaypoint mmProto;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = File.createTempFile("ckpt", "");
+		assertTrue(dir.delete());
+		assertTrue(dir.mkdir());
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+		new TestSettings();
+		SimClock.reset();
+		DTNHost.reset();
+		MovementModel.reset();
+	}
+
+	/**
+	 * Creates hosts with random waypoint movement and a world for them.
+	 * The clock is set to the start of the warmup.
+	 * @param useCheckpoints If true, the checkpoint directory is set
+	 */
+	private World createWorld(boolean useCheckpoints) {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(MovementModel.SPEED, "0.5,1.5");
+		ts.putSetting(MovementModel.WAIT_TIME, "0,10");
+		if (useCheckpoints) {
+			ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+					WarmupCheckpoint.CHECKPOINT_DIR_S, dir.getPath());
+		}
+		SimClock.reset();
+		DTNHost.reset();
+		MovementModel.reset();
+
+		mmProto = new RandomWaypoint(ts);
+		TestUtils utils = new TestUtils(null, null, ts);
+		hosts = new ArrayList<DTNHost>();
+		for (int i = 0; i < NROF_HOSTS; i++) {
+			hosts.add(utils.createHost(mmProto, null));
+		}
+
+		World world = new World(hosts, 1000, 1000, UP_INT,
+				new ArrayList<UpdateListener>(), false,
+				new ArrayList<EventQueue>());
+		SimClock.getInstance().setTime(-WARMUP);
+		return world;
+	}
+
+	/**
+	 * Returns the locations and paths of the hosts and the next location
+	 * drawn from the movement models' rng. The host state is also compared
+	 * after moving the hosts for a while, so that the state of the
+	 * movement models affects the result too.
+	 */
+	private String getState(World world) {
+		StringBuilder state = new StringBuilder();
+		appendHosts(state);
+		for (int i = 0; i < NROF_UPDATES; i++) {
+			world.update();
+		}
+		appendHosts(state);
+		state.append("rng: " + mmProto.replicate().getInitialLocation());
+		return state.toString();
+	}
+
+	private void appendHosts(StringBuilder state) {
+		for (DTNHost host : hosts) {
+			state.append(host + " " + host.getLocation() + " " +
+					host.getPath() + "\n");
+		}
+	}
+
+	/**
+	 * Restores the checkpoint of a new world
+	 */
+	private World restoreWorld() {
+		World world = createWorld(true);
+		WarmupCheckpoint checkpoint = WarmupCheckpoint.create(hosts,
+				WARMUP, UP_INT);
+		assertNotNull(checkpoint);
+		assertTrue(checkpoint.getFile().exists());
+		assertTrue(checkpoint.restore());
+		SimClock.getInstance().setTime(0);
+		return world;
+	}
+
+	public void testSaveAndRestore() {
+		World world = createWorld(false);
+		world.warmupMovementModel(WARMUP);
+		String expected = getState(world);
+
+		/* the first run saves the checkpoint */
+		world = createWorld(true);
+		world.warmupMovementModel(WARMUP);
+		assertEquals(1, dir.listFiles().length);
+		assertEquals(expected, getState(world));
+
+		world = restoreWorld();
+		assertEquals(expected, getState(world));
+	}
+
+	public void testSaveOverExisting() {
+		World world = createWorld(false);
+		world.warmupMovementModel(WARMUP);
+		String expected = getState(world);
+
+		createWorld(true).warmupMovementModel(WARMUP);
+
+		/* save the restored state again over the existing checkpoint file */
+		createWorld(true);
+		WarmupCheckpoint checkpoint = WarmupCheckpoint.create(hosts,
+				WARMUP, UP_INT);
+		assertTrue(checkpoint.restore());
+		checkpoint.save();
+		assertEquals(1, dir.listFiles().length);
+
+		world = restoreWorld();
+		assertEquals(expected, getState(world));
+	}
+}
@@ -5,6 +5,7 @@
 package test;
 
 import input.EventQueue;
+import input.ExternalEvent;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -32,11 +33,13 @@ public class WorldTest extends TestCase {
 	private double upInterval = 0.1;
 	private List<TestDTNHost> testHosts;
 	private List<EventQueue> eQueues;
+	private TestSettings testSettings;
 	
 	protected void setUp() throws Exception {
 		super.setUp();
 		SimClock.reset();
-		TestSettings testSettings = new TestSettings();
+		DTNHost.reset();
+		testSettings = new TestSettings();
 		testSettings.setNameSpace(TestUtils.IFACE_NS);
 		testSettings.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "1.0");
 		testSettings.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
@@ -52,8 +55,12 @@ public class WorldTest extends TestCase {
 			this.testHosts.add(new TestDTNHost(li, comBus, testSettings));
 		}
 		
+		this.world = createWorld();
+	}
+	
+	private World createWorld() {
 		TestScenario ts = new TestScenario();
-		this.world = new World(ts.getHosts(),ts.getWorldSizeX(), 
+		return new World(ts.getHosts(),ts.getWorldSizeX(), 
 				ts.getWorldSizeY(),ts.getUpdateInterval(), 
 				ts.getUpdateListeners(), ts.simulateConnections(), 
 				ts.getExternalEvents() );
@@ -102,6 +109,46 @@ public class WorldTest extends TestCase {
 	}
 	
 
+	/**
+	 * Tests that in the dirty host mode an event only updates the hosts
+	 * it looks up, and an event without hosts updates all hosts
+	 */
+	public void testDirtyHostUpdates() {
+		testSettings.setNameSpace(World.OPTIMIZATION_SETTINGS_NS);
+		testSettings.putSetting(World.DIRTY_HOST_UPDATES_S, "true");
+		final List<ExternalEvent> events = new ArrayList<ExternalEvent>();
+		events.add(new ExternalEvent(0.05) {
+			public void processEvent(World w) {
+				w.getNodeByAddress(2);
+				w.markForUpdate(testHosts.get(5));
+				w.getNodeByAddress(2);
+			}
+		});
+		events.add(new ExternalEvent(0.15));
+		eQueues.add(new EventQueue() {
+			public ExternalEvent nextEvent() {
+				return events.remove(0);
+			}
+			public double nextEventsTime() {
+				return events.isEmpty() ? Double.MAX_VALUE : 
+					events.get(0).getTime();
+			}
+		});
+		world = createWorld();
+		
+		world.update(); /* event at 0.05 and the end of the interval */
+		for (int i=0; i<testHosts.size(); i++) {
+			int expected = (i == 2 || i == 5 ? 2 : 1);
+			assertEquals("host " + i, expected, testHosts.get(i).nrofUpdate);
+		}
+		
+		world.update(); /* event at 0.15 updates all hosts */
+		for (int i=0; i<testHosts.size(); i++) {
+			int expected = (i == 2 || i == 5 ? 4 : 3);
+			assertEquals("host " + i, expected, testHosts.get(i).nrofUpdate);
+		}
+	}
+
 	/** Dummy scenario for providing test values for the World */ 
 	@SuppressWarnings("serial")
 	private class TestScenario extends core.SimScenario {
@@ -130,6 +130,9 @@ public abstract class DTNSimUI {
 		for (Report r : this.reports) {
 			r.done();
 		}
+		if (this.world != null) {
+			this.world.done();
+		}
 	}
 	
 	/**
@@ -147,6 +147,24 @@ public class ActivenessHandler {
 		
 		return curRange.isInRange(time);
 	}
+	
+	/**
+	 * Returns true if checking the activeness doesn't modify the state of 
+	 * this handler, i.e., if no active time ranges are used
+	 * @return true if the handler has no state that changes over time
+	 */
+	public boolean isStateless() {
+		return this.activeTimes == null;
+	}
+	
+	/**
+	 * Returns true if the node is active all the time, i.e., if neither 
+	 * active times nor active periods are used
+	 * @return true if the node is always active
+	 */
+	public boolean isAlwaysActive() {
+		return this.activeTimes == null && this.activePeriods == null;
+	}
 
 	/**
 	 * Class for handling time ranges
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Hash set of non-negative <code>int</code> values. Doesn't box the values,
+ * so adding, searching and removing values doesn't create garbage (except
+ * when the table grows). The table only grows with the number of values in
+ * the set, not with the magnitude of the values, so the set is a compact
+ * replacement for a <code>BitSet</code> of sparse, large values.
+ */
+public class IntHashSet {
+	/** initial capacity of the table (must be a power of two) */
+	private static final int INITIAL_CAPACITY = 16;
+	/** value of a free slot */
+	private static final int FREE = -1;
+
+	private int[] keys;
+	private int size;
+	/** number of bits used for the table index */
+	private int bits;
+
+	/**
+	 * Creates an empty set
+	 */
+	public IntHashSet() {
+		init(INITIAL_CAPACITY);
+	}
+
+	private void init(int capacity) {
+		this.keys = new int[capacity];
+		Arrays.fill(this.keys, FREE);
+		this.size = 0;
+		this.bits = Integer.numberOfTrailingZeros(capacity);
+	}
+
+	/**
+	 * Returns the table slot where the search for a value starts
+	 */
+	private int slot(int value) {
+		return (value * 0x9E3779B9) >>> (32 - bits);
+	}
+
+	/**
+	 * Returns the slot of a value or -1 if the value isn't in the set
+	 */
+	private int find(int value) {
+		int mask = this.keys.length - 1;
+		for (int i = slot(value); this.keys[i] != FREE; i = (i + 1) & mask) {
+			if (this.keys[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns true if the value is in the set
+	 * @param value The value
+	 * @return True if the set contains the value
+	 */
+	public boolean contains(int value) {
+		return value >= 0 && find(value) >= 0;
+	}
+
+	/**
+	 * Adds a value to the set
+	 * @param value The value (not negative)
+	 * @return True if the value was added, false if it already was in the set
+	 */
+	public boolean add(int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Negative values are not " +
+					"allowed: " + value);
+		}
+		int mask = this.keys.length - 1;
+		int i = slot(value);
+		for (; this.keys[i] != FREE; i = (i + 1) & mask) {
+			if (this.keys[i] == value) {
+				return false;
+			}
+		}
+
+		this.keys[i] = value;
+		this.size++;
+		if (this.size * 4 > this.keys.length * 3) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Removes a value from the set
+	 * @param value The value
+	 * @return True if the value was removed, false if it wasn't in the set
+	 */
+	public boolean remove(int value) {
+		int i = (value < 0 ? -1 : find(value));
+		if (i < 0) {
+			return false;
+		}
+
+		/* shift the following values of the probe sequence back so that
+		   searches don't stop at the freed slot */
+		int mask = this.keys.length - 1;
+		int free = i;
+		for (int j = (i + 1) & mask; this.keys[j] != FREE; j = (j + 1) & mask) {
+			int home = slot(this.keys[j]);
+			if (((j - home) & mask) >= ((j - free) & mask)) {
+				this.keys[free] = this.keys[j];
+				free = j;
+			}
+		}
+		this.keys[free] = FREE;
+		this.size--;
+		return true;
+	}
+
+	/**
+	 * Returns the number of values in the set
+	 * @return The number of values
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the values of the set in no particular order
+	 * @return The values in a new array
+	 */
+	public int[] toArray() {
+		int[] list = new int[this.size];
+		int n = 0;
+		for (int k : this.keys) {
+			if (k != FREE) {
+				list[n++] = k;
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Doubles the size of the table
+	 */
+	private void grow() {
+		int[] oldKeys = this.keys;
+		init(oldKeys.length * 2);
+		for (int k : oldKeys) {
+			if (k != FREE) {
+				add(k);
+			}
+		}
+	}
+}
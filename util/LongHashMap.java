@@ -0,0 +1,215 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Hash map with primitive <code>long</code> keys. Doesn't box the keys or
+ * create entry objects, so putting, getting and removing values doesn't
+ * create garbage (except when the table grows). Int keys can be used as
+ * such. Null values are not allowed.
+ * @param <V> Type of the values
+ */
+public class LongHashMap<V> {
+	/** initial capacity of the table (must be a power of two) */
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long[] keys;
+	/** values of the table; null marks a free slot */
+	private Object[] values;
+	private int size;
+	/** number of bits used for the table index */
+	private int bits;
+
+	/**
+	 * Creates an empty map
+	 */
+	public LongHashMap() {
+		init(INITIAL_CAPACITY);
+	}
+
+	private void init(int capacity) {
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+		this.size = 0;
+		this.bits = Integer.numberOfTrailingZeros(capacity);
+	}
+
+	/**
+	 * Returns the table slot where the search for a key starts
+	 */
+	private int slot(long key) {
+		return (int)((key * 0x9E3779B97F4A7C15L) >>> (64 - bits));
+	}
+
+	/**
+	 * Returns the slot of a key or -1 if the key isn't in the map
+	 */
+	private int find(long key) {
+		int mask = this.keys.length - 1;
+		for (int i = slot(key); this.values[i] != null; i = (i + 1) & mask) {
+			if (this.keys[i] == key) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the value of a key
+	 * @param key The key
+	 * @return The value or null if the key isn't in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int i = find(key);
+		return (i < 0 ? null : (V)this.values[i]);
+	}
+
+	/**
+	 * Returns true if the key is in the map
+	 * @param key The key
+	 * @return True if the map has a value for the key
+	 */
+	public boolean containsKey(long key) {
+		return find(key) >= 0;
+	}
+
+	/**
+	 * Sets the value of a key
+	 * @param key The key
+	 * @param value The value (not null)
+	 * @return The old value of the key or null if it had none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null values are not allowed");
+		}
+		int mask = this.keys.length - 1;
+		int i = slot(key);
+		for (; this.values[i] != null; i = (i + 1) & mask) {
+			if (this.keys[i] == key) {
+				V old = (V)this.values[i];
+				this.values[i] = value;
+				return old;
+			}
+		}
+
+		this.keys[i] = key;
+		this.values[i] = value;
+		this.size++;
+		if (this.size * 4 > this.keys.length * 3) {
+			grow();
+		}
+		return null;
+	}
+
+	/**
+	 * Removes a key from the map
+	 * @param key The key
+	 * @return The value of the key or null if it wasn't in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int i = find(key);
+		if (i < 0) {
+			return null;
+		}
+		V old = (V)this.values[i];
+
+		/* shift the following entries of the probe sequence back so that
+		   searches don't stop at the freed slot */
+		int mask = this.keys.length - 1;
+		int free = i;
+		for (int j = (i + 1) & mask; this.values[j] != null; j = (j + 1) & mask) {
+			int home = slot(this.keys[j]);
+			if (((j - home) & mask) >= ((j - free) & mask)) {
+				this.keys[free] = this.keys[j];
+				this.values[free] = this.values[j];
+				free = j;
+			}
+		}
+		this.values[free] = null;
+		this.size--;
+		return old;
+	}
+
+	/**
+	 * Returns the number of keys in the map
+	 * @return The number of keys
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of slots in the table. Together with
+	 * {@link #valueAt(int)} this allows iterating over the values in place,
+	 * without copying them. The map must not be modified while iterating.
+	 * @return The number of slots
+	 */
+	public int capacity() {
+		return this.keys.length;
+	}
+
+	/**
+	 * Returns the value in a slot of the table
+	 * @param slot Index of the slot (0 - {@link #capacity()}-1)
+	 * @return The value or null if the slot is free
+	 */
+	@SuppressWarnings("unchecked")
+	public V valueAt(int slot) {
+		return (V)this.values[slot];
+	}
+
+	/**
+	 * Returns the values of the map in no particular order. The returned
+	 * collection is a copy.
+	 * @return The values
+	 */
+	@SuppressWarnings("unchecked")
+	public Collection<V> values() {
+		ArrayList<V> list = new ArrayList<V>(this.size);
+		for (Object v : this.values) {
+			if (v != null) {
+				list.add((V)v);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the keys of the map in no particular order
+	 * @return The keys in a new array
+	 */
+	public long[] keys() {
+		long[] list = new long[this.size];
+		int n = 0;
+		for (int i = 0; i < this.keys.length; i++) {
+			if (this.values[i] != null) {
+				list[n++] = this.keys[i];
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Doubles the size of the table
+	 */
+	@SuppressWarnings("unchecked")
+	private void grow() {
+		long[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		init(oldKeys.length * 2);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				put(oldKeys[i], (V)oldValues[i]);
+			}
+		}
+	}
+}